@@ -0,0 +1,84 @@
+package com.example.booktranslator.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Builds Gutenberg-shaped books of a requested size from the bundled fixtures: the license header, as
+ * many numbered chapters as fit, then the footer. The HTML variant wraps the same chapters in the markup
+ * Gutenberg's HTML editions use, including a stylesheet and character references, so the extractor has
+ * realistic work to do.
+ */
+final class BookFixtures {
+
+    private static final String HEADER = resource("header.txt");
+    private static final String CHAPTER = resource("chapter.txt");
+    private static final String FOOTER = resource("footer.txt");
+
+    private BookFixtures() {
+    }
+
+    static String plainText(int size) {
+        StringBuilder book = new StringBuilder(size + CHAPTER.length()).append(HEADER);
+        for (int n = 1; book.length() < size; n++) {
+            book.append(CHAPTER.replace("{n}", String.valueOf(n)));
+        }
+        return book.append(FOOTER).toString();
+    }
+
+    static String html(int size) {
+        StringBuilder book = new StringBuilder(size + CHAPTER.length() * 2)
+                .append("<!DOCTYPE html>\n<html lang=\"en\">\n<head>\n<meta charset=\"utf-8\">\n")
+                .append("<title>The Project Gutenberg eBook of The Ashford Road</title>\n")
+                .append("<style>\nbody { margin-left: 10%; margin-right: 10%; }\np { text-indent: 1em; }\n</style>\n")
+                .append("</head>\n<body>\n<section class=\"pg-boilerplate\">\n<pre>")
+                .append(HEADER)
+                .append("</pre>\n</section>\n");
+        for (int n = 1; book.length() < size; n++) {
+            String[] paragraphs = CHAPTER.replace("{n}", String.valueOf(n)).split("\n\n");
+            book.append("<div class=\"chapter\">\n<h2><a id=\"chap").append(n).append("\"></a>")
+                    .append(paragraphs[0].trim())
+                    .append("</h2>\n");
+            for (int i = 1; i < paragraphs.length; i++) {
+                book.append("<p>").append(escape(paragraphs[i].trim())).append("</p>\n");
+            }
+            book.append("<!-- end of chapter ").append(n).append(" -->\n</div>\n");
+        }
+        return book.append("<section class=\"pg-boilerplate\">\n<pre>")
+                .append(FOOTER)
+                .append("</pre>\n</section>\n</body>\n</html>\n")
+                .toString();
+    }
+
+    static String resource(String name) {
+        try (InputStream in = BookFixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) {
+                throw new IllegalStateException("Benchmark fixture " + name + " missing from classpath");
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static String escape(String text) {
+        StringBuilder escaped = new StringBuilder(text.length() + 32);
+        boolean openQuote = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                escaped.append(openQuote ? "&ldquo;" : "&rdquo;");
+                openQuote = !openQuote;
+            } else if (c == '\'') {
+                escaped.append("&rsquo;");
+            } else if (c == '&') {
+                escaped.append("&amp;");
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString().replace("...", "&hellip;");
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.booktranslator.service;
+
+import com.example.booktranslator.model.BookSummary;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses a full page of Gutendex search results and a 40-segment batch chat completion, including
+ * decoding the tagged segments out of the message content.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonParsingBenchmark {
+
+    private static final int BATCH_SEGMENTS = 40;
+
+    private ObjectMapper objectMapper;
+    private String searchResponse;
+    private String chatCompletion;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        searchResponse = BookFixtures.resource("gutendex-search.json");
+        chatCompletion = BookFixtures.resource("chat-completion.json");
+    }
+
+    @Benchmark
+    public List<BookSummary> gutendexSearch() {
+        return PublicDomainBookService.parseSearchResults(objectMapper, searchResponse);
+    }
+
+    @Benchmark
+    public Optional<List<String>> chatCompletionBatch() throws JsonProcessingException {
+        return OpenAiClient.messageContent(objectMapper.readTree(chatCompletion))
+                .flatMap(content -> SegmentBatcher.decode(content, BATCH_SEGMENTS));
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.booktranslator.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Segments a cleaned book body in each mode. {@code maxSegments} covers the interactive limit, a large
+ * range request and effectively the whole book.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SegmentationBenchmark {
+
+    @Param({"sentences", "pages", "chapters", "tokens"})
+    public String mode;
+
+    @Param({"262144", "1048576", "4194304"})
+    public int size;
+
+    @Param({"50", "1000", "2147483647"})
+    public int maxSegments;
+
+    private SegmentationService segmentationService;
+    private String text;
+
+    @Setup
+    public void setUp() {
+        segmentationService = new SegmentationService();
+        text = GutenbergBoilerplate.strip(BookFixtures.plainText(size));
+    }
+
+    @Benchmark
+    public List<String> segment() {
+        return segmentationService.segmentText(text, mode, maxSegments);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.booktranslator.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole-book sentence spans without materializing segments, scanning sequentially and in parallel chunks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SentenceSpansBenchmark {
+
+    @Param({"1048576", "4194304"})
+    public int size;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        text = GutenbergBoilerplate.strip(BookFixtures.plainText(size));
+    }
+
+    @Benchmark
+    public SentenceSpans sequential() {
+        return SentenceSegmenter.segment(text, Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public SentenceSpans parallel() {
+        return SentenceSegmenter.segmentParallel(text);
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.booktranslator.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cleans downloaded payloads the way {@link PublicDomainBookService} does: HTML is flattened to text and
+ * the Gutenberg boilerplate is stripped. {@code extractHtml} isolates the extractor on the HTML edition,
+ * and {@code regexHtml} is the regex chain it replaced, kept as the baseline to compare it with.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextCleaningBenchmark {
+
+    @Param({"262144", "1048576", "4194304"})
+    public int size;
+
+    private String plainText;
+    private String html;
+
+    @Setup
+    public void setUp() {
+        plainText = BookFixtures.plainText(size);
+        html = BookFixtures.html(size);
+    }
+
+    @Benchmark
+    public String cleanPlainText() {
+        return PublicDomainBookService.cleanText(plainText);
+    }
+
+    @Benchmark
+    public String cleanHtml() {
+        return PublicDomainBookService.cleanText(html);
+    }
+
+    @Benchmark
+    public String extractHtml() {
+        return HtmlTextExtractor.extract(html);
+    }
+
+    @Benchmark
+    public String regexHtml() {
+        return html.replaceAll("<[^>]+>", " ")
+                .replaceAll("&nbsp;", " ")
+                .replaceAll("&amp;", "&")
+                .replaceAll("\\s+", " ")
+                .trim();
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.booktranslator.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "audio.library")
+public record AudioLibraryProperties(
+        String directory,
+        Long maxBytes,
+        Duration janitorInterval,
+        Duration orphanAge
+) {
+}
@@ -0,0 +1,14 @@
+package com.example.booktranslator.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "book.cache")
+public record BookCacheProperties(
+        Boolean enabled,
+        String directory,
+        Long maxBytes,
+        Duration revalidateAfter
+) {
+}
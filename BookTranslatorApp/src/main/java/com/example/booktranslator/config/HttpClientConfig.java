@@ -0,0 +1,128 @@
+package com.example.booktranslator.config;
+
+import com.example.booktranslator.service.PipelineMetrics;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Scope;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One {@link WebClient.Builder} per upstream, each on its own Reactor Netty connection pool so a slow
+ * upstream cannot exhaust connections needed by the other. Pools publish Micrometer gauges under
+ * {@code reactor.netty.connection.provider.*} tagged with the profile name, and every response is counted
+ * by status and received bytes under the profile name.
+ * <p>
+ * Declaring these builders replaces Spring Boot's default one, so the Boot {@link WebClientCustomizer}s
+ * (codecs and Jackson settings) are applied here instead.
+ */
+@Configuration(proxyBeanMethods = false)
+public class HttpClientConfig {
+
+    public static final String OPENAI = "openai";
+    public static final String GUTENDEX = "gutendex";
+
+    private static final int DEFAULT_MAX_CONNECTIONS = 50;
+    private static final int DEFAULT_PENDING_ACQUIRE_MAX_COUNT = 500;
+    private static final Duration DEFAULT_PENDING_ACQUIRE_TIMEOUT = Duration.ofSeconds(45);
+    private static final Duration DEFAULT_MAX_IDLE_TIME = Duration.ofSeconds(30);
+    private static final Duration DEFAULT_MAX_LIFE_TIME = Duration.ofMinutes(5);
+    private static final Duration DEFAULT_EVICT_IN_BACKGROUND = Duration.ofSeconds(30);
+    private static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration DEFAULT_READ_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration DEFAULT_RESPONSE_TIMEOUT = Duration.ofSeconds(30);
+    private static final int DEFAULT_MAX_IN_MEMORY_BYTES = 16 * 1024 * 1024;
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider openAiConnectionProvider(HttpClientProperties properties) {
+        return connectionProvider(OPENAI, properties.profile(OPENAI));
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider gutendexConnectionProvider(HttpClientProperties properties) {
+        return connectionProvider(GUTENDEX, properties.profile(GUTENDEX));
+    }
+
+    @Bean
+    @Scope("prototype")
+    @Qualifier(OPENAI)
+    public WebClient.Builder openAiWebClientBuilder(@Qualifier("openAiConnectionProvider") ConnectionProvider connectionProvider,
+                                                    HttpClientProperties properties,
+                                                    ObjectProvider<WebClientCustomizer> customizers,
+                                                    PipelineMetrics metrics) {
+        return webClientBuilder(OPENAI, connectionProvider, properties.profile(OPENAI), customizers, metrics);
+    }
+
+    @Bean
+    @Scope("prototype")
+    @Qualifier(GUTENDEX)
+    public WebClient.Builder gutendexWebClientBuilder(@Qualifier("gutendexConnectionProvider") ConnectionProvider connectionProvider,
+                                                      HttpClientProperties properties,
+                                                      ObjectProvider<WebClientCustomizer> customizers,
+                                                      PipelineMetrics metrics) {
+        return webClientBuilder(GUTENDEX, connectionProvider, properties.profile(GUTENDEX), customizers, metrics);
+    }
+
+    static ConnectionProvider connectionProvider(String name, HttpClientProperties.Profile profile) {
+        return ConnectionProvider.builder(name)
+                .maxConnections(orDefault(profile.maxConnections(), DEFAULT_MAX_CONNECTIONS))
+                .pendingAcquireMaxCount(orDefault(profile.pendingAcquireMaxCount(), DEFAULT_PENDING_ACQUIRE_MAX_COUNT))
+                .pendingAcquireTimeout(orDefault(profile.pendingAcquireTimeout(), DEFAULT_PENDING_ACQUIRE_TIMEOUT))
+                .maxIdleTime(orDefault(profile.maxIdleTime(), DEFAULT_MAX_IDLE_TIME))
+                .maxLifeTime(orDefault(profile.maxLifeTime(), DEFAULT_MAX_LIFE_TIME))
+                .evictInBackground(orDefault(profile.evictInBackground(), DEFAULT_EVICT_IN_BACKGROUND))
+                .metrics(true)
+                .build();
+    }
+
+    static WebClient.Builder webClientBuilder(String name,
+                                              ConnectionProvider connectionProvider,
+                                              HttpClientProperties.Profile profile,
+                                              ObjectProvider<WebClientCustomizer> customizers,
+                                              PipelineMetrics metrics) {
+        long readTimeoutMillis = orDefault(profile.readTimeout(), DEFAULT_READ_TIMEOUT).toMillis();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS,
+                        (int) orDefault(profile.connectTimeout(), DEFAULT_CONNECT_TIMEOUT).toMillis())
+                .responseTimeout(orDefault(profile.responseTimeout(), DEFAULT_RESPONSE_TIMEOUT))
+                // Bounds the gap between two reads, so a stalled body fails even after the headers arrived.
+                .doOnConnected(connection -> connection.addHandlerLast(
+                        new ReadTimeoutHandler(readTimeoutMillis, TimeUnit.MILLISECONDS)))
+                .compress(!Boolean.FALSE.equals(profile.compress()))
+                .followRedirect(Boolean.TRUE.equals(profile.followRedirect()));
+        int maxInMemoryBytes = profile.maxInMemorySize() != null
+                ? (int) profile.maxInMemorySize().toBytes()
+                : DEFAULT_MAX_IN_MEMORY_BYTES;
+        WebClient.Builder builder = WebClient.builder();
+        customizers.orderedStream().forEach(customizer -> customizer.customize(builder));
+        return builder
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(maxInMemoryBytes))
+                .filter(responseMetrics(name, metrics));
+    }
+
+    private static ExchangeFilterFunction responseMetrics(String name, PipelineMetrics metrics) {
+        return ExchangeFilterFunction.ofResponseProcessor(response -> {
+            metrics.upstreamResponse(name, response.statusCode().value());
+            return Mono.just(response.mutate()
+                    .body(body -> body.doOnNext(buffer -> metrics.upstreamBytes(name, buffer.readableByteCount())))
+                    .build());
+        });
+    }
+
+    private static <T> T orDefault(T value, T fallback) {
+        return value != null ? value : fallback;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.booktranslator.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Named HTTP client profiles, one per upstream, bound from {@code http.clients.<name>.*}. Unset values fall
+ * back to the defaults in {@link HttpClientConfig}.
+ */
+@ConfigurationProperties(prefix = "http")
+public record HttpClientProperties(
+        Map<String, Profile> clients
+) {
+
+    public record Profile(
+            Integer maxConnections,
+            Integer pendingAcquireMaxCount,
+            Duration pendingAcquireTimeout,
+            Duration maxIdleTime,
+            Duration maxLifeTime,
+            Duration evictInBackground,
+            Duration connectTimeout,
+            Duration readTimeout,
+            Duration responseTimeout,
+            Boolean compress,
+            Boolean followRedirect,
+            DataSize maxInMemorySize
+    ) {
+    }
+
+    public Profile profile(String name) {
+        Profile profile = clients != null ? clients.get(name) : null;
+        return profile != null
+                ? profile
+                : new Profile(null, null, null, null, null, null, null, null, null, null, null, null);
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.booktranslator.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "translation.jobs")
+public record JobProperties(
+        Integer threads,
+        Integer queueCapacity,
+        Duration retention,
+        String checkpointDirectory,
+        Boolean resumeOnStartup
+) {
+}
@@ -0,0 +1,16 @@
+package com.example.booktranslator.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "openai.rate-limit")
+public record RateLimitProperties(
+        Integer requestsPerMinute,
+        Integer tokensPerMinute,
+        Integer maxAttempts,
+        Duration initialBackoff,
+        Duration maxBackoff,
+        Duration deadline
+) {
+}
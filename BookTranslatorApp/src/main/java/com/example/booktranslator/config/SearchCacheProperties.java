@@ -0,0 +1,14 @@
+package com.example.booktranslator.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "book.search.cache")
+public record SearchCacheProperties(
+        Boolean enabled,
+        Integer maxEntries,
+        Duration ttl,
+        Duration staleWhileRevalidate
+) {
+}
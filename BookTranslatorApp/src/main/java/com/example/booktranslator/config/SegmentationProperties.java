@@ -0,0 +1,9 @@
+package com.example.booktranslator.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "book.segmentation")
+public record SegmentationProperties(
+        Integer tokenTarget
+) {
+}
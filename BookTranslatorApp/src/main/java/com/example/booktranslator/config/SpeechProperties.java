@@ -0,0 +1,15 @@
+package com.example.booktranslator.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "openai.speech")
+public record SpeechProperties(
+        Integer maxChunkChars,
+        Integer concurrency,
+        Integer maxAttempts,
+        Duration retryBackoff,
+        Boolean streaming
+) {
+}
@@ -0,0 +1,11 @@
+package com.example.booktranslator.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "openai.translation.cache")
+public record TranslationCacheProperties(
+        Boolean enabled,
+        Integer memoryEntries,
+        String directory
+) {
+}
@@ -0,0 +1,10 @@
+package com.example.booktranslator.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "openai.translation")
+public record TranslationProperties(
+        Integer concurrency,
+        Integer batchTokenBudget
+) {
+}
@@ -0,0 +1,11 @@
+package com.example.booktranslator.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "translation.store")
+public record TranslationStoreProperties(
+        Boolean enabled,
+        String directory,
+        Integer pageSize
+) {
+}
@@ -1,19 +1,53 @@
 package com.example.booktranslator.controller;
 
 import com.example.booktranslator.service.AudioGenerationService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
 import java.util.Optional;
 
+/**
+ * Serves generated audio. Files are named after a hash of their content and never change, so responses carry
+ * a strong ETag and a year-long immutable Cache-Control, and conditional requests are answered with 304.
+ * <p>
+ * Byte ranges are supported for seeking: multi-range requests are answered by Spring's resource region
+ * converter as {@code multipart/byteranges}, while whole-file and single-range responses are handed to
+ * Tomcat's sendfile support when the connector offers it, so the bytes go from the page cache to the socket
+ * without being copied through the JVM. A range is only served while the client's {@code If-Range}
+ * validator still matches the file; otherwise the whole file is sent, so a resumed download is never
+ * spliced together from two versions.
+ */
 @Controller
 public class AudioController {
 
+    static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+    private static final MediaType AUDIO_MPEG = MediaType.valueOf("audio/mpeg");
+
     private final AudioGenerationService audioGenerationService;
 
     public AudioController(AudioGenerationService audioGenerationService) {
@@ -21,22 +55,169 @@ public class AudioController {
     }
 
     @GetMapping("/audio/{fileName}")
-    public ResponseEntity<Resource> streamAudio(@PathVariable String fileName) {
-        Optional<Resource> resource = audioGenerationService.loadAudio(fileName);
-        return resource.map(res -> ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=" + fileName)
-                        .contentType(MediaType.valueOf("audio/mpeg"))
-                        .body(res))
-                .orElseGet(() -> ResponseEntity.notFound().build());
+    public ResponseEntity<Resource> streamAudio(@PathVariable String fileName, ServletWebRequest request) {
+        return serve(fileName, request, "inline", AUDIO_MPEG);
     }
 
     @GetMapping("/audio/{fileName}/download")
-    public ResponseEntity<Resource> downloadAudio(@PathVariable String fileName) {
+    public ResponseEntity<Resource> downloadAudio(@PathVariable String fileName, ServletWebRequest request) {
+        return serve(fileName, request, "attachment", MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+    private ResponseEntity<Resource> serve(String fileName, ServletWebRequest request, String disposition, MediaType contentType) {
         Optional<Resource> resource = audioGenerationService.loadAudio(fileName);
-        return resource.map(res -> ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + fileName)
-                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                        .body(res))
-                .orElseGet(() -> ResponseEntity.notFound().build());
+        if (resource.isEmpty()) {
+            if (audioGenerationService.canStream(fileName)) {
+                // Not narrated yet: hand over to the live stream, without letting anyone cache the detour.
+                return ResponseEntity.status(HttpStatus.FOUND)
+                        .location(URI.create("/audio/" + fileName + "/live"
+                                + ("attachment".equals(disposition) ? "?download=true" : "")))
+                        .cacheControl(CacheControl.noStore())
+                        .build();
+            }
+            return ResponseEntity.notFound().build();
+        }
+        Resource audio = resource.get();
+        long length;
+        long lastModified;
+        try {
+            length = audio.contentLength();
+            lastModified = audio.lastModified();
+        } catch (IOException ex) {
+            return ResponseEntity.notFound().build();
+        }
+        String etag = etag(fileName);
+        if (request.checkNotModified(etag, lastModified)) {
+            // The 304 status and validators are already on the response.
+            return null;
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(etag);
+        headers.setLastModified(lastModified);
+        headers.setCacheControl(IMMUTABLE);
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.set(HttpHeaders.CONTENT_DISPOSITION, disposition + "; filename=" + fileName);
+        headers.setContentType(contentType);
+
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(request.getHeader(HttpHeaders.RANGE));
+        } catch (IllegalArgumentException ex) {
+            return unsatisfiable(length);
+        }
+        boolean stale = !ranges.isEmpty() && !ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), etag, lastModified);
+        if (stale) {
+            ranges = List.of();
+        }
+        if (ranges.size() <= 1 && length > 0 && supportsSendfile(request.getRequest(), audio)) {
+            return sendfile(request.getRequest(), audio, length, ranges, headers);
+        }
+        if (stale) {
+            // Spring would still apply the Range header to a Resource body; a stream is always sent whole.
+            try {
+                headers.setContentLength(length);
+                return ResponseEntity.ok().headers(headers).body(new InputStreamResource(audio.getInputStream()));
+            } catch (IOException ex) {
+                return ResponseEntity.notFound().build();
+            }
+        }
+        // Spring turns a Resource body into a 206 (single or multipart/byteranges) when Range is present.
+        return ResponseEntity.ok().headers(headers).body(audio);
+    }
+
+    /**
+     * The content hash the file is named after, which identifies its bytes across rewrites and restarts,
+     * unlike its modification time.
+     */
+    private static String etag(String fileName) {
+        int extension = fileName.lastIndexOf('.');
+        return "\"" + (extension > 0 ? fileName.substring(0, extension) : fileName) + "\"";
+    }
+
+    /**
+     * Whether an {@code If-Range} validator, if any, still identifies the file: an entity tag must match
+     * strongly, and a date must equal the file's modification time to the second.
+     */
+    private static boolean ifRangeMatches(String ifRange, String etag, long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        String validator = ifRange.trim();
+        if (validator.startsWith("\"") || validator.startsWith("W/")) {
+            return validator.equals(etag);
+        }
+        try {
+            long since = ZonedDateTime.parse(validator, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+            return since == lastModified / 1000;
+        } catch (DateTimeParseException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Narrates a prepared script while it is being synthesized, so playback starts with the first buffer
+     * from the speech endpoint. The response has no length and no ranges; once the narration is complete
+     * the file is served by {@link #streamAudio} with caching and seeking.
+     */
+    @GetMapping("/audio/{fileName}/live")
+    public ResponseEntity<StreamingResponseBody> liveAudio(@PathVariable String fileName,
+                                                           @RequestParam(value = "download", defaultValue = "false") boolean download) {
+        if (!audioGenerationService.canStream(fileName)) {
+            if (audioGenerationService.loadAudio(fileName).isPresent()) {
+                return ResponseEntity.status(HttpStatus.FOUND)
+                        .location(URI.create("/audio/" + fileName + (download ? "/download" : "")))
+                        .cacheControl(CacheControl.noStore())
+                        .build();
+            }
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(download ? MediaType.APPLICATION_OCTET_STREAM : AUDIO_MPEG)
+                .cacheControl(CacheControl.noStore())
+                .header(HttpHeaders.CONTENT_DISPOSITION, (download ? "attachment" : "inline") + "; filename=" + fileName)
+                .body(out -> audioGenerationService.streamAudio(fileName, out));
+    }
+
+    private ResponseEntity<Resource> sendfile(HttpServletRequest request, Resource audio, long length,
+                                              List<HttpRange> ranges, HttpHeaders headers) {
+        long start = 0;
+        long end = length - 1;
+        HttpStatus status = HttpStatus.OK;
+        if (!ranges.isEmpty()) {
+            try {
+                start = ranges.get(0).getRangeStart(length);
+                end = ranges.get(0).getRangeEnd(length);
+            } catch (IllegalArgumentException ex) {
+                return unsatisfiable(length);
+            }
+            if (start >= length || start > end) {
+                return unsatisfiable(length);
+            }
+            status = HttpStatus.PARTIAL_CONTENT;
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        try {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, audio.getFile().getCanonicalPath());
+        } catch (IOException ex) {
+            return ResponseEntity.ok().headers(headers).body(audio);
+        }
+        request.setAttribute(SENDFILE_START_ATTR, start);
+        request.setAttribute(SENDFILE_END_ATTR, end + 1);
+        headers.setContentLength(end - start + 1);
+        // No body: the container transfers the file once the handler returns.
+        return ResponseEntity.status(status).headers(headers).build();
+    }
+
+    private static boolean supportsSendfile(HttpServletRequest request, Resource audio) {
+        return Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))
+                && "GET".equals(request.getMethod())
+                && audio.isFile();
+    }
+
+    private static ResponseEntity<Resource> unsatisfiable(long length) {
+        return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                .build();
     }
 }
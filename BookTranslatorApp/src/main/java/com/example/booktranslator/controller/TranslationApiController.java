@@ -0,0 +1,60 @@
+package com.example.booktranslator.controller;
+
+import com.example.booktranslator.model.BookSummary;
+import com.example.booktranslator.model.TranslationJobRequest;
+import com.example.booktranslator.model.TranslationRequest;
+import com.example.booktranslator.model.TranslationResult;
+import com.example.booktranslator.service.PublicDomainBookService;
+import com.example.booktranslator.service.TranslationPipeline;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * JSON endpoints built on the non-blocking service variants. The handlers return a {@link Mono}, so the
+ * servlet thread is released as soon as the work is started and a request waiting on OpenAI costs no
+ * thread until its result is written.
+ */
+@RestController
+@RequestMapping("/api")
+public class TranslationApiController {
+
+    private final PublicDomainBookService bookService;
+    private final TranslationPipeline pipeline;
+
+    public TranslationApiController(PublicDomainBookService bookService, TranslationPipeline pipeline) {
+        this.bookService = bookService;
+        this.pipeline = pipeline;
+    }
+
+    @GetMapping("/books")
+    public Mono<List<BookSummary>> searchBooks(@RequestParam("query") String query) {
+        return bookService.searchBooksReactive(query);
+    }
+
+    /**
+     * Translates a range of a book and replies with the result, without going through the job queue.
+     * Answers 422 when the book cannot be downloaded or has nothing in the range.
+     */
+    @PostMapping("/translate")
+    public Mono<ResponseEntity<TranslationResult>> translate(@RequestParam("bookId") long bookId,
+                                                             @RequestParam(value = "downloadUrl", required = false) String downloadUrl,
+                                                             @RequestParam("title") String title,
+                                                             @RequestParam(value = "offset", defaultValue = "0") int offset,
+                                                             @RequestParam("segments") int segments,
+                                                             @RequestParam(value = "segmentationMode", defaultValue = "sentences") String segmentationMode,
+                                                             @RequestParam(value = "language", defaultValue = "Spanish") String targetLanguage) {
+        int safeSegmentCount = Math.max(1, Math.min(segments, TranslationRequest.MAX_SEGMENTS));
+        TranslationJobRequest request = new TranslationJobRequest(
+                bookId, downloadUrl, title, Math.max(0, offset), safeSegmentCount, segmentationMode, targetLanguage);
+        return pipeline.translate(request)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.unprocessableEntity().build());
+    }
+}
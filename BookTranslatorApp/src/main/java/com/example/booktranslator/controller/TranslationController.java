@@ -1,40 +1,58 @@
 package com.example.booktranslator.controller;
 
 import com.example.booktranslator.model.BookSummary;
+import com.example.booktranslator.model.ChapterInfo;
+import com.example.booktranslator.model.JobCompletion;
+import com.example.booktranslator.model.JobStage;
+import com.example.booktranslator.model.JobStatus;
+import com.example.booktranslator.model.NarratedRange;
+import com.example.booktranslator.model.TranslatedBookPage;
+import com.example.booktranslator.model.TranslationJobRequest;
 import com.example.booktranslator.model.TranslationRequest;
 import com.example.booktranslator.model.TranslationResult;
-import com.example.booktranslator.model.TranslationSegment;
 import com.example.booktranslator.service.AudioGenerationService;
-import com.example.booktranslator.service.OpenAiTranslationService;
 import com.example.booktranslator.service.PublicDomainBookService;
-import com.example.booktranslator.service.SegmentationService;
+import com.example.booktranslator.service.TranslatedBookStore;
+import com.example.booktranslator.service.TranslationJob;
+import com.example.booktranslator.service.TranslationJobService;
 import jakarta.validation.Valid;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 @Controller
 public class TranslationController {
 
     private final PublicDomainBookService bookService;
-    private final SegmentationService segmentationService;
-    private final OpenAiTranslationService translationService;
+    private final TranslationJobService jobService;
+    private final TranslatedBookStore translatedBookStore;
     private final AudioGenerationService audioGenerationService;
 
     public TranslationController(PublicDomainBookService bookService,
-                                 SegmentationService segmentationService,
-                                 OpenAiTranslationService translationService,
+                                 TranslationJobService jobService,
+                                 TranslatedBookStore translatedBookStore,
                                  AudioGenerationService audioGenerationService) {
         this.bookService = bookService;
-        this.segmentationService = segmentationService;
-        this.translationService = translationService;
+        this.jobService = jobService;
+        this.translatedBookStore = translatedBookStore;
         this.audioGenerationService = audioGenerationService;
     }
 
@@ -54,6 +72,7 @@ public class TranslationController {
         List<BookSummary> results = bookService.searchBooks(request.getTitle());
         model.addAttribute("results", results);
         model.addAttribute("segments", request.getSegments());
+        model.addAttribute("offset", request.getOffset());
         model.addAttribute("segmentationMode", request.getSegmentationMode());
         model.addAttribute("searchedTitle", request.getTitle());
         if (results.isEmpty()) {
@@ -66,34 +85,165 @@ public class TranslationController {
     public String translate(@RequestParam("bookId") long bookId,
                             @RequestParam(value = "downloadUrl", required = false) String downloadUrl,
                             @RequestParam("title") String title,
+                            @RequestParam(value = "offset", defaultValue = "0") int offset,
                             @RequestParam("segments") int segments,
                             @RequestParam("segmentationMode") String segmentationMode,
                             Model model) {
-        int safeSegmentCount = Math.max(1, Math.min(segments, 200));
+        int safeSegmentCount = Math.max(1, Math.min(segments, TranslationRequest.MAX_SEGMENTS));
+        TranslationJobRequest request = new TranslationJobRequest(
+                bookId, downloadUrl, title, Math.max(0, offset), safeSegmentCount, segmentationMode, "Spanish");
+        if (translatedBookStore.covers(request)) {
+            int pageSize = translatedBookStore.defaultPageSize();
+            return "redirect:" + translatedBookPath(request, request.offset() / pageSize + 1);
+        }
+        try {
+            TranslationJob job = jobService.submit(request);
+            return "redirect:/jobs/" + job.getId();
+        } catch (RejectedExecutionException ex) {
+            model.addAttribute("error", "The translator is busy right now. Please try again in a moment.");
+            model.addAttribute("translationRequest", new TranslationRequest());
+            return "index";
+        }
+    }
+
+    /**
+     * The book's table of contents, so a chapter range can be chosen before translating.
+     */
+    @GetMapping("/books/{bookId}/chapters")
+    @ResponseBody
+    public ResponseEntity<List<ChapterInfo>> chapters(@PathVariable long bookId,
+                                                      @RequestParam(value = "downloadUrl", required = false) String downloadUrl) {
+        return ResponseEntity.of(bookService.tableOfContents(bookId, downloadUrl));
+    }
+
+    /**
+     * A page of a previously translated book, served from the store without running the pipeline.
+     */
+    @GetMapping("/books/{bookId}/translation")
+    public String translatedBook(@PathVariable long bookId,
+                                 @RequestParam(value = "source", required = false) String downloadUrl,
+                                 @RequestParam(value = "mode", defaultValue = "sentences") String segmentationMode,
+                                 @RequestParam(value = "language", defaultValue = "Spanish") String targetLanguage,
+                                 @RequestParam(value = "page", defaultValue = "1") int page,
+                                 @RequestParam(value = "size", required = false) Integer size,
+                                 Model model) {
+        int pageSize = size != null ? size : translatedBookStore.defaultPageSize();
+        Optional<TranslatedBookPage> found = translatedBookStore.page(
+                bookId, downloadUrl, segmentationMode, targetLanguage, page, pageSize);
+        if (found.isEmpty()) {
+            model.addAttribute("error", "That book has not been translated yet. Please start a new translation.");
+            model.addAttribute("translationRequest", new TranslationRequest());
+            return "index";
+        }
+        model.addAttribute("bookPage", withPlayableNarration(found.get(), downloadUrl));
+        return "book";
+    }
+
+    /**
+     * Keeps the page's narrated ranges that can still be played. A streamed narration that nobody listened
+     * to only exists as a prepared script, which is held in memory, so after a restart or eviction its
+     * script is prepared again from the stored translation; a range with nothing stored is left out.
+     */
+    private TranslatedBookPage withPlayableNarration(TranslatedBookPage page, String downloadUrl) {
+        List<NarratedRange> playable = new ArrayList<>();
+        for (NarratedRange range : page.narration()) {
+            if (audioGenerationService.isAvailable(range.audioFileName())) {
+                playable.add(range);
+                continue;
+            }
+            audioGenerationService.prepareAudio(translatedBookStore.segments(page.book().id(), downloadUrl,
+                            page.segmentationMode(), page.targetLanguage(), range.first(), range.last()))
+                    .ifPresent(fileName -> playable.add(new NarratedRange(range.first(), range.last(), fileName)));
+        }
+        return new TranslatedBookPage(page.book(), page.segmentationMode(), page.targetLanguage(), page.segments(),
+                page.page(), page.pageSize(), page.totalSegments(), playable);
+    }
 
-        Optional<String> bookText = bookService.downloadBookText(bookId, downloadUrl);
-        if (bookText.isEmpty()) {
-            model.addAttribute("error", "Unable to download the selected book. Please try another title.");
+    @GetMapping("/jobs/{jobId}")
+    public String job(@PathVariable String jobId, Model model) {
+        Optional<TranslationJob> found = jobService.find(jobId);
+        if (found.isEmpty()) {
+            model.addAttribute("error", "That translation is no longer available. Please start a new one.");
             model.addAttribute("translationRequest", new TranslationRequest());
             return "index";
         }
-        List<String> segmented = segmentationService.segmentText(bookText.get(), segmentationMode, safeSegmentCount);
-        if (segmented.isEmpty()) {
-            model.addAttribute("error", "No content extracted from book for translation.");
+        TranslationJob job = found.get();
+        if (job.getStage() == JobStage.FAILED) {
+            model.addAttribute("error", job.getError());
             model.addAttribute("translationRequest", new TranslationRequest());
             return "index";
         }
-        List<TranslationSegment> translations = translationService.translateSegments(segmented, "Spanish");
-        Optional<String> audioFileName = audioGenerationService.generateAudio(translations);
-
-        TranslationResult result = new TranslationResult(
-                new BookSummary(bookId, title, "", downloadUrl),
-                translations,
-                audioFileName.orElse(null)
-        );
+        if (job.getStage() != JobStage.COMPLETED) {
+            model.addAttribute("job", job.status());
+            model.addAttribute("title", job.getRequest().title());
+            return "job";
+        }
+        TranslationResult result = job.getResult();
         model.addAttribute("translationResult", result);
-        model.addAttribute("segmentationMode", segmentationMode);
-        model.addAttribute("segmentCount", translations.size());
+        model.addAttribute("segmentationMode", job.getRequest().segmentationMode());
+        model.addAttribute("segmentCount", result.segments().size());
+        model.addAttribute("bookUrl", translatedBookPath(job.getRequest(), 1));
         return "translation";
     }
+
+    /**
+     * Streams each segment as a {@code segment} event as soon as it is translated, followed by a single
+     * {@code complete} event carrying the audio file name, or {@code failed} carrying the error. Each event's
+     * id is its position in the job's stream, so a client reconnecting with {@code Last-Event-ID} resumes
+     * after the events it already has instead of receiving the whole job again. Positions rather than
+     * segment indices are used because segments translated in parallel arrive out of order.
+     */
+    @GetMapping(path = "/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public ResponseEntity<Flux<ServerSentEvent<Object>>> jobEvents(@PathVariable String jobId,
+                                                                   @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        long delivered = parseEventId(lastEventId);
+        return ResponseEntity.of(jobService.find(jobId).map(job -> job.segments()
+                .index()
+                .skip(delivered)
+                .map(segment -> ServerSentEvent.builder((Object) segment.getT2())
+                        .event("segment")
+                        .id(String.valueOf(segment.getT1() + 1))
+                        .build())
+                .concatWith(Mono.fromSupplier(() -> finalEvent(job)))));
+    }
+
+    private static long parseEventId(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(lastEventId.trim()));
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    @GetMapping("/jobs/{jobId}/status")
+    @ResponseBody
+    public ResponseEntity<JobStatus> jobStatus(@PathVariable String jobId) {
+        return ResponseEntity.of(jobService.find(jobId).map(TranslationJob::status));
+    }
+
+    private static String translatedBookPath(TranslationJobRequest request, int page) {
+        return UriComponentsBuilder.fromPath("/books/{bookId}/translation")
+                .queryParamIfPresent("source", Optional.ofNullable(request.downloadUrl()))
+                .queryParam("mode", request.segmentationMode())
+                .queryParam("language", request.targetLanguage())
+                .queryParam("page", page)
+                .buildAndExpand(request.bookId())
+                .encode()
+                .toUriString();
+    }
+
+    private ServerSentEvent<Object> finalEvent(TranslationJob job) {
+        if (job.getStage() == JobStage.COMPLETED) {
+            return ServerSentEvent.builder((Object) new JobCompletion(job.getResult().audioFileName(), null))
+                    .event("complete")
+                    .build();
+        }
+        return ServerSentEvent.builder((Object) new JobCompletion(null, job.getError()))
+                .event("failed")
+                .build();
+    }
 }
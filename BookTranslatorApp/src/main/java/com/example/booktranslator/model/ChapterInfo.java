@@ -0,0 +1,13 @@
+package com.example.booktranslator.model;
+
+/**
+ * One entry of a book's table of contents. {@code start} and {@code length} are character offsets into
+ * the cleaned book text.
+ */
+public record ChapterInfo(
+        int index,
+        String title,
+        int start,
+        int length
+) {
+}
@@ -0,0 +1,7 @@
+package com.example.booktranslator.model;
+
+public record JobCompletion(
+        String audioFileName,
+        String error
+) {
+}
@@ -0,0 +1,14 @@
+package com.example.booktranslator.model;
+
+public enum JobStage {
+    QUEUED,
+    DOWNLOADING,
+    TRANSLATING,
+    GENERATING_AUDIO,
+    COMPLETED,
+    FAILED;
+
+    public boolean isFinished() {
+        return this == COMPLETED || this == FAILED;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.booktranslator.model;
+
+/**
+ * Progress of a job. {@code segmentsPerSecond} counts only segments translated by this run, not those
+ * restored from a checkpoint, and {@code etaSeconds} is null until the rate is known.
+ */
+public record JobStatus(
+        String id,
+        JobStage stage,
+        int completedSegments,
+        int totalSegments,
+        String error,
+        double segmentsPerSecond,
+        Long etaSeconds
+) {
+}
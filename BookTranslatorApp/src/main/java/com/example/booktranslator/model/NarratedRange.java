@@ -0,0 +1,12 @@
+package com.example.booktranslator.model;
+
+/**
+ * The narration of one translated range of a stored book, covering segments {@code first} to {@code last}
+ * inclusive, counting from one.
+ */
+public record NarratedRange(
+        int first,
+        int last,
+        String audioFileName
+) {
+}
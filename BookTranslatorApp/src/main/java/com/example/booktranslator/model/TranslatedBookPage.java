@@ -0,0 +1,32 @@
+package com.example.booktranslator.model;
+
+import java.util.List;
+
+/**
+ * One page of a stored translation. {@code totalSegments} counts up to the highest segment translated so
+ * far, so a book translated in ranges may have gaps, which simply do not appear in {@code segments}.
+ * {@code narration} lists the narrated ranges that overlap this page.
+ */
+public record TranslatedBookPage(
+        BookSummary book,
+        String segmentationMode,
+        String targetLanguage,
+        List<TranslationSegment> segments,
+        int page,
+        int pageSize,
+        int totalSegments,
+        List<NarratedRange> narration
+) {
+
+    public int totalPages() {
+        return Math.max(1, (totalSegments + pageSize - 1) / pageSize);
+    }
+
+    public boolean hasPrevious() {
+        return page > 1;
+    }
+
+    public boolean hasNext() {
+        return page < totalPages();
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.booktranslator.model;
+
+/**
+ * A range of a book to translate: {@code segments} segments starting after the first {@code offset}.
+ */
+public record TranslationJobRequest(
+        long bookId,
+        String downloadUrl,
+        String title,
+        int offset,
+        int segments,
+        String segmentationMode,
+        String targetLanguage
+) {
+}
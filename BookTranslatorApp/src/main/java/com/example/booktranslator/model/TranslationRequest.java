@@ -6,13 +6,21 @@ import jakarta.validation.constraints.NotBlank;
 
 public class TranslationRequest {
 
+    /**
+     * Upper bound on one job's range, large enough for a whole novel split into sentences.
+     */
+    public static final int MAX_SEGMENTS = 100_000;
+
     @NotBlank(message = "Please enter a book title")
     private String title;
 
     @Min(value = 1, message = "Translate at least one segment")
-    @Max(value = 200, message = "Limit segments to 200 for performance")
+    @Max(value = MAX_SEGMENTS, message = "Limit segments to 100000 per translation")
     private int segments = 10;
 
+    @Min(value = 0, message = "The starting segment cannot be negative")
+    private int offset;
+
     @NotBlank(message = "Provide a segmentation mode")
     private String segmentationMode = "sentences";
 
@@ -32,6 +40,14 @@ public class TranslationRequest {
         this.segments = segments;
     }
 
+    public int getOffset() {
+        return offset;
+    }
+
+    public void setOffset(int offset) {
+        this.offset = offset;
+    }
+
     public String getSegmentationMode() {
         return segmentationMode;
     }
@@ -1,8 +1,26 @@
 package com.example.booktranslator.model;
 
+/**
+ * One segment and its translation. {@code fallback} marks a segment whose translation failed and which
+ * carries its source text instead; such segments are shown but never checkpointed or stored, so a later
+ * run translates them again.
+ */
 public record TranslationSegment(
         int index,
         String source,
-        String translated
+        String translated,
+        boolean fallback
 ) {
+
+    public TranslationSegment(int index, String source, String translated) {
+        this(index, source, translated, false);
+    }
+
+    public static TranslationSegment untranslated(int index, String source) {
+        return new TranslationSegment(index, source, source, true);
+    }
+
+    public TranslationSegment withIndex(int index) {
+        return new TranslationSegment(index, source, translated, fallback);
+    }
 }
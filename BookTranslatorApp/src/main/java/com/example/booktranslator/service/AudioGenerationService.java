@@ -1,70 +1,528 @@
 package com.example.booktranslator.service;
 
+import com.example.booktranslator.config.SpeechProperties;
 import com.example.booktranslator.model.TranslationSegment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.FileSystemResource;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
 
 @Service
 public class AudioGenerationService {
 
     private static final Logger log = LoggerFactory.getLogger(AudioGenerationService.class);
 
+    // The speech endpoint rejects input over 4096 characters; leave headroom for the separators.
+    private static final int DEFAULT_MAX_CHUNK_CHARS = 4000;
+    private static final int DEFAULT_CONCURRENCY = 4;
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final Duration DEFAULT_RETRY_BACKOFF = Duration.ofMillis(500);
+    private static final String SEGMENT_SEPARATOR = System.lineSeparator() + System.lineSeparator();
+    private static final int MAX_PREPARED_SCRIPTS = 256;
+    // Upstream buffers requested ahead of the listener; with the listener's socket this bounds what is held.
+    private static final int STREAM_PREFETCH = 4;
+
     private final OpenAiClient openAiClient;
-    private final Path outputDirectory;
+    private final PipelineMetrics metrics;
+    private final AudioLibrary library;
+    private final SingleFlight<String, Optional<String>> inFlight = new SingleFlight<>();
+    private final int maxChunkChars;
+    private final int concurrency;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final boolean streaming;
+    private final Map<String, List<String>> preparedScripts = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest) {
+                    return size() > MAX_PREPARED_SCRIPTS;
+                }
+            });
+    private final Map<String, CompletableFuture<Void>> liveStreams = new ConcurrentHashMap<>();
 
-    public AudioGenerationService(OpenAiClient openAiClient) {
-        this(openAiClient, Paths.get("audio-output"));
+    @Autowired
+    public AudioGenerationService(OpenAiClient openAiClient, SpeechProperties properties, PipelineMetrics metrics,
+                                  AudioLibrary library) {
+        this.openAiClient = openAiClient;
+        this.metrics = metrics;
+        this.library = library;
+        this.maxChunkChars = properties.maxChunkChars() != null ? properties.maxChunkChars() : DEFAULT_MAX_CHUNK_CHARS;
+        this.concurrency = properties.concurrency() != null ? Math.max(1, properties.concurrency()) : DEFAULT_CONCURRENCY;
+        this.maxAttempts = properties.maxAttempts() != null ? Math.max(1, properties.maxAttempts()) : DEFAULT_MAX_ATTEMPTS;
+        this.retryBackoff = properties.retryBackoff() != null ? properties.retryBackoff() : DEFAULT_RETRY_BACKOFF;
+        this.streaming = Boolean.TRUE.equals(properties.streaming());
     }
 
-    AudioGenerationService(OpenAiClient openAiClient, Path outputDirectory) {
-        this.openAiClient = openAiClient;
-        this.outputDirectory = outputDirectory;
-        try {
-            Files.createDirectories(outputDirectory);
-        } catch (IOException ex) {
-            log.warn("Unable to create audio output directory {}", outputDirectory, ex);
-        }
+    AudioGenerationService(OpenAiClient openAiClient, SpeechProperties properties, PipelineMetrics metrics, Path outputDirectory) {
+        this(openAiClient, properties, metrics, AudioLibrary.at(outputDirectory));
     }
 
+    /**
+     * Synthesizes the segments as one MP3. The script is split into chunks under the speech input limit,
+     * which are synthesized concurrently and retried individually, then written to the file in order as
+     * they arrive, so at most {@code openai.speech.concurrency} parts are held in memory.
+     * A script already narrated with the same voice and model is served from the {@link AudioLibrary}
+     * without synthesis, and concurrent requests for the same script share one synthesis.
+     */
     public Optional<String> generateAudio(List<TranslationSegment> segments) {
         if (segments == null || segments.isEmpty()) {
             return Optional.empty();
         }
-        String script = segments.stream()
-                .map(segment -> segment.source() + System.lineSeparator() + segment.translated())
-                .collect(Collectors.joining(System.lineSeparator() + System.lineSeparator()));
-        return openAiClient.synthesizeSpeech(script)
-                .flatMap(bytes -> writeFile(bytes, "translation-" + UUID.randomUUID() + ".mp3"));
+        List<String> chunks = chunkScript(segments, maxChunkChars);
+        String fileName = AudioLibrary.fileName(OpenAiClient.SPEECH_VOICE, openAiClient.audioModel(), chunks);
+        if (library.contains(fileName)) {
+            log.debug("Reusing narrated audio {}", fileName);
+            return Optional.of(fileName);
+        }
+        return inFlight.run(fileName, () -> library.contains(fileName) ? Optional.of(fileName) : synthesize(chunks, fileName));
     }
 
-    public Optional<Resource> loadAudio(String fileName) {
-        Path filePath = outputDirectory.resolve(fileName);
-        if (!Files.exists(filePath)) {
-            return Optional.empty();
+    /**
+     * Non-blocking counterpart of {@link #generateAudio(List)}: completes with the file name, or empty when
+     * synthesis fails. Speech requests are made without holding a thread per chunk, and stitching and
+     * writing the file run on the bounded elastic scheduler.
+     */
+    public Mono<String> generateAudioReactive(List<TranslationSegment> segments) {
+        if (segments == null || segments.isEmpty()) {
+            return Mono.empty();
         }
-        return Optional.of(new FileSystemResource(filePath.toFile()));
+        List<String> chunks = chunkScript(segments, maxChunkChars);
+        String fileName = AudioLibrary.fileName(OpenAiClient.SPEECH_VOICE, openAiClient.audioModel(), chunks);
+        return Mono.fromCallable(() -> library.contains(fileName))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(stored -> {
+                    if (stored) {
+                        log.debug("Reusing narrated audio {}", fileName);
+                        return Mono.just(fileName);
+                    }
+                    SingleFlight.Claim<Optional<String>> claim = inFlight.claim(fileName);
+                    if (!claim.owner()) {
+                        return Mono.fromFuture(claim.result()).flatMap(Mono::justOrEmpty);
+                    }
+                    return synthesizeReactive(chunks, fileName)
+                            .map(Optional::of)
+                            .defaultIfEmpty(Optional.empty())
+                            .doOnNext(written -> inFlight.complete(fileName, claim, written))
+                            .doOnCancel(() -> inFlight.fail(fileName, claim,
+                                    new CancellationException("Narration of " + fileName + " was cancelled")))
+                            .flatMap(Mono::justOrEmpty);
+                });
+    }
+
+    private Mono<String> synthesizeReactive(List<String> chunks, String fileName) {
+        return Mono.using(() -> library.writer(fileName),
+                        writer -> Flux.fromIterable(chunks)
+                                .flatMapSequential(chunk -> withRetries(metrics.time(PipelineMetrics.SPEECH, openAiClient.synthesizeSpeechReactive(chunk))
+                                        .switchIfEmpty(Mono.error(() -> noAudio(chunk)))), concurrency)
+                                .publishOn(Schedulers.boundedElastic(), 1)
+                                .index()
+                                .doOnNext(part -> writePart(writer, part.getT2(), part.getT1() == 0, part.getT1() == chunks.size() - 1))
+                                .then(Mono.fromCallable(() -> {
+                                    writer.commit();
+                                    return fileName;
+                                })),
+                        AudioLibrary.Writer::close)
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(ex -> {
+                    logFailure(chunks.size(), fileName, ex);
+                    return Mono.empty();
+                });
     }
 
-    private Optional<String> writeFile(byte[] data, String fileName) {
-        Path filePath = outputDirectory.resolve(fileName);
-        try {
-            Files.write(filePath, data);
+    private Optional<String> synthesize(List<String> chunks, String fileName) {
+        int written = 0;
+        try (AudioLibrary.Writer writer = library.writer(fileName);
+             Stream<byte[]> parts = Flux.fromIterable(chunks)
+                     .flatMapSequential(chunk -> synthesizeChunk(chunk).subscribeOn(Schedulers.boundedElastic()), concurrency)
+                     .toStream(1)) {
+            for (byte[] part : (Iterable<byte[]>) parts::iterator) {
+                writePart(writer, part, written == 0, written == chunks.size() - 1);
+                written++;
+            }
+            if (written != chunks.size()) {
+                return Optional.empty();
+            }
+            writer.commit();
             return Optional.of(fileName);
-        } catch (IOException ex) {
-            log.error("Failed to write audio file {}", filePath, ex);
+        } catch (IOException | RuntimeException ex) {
+            logFailure(chunks.size(), fileName, ex);
             return Optional.empty();
         }
     }
+
+    /**
+     * Appends one synthesized part to the file, minus the containers {@link Mp3Concatenator} would strip,
+     * so parts go to disk as they arrive instead of being held until the whole narration can be stitched.
+     */
+    private void writePart(AudioLibrary.Writer writer, byte[] part, boolean first, boolean last) {
+        metrics.time(PipelineMetrics.AUDIO_WRITE, () -> {
+            Mp3PartFilter filter = new Mp3PartFilter(first, last);
+            try {
+                writer.write(filter.feed(part));
+                writer.write(filter.finish());
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            return part.length;
+        });
+    }
+
+    private void logFailure(int chunkCount, String fileName, Throwable ex) {
+        if (ex instanceof IOException || ex instanceof UncheckedIOException) {
+            log.error("Failed to write audio file {}", fileName, ex);
+        } else {
+            log.error("Speech synthesis failed for {} chunk(s) after {} attempt(s)", chunkCount, maxAttempts, ex);
+        }
+    }
+
+    /**
+     * Starts narrating a script whose segments are still being translated. See {@link Narration}.
+     */
+    public Narration startNarration() {
+        return new Narration();
+    }
+
+    public Optional<Resource> loadAudio(String fileName) {
+        return library.load(fileName);
+    }
+
+    /**
+     * Whether narration is left to the first listener, via {@link #prepareAudio} and {@link #streamAudio},
+     * instead of being synthesized up front with {@link #generateAudio}.
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Registers the segments' script for streamed narration and returns the name its audio file will have,
+     * without synthesizing anything yet. Only the most recent scripts are remembered, and only until
+     * restart, so a stored book prepares its script again when its page finds the audio missing; a file
+     * that was already narrated is simply reused.
+     */
+    public Optional<String> prepareAudio(List<TranslationSegment> segments) {
+        if (segments == null || segments.isEmpty()) {
+            return Optional.empty();
+        }
+        List<String> chunks = chunkScript(segments, maxChunkChars);
+        String fileName = AudioLibrary.fileName(OpenAiClient.SPEECH_VOICE, openAiClient.audioModel(), chunks);
+        if (!library.contains(fileName)) {
+            preparedScripts.put(fileName, chunks);
+        }
+        return Optional.of(fileName);
+    }
+
+    public boolean canStream(String fileName) {
+        return preparedScripts.containsKey(fileName);
+    }
+
+    /**
+     * Whether {@code fileName} can be played, either from the library or by streaming its prepared script.
+     */
+    public boolean isAvailable(String fileName) {
+        return canStream(fileName) || library.contains(fileName);
+    }
+
+    /**
+     * Narrates a prepared script into {@code out} as the speech endpoint produces it, teeing every buffer
+     * into the audio library so the finished file is served from disk afterwards. Chunks are synthesized
+     * one after the other and joined with {@link Mp3PartFilter}, so the listener hears the first words as
+     * soon as the first buffer arrives and memory use does not grow with the length of the narration.
+     * <p>
+     * A second listener arriving while the script is being narrated waits for the file instead of paying
+     * for another synthesis. If the listener goes away the partial file is discarded and the script stays
+     * prepared.
+     */
+    public void streamAudio(String fileName, OutputStream out) throws IOException {
+        List<String> chunks = preparedScripts.get(fileName);
+        if (chunks == null) {
+            copyStored(fileName, out);
+            return;
+        }
+        CompletableFuture<Void> stream = new CompletableFuture<>();
+        CompletableFuture<Void> existing = liveStreams.putIfAbsent(fileName, stream);
+        if (existing != null) {
+            try {
+                existing.join();
+            } catch (RuntimeException ex) {
+                throw new IOException("Narration of " + fileName + " failed", ex);
+            }
+            copyStored(fileName, out);
+            return;
+        }
+        try (AudioLibrary.Writer writer = library.writer(fileName)) {
+            for (int i = 0; i < chunks.size(); i++) {
+                Mp3PartFilter filter = new Mp3PartFilter(i == 0, i == chunks.size() - 1);
+                String chunk = chunks.get(i);
+                Flux<DataBuffer> body = openAiClient.streamSpeech(chunk)
+                        .orElseThrow(() -> new IOException("No audio returned for chunk of " + chunk.length() + " chars"));
+                try (Stream<DataBuffer> buffers = body
+                        .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                        .toStream(STREAM_PREFETCH)) {
+                    for (DataBuffer buffer : (Iterable<DataBuffer>) buffers::iterator) {
+                        byte[] bytes = new byte[buffer.readableByteCount()];
+                        buffer.read(bytes);
+                        DataBufferUtils.release(buffer);
+                        tee(filter.feed(bytes), writer, out);
+                    }
+                }
+                tee(filter.finish(), writer, out);
+            }
+            writer.commit();
+            preparedScripts.remove(fileName);
+            stream.complete(null);
+        } catch (IOException | RuntimeException ex) {
+            stream.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            liveStreams.remove(fileName, stream);
+        }
+    }
+
+    private static void tee(byte[] bytes, AudioLibrary.Writer writer, OutputStream out) throws IOException {
+        if (bytes.length == 0) {
+            return;
+        }
+        writer.write(bytes);
+        out.write(bytes);
+        out.flush();
+    }
+
+    private void copyStored(String fileName, OutputStream out) throws IOException {
+        Resource stored = library.load(fileName)
+                .orElseThrow(() -> new FileNotFoundException("No audio file " + fileName));
+        try (InputStream in = stored.getInputStream()) {
+            in.transferTo(out);
+        }
+    }
+
+    private Mono<byte[]> synthesizeChunk(String chunk) {
+        return withRetries(Mono.fromCallable(() -> metrics.time(PipelineMetrics.SPEECH, () -> openAiClient.synthesizeSpeech(chunk))
+                .orElseThrow(() -> noAudio(chunk))));
+    }
+
+    private Mono<byte[]> withRetries(Mono<byte[]> attempt) {
+        return attempt.retryWhen(Retry.backoff(maxAttempts - 1, retryBackoff)
+                .doBeforeRetry(signal -> log.warn("Retrying speech chunk (attempt {} of {})",
+                        signal.totalRetries() + 2, maxAttempts)));
+    }
+
+    private static IllegalStateException noAudio(String chunk) {
+        return new IllegalStateException("No audio returned for chunk of " + chunk.length() + " chars");
+    }
+
+    /**
+     * Narration that overlaps translation: segments are added in order as they are translated, and each
+     * speech chunk is sent for synthesis as soon as it is full rather than once the whole script is known.
+     * At most {@code openai.speech.concurrency} chunks are outstanding; {@link #add} writes the oldest one
+     * to disk before starting another, so a translation stage that runs ahead of speech is held back and
+     * only that many parts are ever held in memory, however long the book.
+     * <p>
+     * The chunks and the file are exactly those {@link #generateAudio} produces for the same segments. The
+     * file's name is only known once the script is complete, so it is written under a temporary name, and
+     * a script that was narrated before is still reused, but only after its chunks were synthesized again.
+     * A script known up front, such as a range restored entirely from a checkpoint, should go through
+     * {@link #generateAudio} instead, which looks for stored audio before synthesizing anything.
+     * Once a chunk fails, no further chunks are synthesized.
+     */
+    public final class Narration implements AutoCloseable {
+
+        private final ScriptChunker chunker = new ScriptChunker(maxChunkChars);
+        private final List<String> chunks = new ArrayList<>();
+        private final Deque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+        private AudioLibrary.Writer writer;
+        private int written;
+        private boolean failed;
+
+        private Narration() {
+        }
+
+        public void add(TranslationSegment segment) {
+            chunker.add(segment).forEach(this::synthesize);
+        }
+
+        /**
+         * Waits for the remaining chunks and commits the file, returning its name, or empty when there was
+         * nothing to narrate or synthesis failed.
+         */
+        public Optional<String> finish() {
+            chunker.finish().forEach(this::synthesize);
+            if (chunks.isEmpty()) {
+                return Optional.empty();
+            }
+            String fileName = AudioLibrary.fileName(OpenAiClient.SPEECH_VOICE, openAiClient.audioModel(), chunks);
+            try {
+                if (library.contains(fileName)) {
+                    log.debug("Reusing narrated audio {}", fileName);
+                    return Optional.of(fileName);
+                }
+                while (!failed && !pending.isEmpty()) {
+                    writeNext(pending.size() == 1, fileName);
+                }
+                if (failed) {
+                    return Optional.empty();
+                }
+                writer.commit(fileName);
+                return Optional.of(fileName);
+            } catch (IOException ex) {
+                logFailure(chunks.size(), fileName, ex);
+                return Optional.empty();
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * Cancels chunks still being synthesized and discards an uncommitted file, for a run that is
+         * abandoned.
+         */
+        @Override
+        public void close() {
+            pending.forEach(part -> part.cancel(false));
+            pending.clear();
+            if (writer != null) {
+                writer.close();
+            }
+        }
+
+        private void synthesize(String chunk) {
+            chunks.add(chunk);
+            if (failed) {
+                return;
+            }
+            // The oldest part is not the last one, since this chunk follows it.
+            while (!failed && pending.size() >= concurrency) {
+                writeNext(false, "narration");
+            }
+            if (!failed) {
+                pending.add(synthesizeChunk(chunk).subscribeOn(Schedulers.boundedElastic()).toFuture());
+            }
+        }
+
+        private void writeNext(boolean last, String fileName) {
+            byte[] part;
+            try {
+                part = pending.peekFirst().get();
+                if (writer == null) {
+                    writer = library.writer();
+                }
+                writePart(writer, part, written == 0, last);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while waiting to narrate a chunk");
+            } catch (ExecutionException | IOException | UncheckedIOException ex) {
+                logFailure(chunks.size(), fileName, ex instanceof ExecutionException ? ex.getCause() : ex);
+                failed = true;
+                close();
+                return;
+            }
+            pending.removeFirst();
+            written++;
+        }
+    }
+
+    /**
+     * Packs the per-segment scripts into as few chunks of at most {@code maxChars} as possible without
+     * splitting a segment, unless that segment alone is over the limit.
+     */
+    static List<String> chunkScript(List<TranslationSegment> segments, int maxChars) {
+        ScriptChunker chunker = new ScriptChunker(maxChars);
+        List<String> chunks = new ArrayList<>();
+        for (TranslationSegment segment : segments) {
+            chunks.addAll(chunker.add(segment));
+        }
+        chunks.addAll(chunker.finish());
+        return chunks;
+    }
+
+    /**
+     * {@link #chunkScript} one segment at a time: each call returns the chunks that the segment closed.
+     */
+    private static final class ScriptChunker {
+
+        private final int maxChars;
+        private final StringBuilder current = new StringBuilder();
+
+        ScriptChunker(int maxChars) {
+            this.maxChars = maxChars;
+        }
+
+        List<String> add(TranslationSegment segment) {
+            List<String> closed = new ArrayList<>();
+            String piece = segment.source() + System.lineSeparator() + segment.translated();
+            for (String part : splitOversized(piece, maxChars)) {
+                if (!current.isEmpty() && current.length() + SEGMENT_SEPARATOR.length() + part.length() > maxChars) {
+                    closed.add(current.toString());
+                    current.setLength(0);
+                }
+                if (!current.isEmpty()) {
+                    current.append(SEGMENT_SEPARATOR);
+                }
+                current.append(part);
+            }
+            return closed;
+        }
+
+        List<String> finish() {
+            if (current.isEmpty()) {
+                return List.of();
+            }
+            String last = current.toString();
+            current.setLength(0);
+            return List.of(last);
+        }
+    }
+
+    private static List<String> splitOversized(String text, int maxChars) {
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        while (text.length() - start > maxChars) {
+            int end = start + maxChars;
+            // Prefer breaking at whitespace so a word is never read in two halves.
+            int breakAt = end;
+            while (breakAt > start && !Character.isWhitespace(text.charAt(breakAt))) {
+                breakAt--;
+            }
+            if (breakAt > start) {
+                end = breakAt;
+            }
+            parts.add(text.substring(start, end).strip());
+            start = end;
+            while (start < text.length() && Character.isWhitespace(text.charAt(start))) {
+                start++;
+            }
+        }
+        if (start < text.length()) {
+            parts.add(text.substring(start));
+        }
+        return parts;
+    }
 }
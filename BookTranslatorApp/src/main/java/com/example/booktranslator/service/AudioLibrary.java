@@ -0,0 +1,314 @@
+package com.example.booktranslator.service;
+
+import com.example.booktranslator.config.AudioLibraryProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed store of narrated audio. A file is named after a SHA-256 of its speech chunks, voice
+ * and audio model, so narrating the same script again reuses the existing file instead of paying for
+ * synthesis, and a file's bytes never change once it has a name.
+ * <p>
+ * Files are written to a temporary name and renamed into place, so readers never see a partial file, even
+ * while one is being streamed to a listener as it is synthesized. The directory is kept under a byte quota
+ * by evicting the least recently served files first. Access times are tracked in memory rather than
+ * through the file's modification time, which backs the HTTP validators and must stay stable; after a
+ * restart the modification time seeds the order. A background janitor removes
+ * temporary files left behind by crashed writes and re-applies the quota.
+ */
+@Component
+public class AudioLibrary {
+
+    private static final Logger log = LoggerFactory.getLogger(AudioLibrary.class);
+
+    private static final String SUFFIX = ".mp3";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final Pattern FILE_NAME = Pattern.compile("[A-Za-z0-9_-]+\\.mp3");
+    private static final long DEFAULT_MAX_BYTES = 1024L * 1024 * 1024;
+    private static final Duration DEFAULT_JANITOR_INTERVAL = Duration.ofHours(1);
+    private static final Duration DEFAULT_ORPHAN_AGE = Duration.ofHours(1);
+
+    private final Path directory;
+    private final long maxBytes;
+    private final Duration orphanAge;
+    private final Clock clock;
+    private final Map<String, Long> lastAccess = new ConcurrentHashMap<>();
+    private final Set<Path> writing = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService janitor;
+
+    @Autowired
+    public AudioLibrary(AudioLibraryProperties properties) {
+        this(properties, Clock.systemUTC());
+        Duration interval = properties.janitorInterval() != null ? properties.janitorInterval() : DEFAULT_JANITOR_INTERVAL;
+        if (!interval.isZero() && !interval.isNegative()) {
+            janitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "audio-library-janitor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            janitor.scheduleWithFixedDelay(this::clean, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    AudioLibrary(AudioLibraryProperties properties, Clock clock) {
+        this.directory = Paths.get(properties.directory() != null ? properties.directory() : "audio-output");
+        this.maxBytes = properties.maxBytes() != null ? properties.maxBytes() : DEFAULT_MAX_BYTES;
+        this.orphanAge = properties.orphanAge() != null ? properties.orphanAge() : DEFAULT_ORPHAN_AGE;
+        this.clock = clock;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException ex) {
+            log.warn("Unable to create audio directory {}", directory, ex);
+        }
+    }
+
+    static AudioLibrary at(Path directory) {
+        return new AudioLibrary(new AudioLibraryProperties(directory.toString(), null, null, null), Clock.systemUTC());
+    }
+
+    /**
+     * The file name for narrating {@code chunks} with the given voice and model.
+     */
+    static String fileName(String voice, String model, List<String> chunks) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(voice).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(model).getBytes(StandardCharsets.UTF_8));
+            for (String chunk : chunks) {
+                digest.update((byte) 0);
+                digest.update(chunk.getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest()) + SUFFIX;
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+
+    /**
+     * Whether {@code fileName} is already stored, counting as an access for eviction.
+     */
+    public boolean contains(String fileName) {
+        if (!FILE_NAME.matcher(fileName).matches() || !Files.exists(directory.resolve(fileName))) {
+            return false;
+        }
+        touch(fileName);
+        return true;
+    }
+
+    public Optional<String> store(String fileName, byte[] data) {
+        try (Writer writer = writer(fileName)) {
+            writer.write(data);
+            writer.commit();
+            return Optional.of(fileName);
+        } catch (IOException ex) {
+            log.error("Failed to write audio file {}", directory.resolve(fileName), ex);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Opens a temporary file that becomes {@code fileName} on {@link Writer#commit()}. Closing an
+     * uncommitted writer deletes what was written.
+     */
+    public Writer writer(String fileName) throws IOException {
+        if (!FILE_NAME.matcher(fileName).matches()) {
+            throw new IllegalArgumentException("Invalid audio file name: " + fileName);
+        }
+        Path temp = Files.createTempFile(directory, fileName, TEMP_SUFFIX);
+        return new Writer(fileName, temp);
+    }
+
+    /**
+     * Opens a temporary file for audio whose name is only known once it is complete, such as a narration
+     * written while its script is still being translated; it is named by {@link Writer#commit(String)}.
+     */
+    public Writer writer() throws IOException {
+        return new Writer(null, Files.createTempFile(directory, "narration", TEMP_SUFFIX));
+    }
+
+    public Optional<Resource> load(String fileName) {
+        if (!FILE_NAME.matcher(fileName).matches()) {
+            return Optional.empty();
+        }
+        Path file = directory.resolve(fileName);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        touch(fileName);
+        return Optional.of(new FileSystemResource(file.toFile()));
+    }
+
+    /**
+     * Removes temporary files older than the orphan age, which only a crashed write leaves behind, and
+     * re-applies the quota. Files of writers that are still open are kept however old they are, since a
+     * long narration may leave its file untouched while it waits for a slow chunk.
+     */
+    void clean() {
+        Instant cutoff = clock.instant().minus(orphanAge);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().endsWith(TEMP_SUFFIX)
+                        && !writing.contains(file)
+                        && Files.getLastModifiedTime(file).toInstant().isBefore(cutoff)) {
+                    Files.deleteIfExists(file);
+                    log.info("Removed orphaned audio file {}", file.getFileName());
+                }
+            }
+        } catch (IOException ex) {
+            log.warn("Failed to clean audio directory {}", directory, ex);
+        }
+        evictIfNeeded(null);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (janitor != null) {
+            janitor.shutdownNow();
+        }
+    }
+
+    private void touch(String fileName) {
+        lastAccess.put(fileName, clock.millis());
+    }
+
+    /**
+     * Evicts least recently used files until the directory fits the quota, never evicting {@code keep}.
+     */
+    private synchronized void evictIfNeeded(String keep) {
+        List<Path> entries = new ArrayList<>();
+        long total = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().endsWith(SUFFIX)) {
+                    entries.add(file);
+                    total += Files.size(file);
+                }
+            }
+            if (total <= maxBytes) {
+                return;
+            }
+            entries.sort(Comparator.comparingLong(this::accessedAt));
+            for (Path file : entries) {
+                if (total <= maxBytes) {
+                    break;
+                }
+                String name = file.getFileName().toString();
+                if (name.equals(keep)) {
+                    continue;
+                }
+                long size = Files.size(file);
+                Files.deleteIfExists(file);
+                lastAccess.remove(name);
+                total -= size;
+                log.info("Evicted audio file {} to stay under the {} byte quota", name, maxBytes);
+            }
+        } catch (IOException ex) {
+            log.warn("Failed to evict audio files", ex);
+        }
+    }
+
+    /**
+     * An audio file being written, for example while it is streamed to a listener.
+     */
+    public final class Writer implements AutoCloseable {
+
+        private final Path temp;
+        private String fileName;
+        private final OutputStream out;
+        private boolean committed;
+
+        private Writer(String fileName, Path temp) throws IOException {
+            this.fileName = fileName;
+            this.temp = temp;
+            this.out = new BufferedOutputStream(Files.newOutputStream(temp));
+            writing.add(temp);
+        }
+
+        public void write(byte[] bytes) throws IOException {
+            out.write(bytes);
+        }
+
+        public void commit() throws IOException {
+            if (fileName == null) {
+                throw new IllegalStateException("Audio file has no name yet");
+            }
+            out.close();
+            Files.move(temp, directory.resolve(fileName), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            writing.remove(temp);
+            committed = true;
+            touch(fileName);
+            evictIfNeeded(fileName);
+        }
+
+        /**
+         * Commits a writer opened with {@link AudioLibrary#writer()} under {@code fileName}.
+         */
+        public void commit(String fileName) throws IOException {
+            if (!FILE_NAME.matcher(fileName).matches()) {
+                throw new IllegalArgumentException("Invalid audio file name: " + fileName);
+            }
+            this.fileName = fileName;
+            commit();
+        }
+
+        @Override
+        public void close() {
+            if (committed) {
+                return;
+            }
+            try {
+                out.close();
+                Files.deleteIfExists(temp);
+            } catch (IOException ex) {
+                log.warn("Failed to discard partial audio file {}", temp, ex);
+            } finally {
+                writing.remove(temp);
+            }
+        }
+    }
+
+    private long accessedAt(Path file) {
+        Long accessed = lastAccess.get(file.getFileName().toString());
+        if (accessed != null) {
+            return accessed;
+        }
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException ex) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.booktranslator.service;
+
+import com.example.booktranslator.config.SearchCacheProperties;
+import com.example.booktranslator.model.BookSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * In-memory cache of Gutendex search results keyed by the normalized query. Entries younger than the TTL
+ * are served directly; older entries are still served for the stale-while-revalidate window while one
+ * background refresh replaces them, so hot queries always answer from memory. Concurrent misses for the
+ * same query share a single upstream request, and a failed refresh keeps serving the stale results.
+ */
+@Component
+public class BookSearchCache implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(BookSearchCache.class);
+
+    private static final int DEFAULT_MAX_ENTRIES = 1000;
+    private static final Duration DEFAULT_TTL = Duration.ofMinutes(10);
+    private static final Duration DEFAULT_STALE_WHILE_REVALIDATE = Duration.ofHours(1);
+
+    private record Entry(List<BookSummary> results, Instant loadedAt) {
+    }
+
+    private final boolean enabled;
+    private final Duration ttl;
+    private final Duration staleWhileRevalidate;
+    private final Clock clock;
+    private final Executor refreshExecutor;
+    private final Map<String, Entry> entries;
+    private final SingleFlight<String, List<BookSummary>> flights = new SingleFlight<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Autowired
+    public BookSearchCache(SearchCacheProperties properties) {
+        this(properties, Clock.systemUTC(), task -> Schedulers.boundedElastic().schedule(task));
+    }
+
+    BookSearchCache(SearchCacheProperties properties, Clock clock, Executor refreshExecutor) {
+        this.enabled = !Boolean.FALSE.equals(properties.enabled());
+        this.ttl = properties.ttl() != null ? properties.ttl() : DEFAULT_TTL;
+        this.staleWhileRevalidate = properties.staleWhileRevalidate() != null
+                ? properties.staleWhileRevalidate()
+                : DEFAULT_STALE_WHILE_REVALIDATE;
+        this.clock = clock;
+        this.refreshExecutor = refreshExecutor;
+        int maxEntries = properties.maxEntries() != null ? properties.maxEntries() : DEFAULT_MAX_ENTRIES;
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    static BookSearchCache disabled() {
+        return new BookSearchCache(new SearchCacheProperties(false, null, null, null));
+    }
+
+    /**
+     * Returns the cached results for {@code query}, calling {@code loader} when they are missing or expired.
+     * The loader signals a failed search by throwing, so failures are never cached.
+     */
+    public List<BookSummary> get(String query, Supplier<List<BookSummary>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        String key = normalize(query);
+        Entry entry = entries.get(key);
+        List<BookSummary> cached = cachedOrRefresh(key, entry, loader);
+        if (cached != null) {
+            return cached;
+        }
+        misses.incrementAndGet();
+        try {
+            return flights.run(key, () -> load(key, loader));
+        } catch (RuntimeException ex) {
+            if (entry != null) {
+                log.warn("Search '{}' failed, serving expired results", key, ex);
+                return entry.results();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Non-blocking counterpart of {@link #get(String, Supplier)}. A miss subscribes to {@code loader} once
+     * for all concurrent callers, blocking or not; the background refresh of stale results runs it on the
+     * refresh executor.
+     */
+    public Mono<List<BookSummary>> getReactive(String query, Supplier<Mono<List<BookSummary>>> loader) {
+        if (!enabled) {
+            return Mono.defer(loader);
+        }
+        return Mono.defer(() -> {
+            String key = normalize(query);
+            Entry entry = entries.get(key);
+            List<BookSummary> cached = cachedOrRefresh(key, entry, () -> loader.get().block());
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            misses.incrementAndGet();
+            SingleFlight.Claim<List<BookSummary>> claim = flights.claim(key);
+            Mono<List<BookSummary>> result = claim.owner()
+                    ? loader.get()
+                            .map(results -> {
+                                List<BookSummary> loaded = List.copyOf(results);
+                                entries.put(key, new Entry(loaded, clock.instant()));
+                                flights.complete(key, claim, loaded);
+                                return loaded;
+                            })
+                            .switchIfEmpty(Mono.error(() -> new IllegalStateException("Search '" + key + "' returned nothing")))
+                            .doOnError(ex -> flights.fail(key, claim, ex))
+                            .doOnCancel(() -> flights.fail(key, claim, new CancellationException("Search '" + key + "' was cancelled")))
+                    : Mono.fromFuture(claim.result());
+            return result.onErrorResume(ex -> {
+                if (entry != null) {
+                    log.warn("Search '{}' failed, serving expired results", key, ex);
+                    return Mono.just(entry.results());
+                }
+                return Mono.error(ex);
+            });
+        });
+    }
+
+    /**
+     * The results for a fresh entry, or for a stale one after starting its background refresh; null when
+     * the query has to be loaded now.
+     */
+    private List<BookSummary> cachedOrRefresh(String key, Entry entry, Supplier<List<BookSummary>> loader) {
+        if (entry == null) {
+            return null;
+        }
+        Duration age = Duration.between(entry.loadedAt(), clock.instant());
+        if (age.compareTo(ttl) < 0) {
+            hits.incrementAndGet();
+            return entry.results();
+        }
+        if (age.compareTo(ttl.plus(staleWhileRevalidate)) < 0) {
+            staleHits.incrementAndGet();
+            flights.runAsync(key, () -> load(key, loader), refreshExecutor)
+                    .exceptionally(ex -> {
+                        log.warn("Background refresh of search '{}' failed", key, ex);
+                        return null;
+                    });
+            return entry.results();
+        }
+        return null;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder(PipelineMetrics.SEARCH_CACHE_REQUESTS, hits, AtomicLong::get)
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder(PipelineMetrics.SEARCH_CACHE_REQUESTS, staleHits, AtomicLong::get)
+                .tag("result", "stale-hit").register(registry);
+        FunctionCounter.builder(PipelineMetrics.SEARCH_CACHE_REQUESTS, misses, AtomicLong::get)
+                .tag("result", "miss").register(registry);
+        FunctionCounter.builder(PipelineMetrics.SEARCH_CACHE_COALESCED, flights, SingleFlight::coalesced).register(registry);
+        Gauge.builder(PipelineMetrics.SEARCH_CACHE_ENTRIES, entries, Map::size).register(registry);
+    }
+
+    static String normalize(String query) {
+        return query.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private List<BookSummary> load(String key, Supplier<List<BookSummary>> loader) {
+        List<BookSummary> results = List.copyOf(loader.get());
+        entries.put(key, new Entry(results, clock.instant()));
+        return results;
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.booktranslator.service;
+
+import com.example.booktranslator.config.BookCacheProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Disk-backed store of cleaned book text keyed by Gutendex book id and download URL. Text is kept
+ * gzip-compressed next to a small metadata file holding the validators (ETag, Last-Modified) needed to
+ * revalidate with a conditional GET, and the version of the cleaner that produced the text; an entry
+ * cleaned by another version is a miss. The text file's modification time doubles as its last-access time
+ * so the least recently used books are evicted first once the store grows past its size cap.
+ */
+@Component
+public class BookTextCache {
+
+    private static final Logger log = LoggerFactory.getLogger(BookTextCache.class);
+
+    private static final String TEXT_SUFFIX = ".txt.gz";
+    private static final String META_SUFFIX = ".meta";
+    private static final long DEFAULT_MAX_BYTES = 512L * 1024 * 1024;
+    private static final Duration DEFAULT_REVALIDATE_AFTER = Duration.ofDays(7);
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxBytes;
+    private final Duration revalidateAfter;
+    private final Clock clock;
+
+    @Autowired
+    public BookTextCache(BookCacheProperties properties) {
+        this(properties, Clock.systemUTC());
+    }
+
+    BookTextCache(BookCacheProperties properties, Clock clock) {
+        this.enabled = !Boolean.FALSE.equals(properties.enabled());
+        this.directory = Paths.get(properties.directory() != null ? properties.directory() : "book-cache");
+        this.maxBytes = properties.maxBytes() != null ? properties.maxBytes() : DEFAULT_MAX_BYTES;
+        this.revalidateAfter = properties.revalidateAfter() != null ? properties.revalidateAfter() : DEFAULT_REVALIDATE_AFTER;
+        this.clock = clock;
+        if (enabled) {
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException ex) {
+                log.warn("Unable to create book cache directory {}", directory, ex);
+            }
+        }
+    }
+
+    static BookTextCache disabled() {
+        return new BookTextCache(new BookCacheProperties(false, null, null, null));
+    }
+
+    public record Entry(String text, String etag, String lastModified, Instant validatedAt) {
+    }
+
+    public Optional<Entry> get(long bookId, String url) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        String key = key(bookId, url);
+        Path textFile = directory.resolve(key + TEXT_SUFFIX);
+        Path metaFile = directory.resolve(key + META_SUFFIX);
+        if (!Files.exists(textFile) || !Files.exists(metaFile)) {
+            return Optional.empty();
+        }
+        try {
+            Properties meta = readMeta(metaFile);
+            if (!PublicDomainBookService.CLEANER_VERSION.equals(meta.getProperty("cleanerVersion"))) {
+                log.debug("Discarding book cache entry {} cleaned by another version", key);
+                delete(key);
+                return Optional.empty();
+            }
+            String text = readGzip(textFile);
+            Files.setLastModifiedTime(textFile, FileTime.from(clock.instant()));
+            return Optional.of(new Entry(
+                    text,
+                    meta.getProperty("etag"),
+                    meta.getProperty("lastModified"),
+                    Instant.parse(meta.getProperty("validatedAt"))
+            ));
+        } catch (Exception ex) {
+            log.warn("Discarding unreadable book cache entry {}", key, ex);
+            delete(key);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Whether the entry was validated recently enough to be served without contacting the origin.
+     */
+    public boolean isFresh(Entry entry) {
+        return entry.validatedAt().plus(revalidateAfter).isAfter(clock.instant());
+    }
+
+    public void put(long bookId, String url, String text, String etag, String lastModified) {
+        if (!enabled) {
+            return;
+        }
+        String key = key(bookId, url);
+        Path textFile = directory.resolve(key + TEXT_SUFFIX);
+        try {
+            Path tempText = Files.createTempFile(directory, key, ".tmp");
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tempText))) {
+                out.write(text.getBytes(StandardCharsets.UTF_8));
+            }
+            Files.move(tempText, textFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            writeMeta(key, bookId, url, etag, lastModified);
+        } catch (IOException ex) {
+            log.warn("Failed to cache text for book {}", bookId, ex);
+            delete(key);
+            return;
+        }
+        evictIfNeeded();
+    }
+
+    /**
+     * Records a successful 304 revalidation, keeping the existing validators unless new ones were sent.
+     */
+    public void markValidated(long bookId, String url, Entry entry, String etag, String lastModified) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            writeMeta(key(bookId, url), bookId, url,
+                    etag != null ? etag : entry.etag(),
+                    lastModified != null ? lastModified : entry.lastModified());
+        } catch (IOException ex) {
+            log.warn("Failed to update book cache metadata for book {}", bookId, ex);
+        }
+    }
+
+    private void writeMeta(String key, long bookId, String url, String etag, String lastModified) throws IOException {
+        Properties meta = new Properties();
+        meta.setProperty("bookId", String.valueOf(bookId));
+        meta.setProperty("url", url);
+        meta.setProperty("validatedAt", clock.instant().toString());
+        meta.setProperty("cleanerVersion", PublicDomainBookService.CLEANER_VERSION);
+        if (etag != null) {
+            meta.setProperty("etag", etag);
+        }
+        if (lastModified != null) {
+            meta.setProperty("lastModified", lastModified);
+        }
+        Path tempMeta = Files.createTempFile(directory, key, ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tempMeta)) {
+            meta.store(writer, null);
+        }
+        Files.move(tempMeta, directory.resolve(key + META_SUFFIX),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Properties readMeta(Path metaFile) throws IOException {
+        Properties meta = new Properties();
+        try (Reader reader = Files.newBufferedReader(metaFile)) {
+            meta.load(reader);
+        }
+        return meta;
+    }
+
+    private String readGzip(Path textFile) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(textFile))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private synchronized void evictIfNeeded() {
+        List<Path> entries = new ArrayList<>();
+        long total = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().endsWith(TEXT_SUFFIX)) {
+                    entries.add(file);
+                    total += Files.size(file);
+                }
+            }
+            if (total <= maxBytes) {
+                return;
+            }
+            entries.sort(Comparator.comparing(BookTextCache::lastAccess));
+            for (Path file : entries) {
+                if (total <= maxBytes) {
+                    break;
+                }
+                long size = Files.size(file);
+                String name = file.getFileName().toString();
+                delete(name.substring(0, name.length() - TEXT_SUFFIX.length()));
+                total -= size;
+            }
+        } catch (IOException ex) {
+            log.warn("Failed to evict book cache entries", ex);
+        }
+    }
+
+    private static FileTime lastAccess(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException ex) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private void delete(String key) {
+        try {
+            Files.deleteIfExists(directory.resolve(key + TEXT_SUFFIX));
+            Files.deleteIfExists(directory.resolve(key + META_SUFFIX));
+        } catch (IOException ex) {
+            log.warn("Failed to delete book cache entry {}", key, ex);
+        }
+    }
+
+    static String key(long bookId, String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((bookId + "\u0000" + url).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.booktranslator.service;
+
+import com.example.booktranslator.model.ChapterInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Offsets and titles of the chapter headings in a book, found in one pass over its lines. Chapter text is
+ * only cut from the book when {@link #chapter(int)} is called.
+ * <p>
+ * A heading is a short line starting with a division keyword and a number ({@code CHAPTER IV},
+ * {@code Book the First}, {@code PART 2}, {@code STAVE ONE}), or a bare Roman or Arabic numeral on a line
+ * of its own after a blank line, optionally followed by a short title. A label-only heading takes the next
+ * short unpunctuated line as its subtitle. Consecutive headings with no body text between them are
+ * grouped: a pair such as {@code BOOK I} / {@code CHAPTER I} opens one chapter, while a longer run is a
+ * table of contents, of which only the last entry, the real first heading, is kept. Text before the first
+ * heading (title page, preface boilerplate) belongs to no chapter.
+ */
+final class ChapterIndex {
+
+    private static final int MAX_HEADING_LENGTH = 80;
+    private static final int MIN_TABLE_OF_CONTENTS_ENTRIES = 3;
+    private static final String NUMBER = "(?:\\d{1,3}|[ivxlcdm]{1,7}|one|two|three|four|five|six|seven|eight|nine|ten"
+            + "|eleven|twelve|thirteen|fourteen|fifteen|sixteen|seventeen|eighteen|nineteen|twenty"
+            + "|first|second|third|fourth|fifth|sixth|seventh|eighth|ninth|tenth|eleventh|twelfth|last)";
+    private static final Pattern KEYWORD_HEADING = Pattern.compile(
+            "(?i)(?:chapter|book|part|stave|volume|canto|act|letter|section)\\s+(?:the\\s+)?" + NUMBER + "\\b[.:]?(.*)");
+    private static final Pattern NUMERAL_HEADING = Pattern.compile("(?:[IVXLC]{1,7}|\\d{1,3})\\.?(?:\\s+([A-Z\"“'].*))?");
+
+    private final String text;
+    private final int[] starts;
+    private final String[] titles;
+    private final int size;
+    private final int end;
+
+    private ChapterIndex(String text, int[] starts, String[] titles, int size, int end) {
+        this.text = text;
+        this.starts = starts;
+        this.titles = titles;
+        this.size = size;
+        this.end = end;
+    }
+
+    /**
+     * Indexes the first {@code maxChapters} chapters. Scanning stops at the heading after the last one,
+     * which is all that is needed to know where that chapter ends.
+     */
+    static ChapterIndex scan(String text, int maxChapters) {
+        List<Heading> chapters = new ArrayList<>();
+        List<Heading> run = new ArrayList<>();
+        boolean afterBlank = true;
+        boolean awaitingSubtitle = false;
+        int lineStart = 0;
+        while (lineStart < text.length() && chapters.size() <= maxChapters) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = text.length();
+            }
+            int start = skipWhitespace(text, lineStart, lineEnd);
+            if (start == lineEnd) {
+                afterBlank = true;
+                lineStart = lineEnd + 1;
+                continue;
+            }
+            int end = trimEnd(text, start, lineEnd);
+            Heading heading = null;
+            boolean subtitle = false;
+            if (end - start <= MAX_HEADING_LENGTH) {
+                if (mayStartHeading(text.charAt(start))) {
+                    heading = heading(text.substring(start, end), start, afterBlank);
+                }
+                subtitle = heading == null && awaitingSubtitle && isSubtitle(text, start, end);
+            }
+            if (heading != null) {
+                run.add(heading);
+                awaitingSubtitle = heading.labelOnly;
+            } else if (subtitle) {
+                Heading last = run.get(run.size() - 1);
+                last.title = last.title + " — " + text.substring(start, end);
+                awaitingSubtitle = false;
+            } else {
+                closeRun(run, chapters);
+                awaitingSubtitle = false;
+            }
+            afterBlank = false;
+            lineStart = lineEnd + 1;
+        }
+        closeRun(run, chapters);
+
+        int size = Math.min(chapters.size(), maxChapters);
+        int[] starts = new int[size];
+        String[] titles = new String[size];
+        for (int i = 0; i < size; i++) {
+            starts[i] = chapters.get(i).start;
+            titles[i] = chapters.get(i).title;
+        }
+        int end = chapters.size() > size ? chapters.get(size).start : text.length();
+        return new ChapterIndex(text, starts, titles, size, end);
+    }
+
+    int size() {
+        return size;
+    }
+
+    String title(int index) {
+        return titles[index];
+    }
+
+    /**
+     * The chapter's text from its heading up to the next chapter's heading, trimmed.
+     */
+    String chapter(int index) {
+        return text.substring(starts[index], chapterEnd(index)).trim();
+    }
+
+    List<String> chapters() {
+        List<String> chapters = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            chapters.add(chapter(i));
+        }
+        return chapters;
+    }
+
+    List<ChapterInfo> tableOfContents() {
+        List<ChapterInfo> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(new ChapterInfo(i, titles[i], starts[i], chapterEnd(i) - starts[i]));
+        }
+        return entries;
+    }
+
+    private int chapterEnd(int index) {
+        return index + 1 < size ? starts[index + 1] : end;
+    }
+
+    private static boolean mayStartHeading(char first) {
+        return Character.isDigit(first) || "ABCLPSVIXabclpsv".indexOf(first) >= 0;
+    }
+
+    private static Heading heading(String line, int start, boolean afterBlank) {
+        Matcher keyword = KEYWORD_HEADING.matcher(line);
+        if (keyword.matches()) {
+            boolean labelOnly = keyword.group(1).isBlank();
+            // Mid-paragraph lines such as "part two of the plan..." are only headings when set apart.
+            return afterBlank || labelOnly ? new Heading(start, stripTrailingPeriod(line), labelOnly) : null;
+        }
+        if (afterBlank) {
+            Matcher numeral = NUMERAL_HEADING.matcher(line);
+            if (numeral.matches() && (numeral.group(1) == null || !endsWithPunctuation(line))) {
+                return new Heading(start, stripTrailingPeriod(line), numeral.group(1) == null);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A subtitle is a short unpunctuated line standing as a paragraph of its own, which tells it apart
+     * from the first wrapped line of the chapter's text.
+     */
+    private static boolean isSubtitle(String text, int start, int end) {
+        if (endsWithPunctuation(text.charAt(end - 1))) {
+            return false;
+        }
+        int nextLine = text.indexOf('\n', end);
+        if (nextLine < 0) {
+            return true;
+        }
+        int followingEnd = text.indexOf('\n', nextLine + 1);
+        return skipWhitespace(text, nextLine + 1, followingEnd < 0 ? text.length() : followingEnd)
+                == (followingEnd < 0 ? text.length() : followingEnd);
+    }
+
+    private static boolean endsWithPunctuation(String line) {
+        return endsWithPunctuation(line.charAt(line.length() - 1));
+    }
+
+    private static boolean endsWithPunctuation(char last) {
+        return last == '.' || last == ',' || last == ';' || last == ':' || last == '!' || last == '?';
+    }
+
+    /**
+     * Turns a group of consecutive headings into chapters: one heading is a chapter, a pair opens a single
+     * chapter, and a longer run is a table of contents whose last entry is the real heading.
+     */
+    private static void closeRun(List<Heading> run, List<Heading> chapters) {
+        if (run.isEmpty()) {
+            return;
+        }
+        if (run.size() >= MIN_TABLE_OF_CONTENTS_ENTRIES) {
+            chapters.add(run.get(run.size() - 1));
+        } else if (run.size() == 2) {
+            Heading first = run.get(0);
+            first.title = first.title + " — " + run.get(1).title;
+            chapters.add(first);
+        } else {
+            chapters.add(run.get(0));
+        }
+        run.clear();
+    }
+
+    private static int skipWhitespace(String text, int from, int to) {
+        int i = from;
+        while (i < to && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int trimEnd(String text, int from, int to) {
+        int end = to;
+        while (end > from && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private static String stripTrailingPeriod(String line) {
+        return line.endsWith(".") ? line.substring(0, line.length() - 1) : line;
+    }
+
+    private static final class Heading {
+
+        private final int start;
+        private final boolean labelOnly;
+        private String title;
+
+        Heading(int start, String title, boolean labelOnly) {
+            this.start = start;
+            this.title = title;
+            this.labelOnly = labelOnly;
+        }
+    }
+}
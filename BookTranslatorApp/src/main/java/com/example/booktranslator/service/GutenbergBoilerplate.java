@@ -0,0 +1,52 @@
+package com.example.booktranslator.service;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Locates the Project Gutenberg license header and footer around the body of an e-book. Both the modern
+ * {@code *** START OF THE PROJECT GUTENBERG EBOOK ... ***} markers and the older "End of the Project
+ * Gutenberg EBook" footer line are recognised.
+ */
+final class GutenbergBoilerplate {
+
+    /**
+     * The start marker sits within the first few kilobytes; text that long without one has no header.
+     */
+    static final int HEADER_SCAN_LIMIT = 32 * 1024;
+
+    private static final Pattern START = Pattern.compile(
+            "\\*{3}\\s*START OF (?:THE|THIS) PROJECT GUTENBERG E-?BOOK[^*]*\\*{3}", Pattern.CASE_INSENSITIVE);
+    private static final Pattern END = Pattern.compile(
+            "\\*{3}\\s*END OF (?:THE|THIS) PROJECT GUTENBERG E-?BOOK|End of (?:the )?Project Gutenberg'?s? E-?(?:Book|text)",
+            Pattern.CASE_INSENSITIVE);
+
+    private GutenbergBoilerplate() {
+    }
+
+    /**
+     * Index just past the start marker, or -1 when none appears within {@link #HEADER_SCAN_LIMIT}.
+     */
+    static int bodyStart(CharSequence text) {
+        Matcher matcher = START.matcher(text);
+        matcher.region(0, Math.min(text.length(), HEADER_SCAN_LIMIT));
+        return matcher.find() ? matcher.end() : -1;
+    }
+
+    /**
+     * Index of the footer marker at or after {@code from}, or -1 when the footer has not been seen.
+     */
+    static int bodyEnd(CharSequence text, int from) {
+        Matcher matcher = END.matcher(text);
+        return matcher.find(from) ? matcher.start() : -1;
+    }
+
+    static String strip(String text) {
+        int start = Math.max(0, bodyStart(text));
+        int end = bodyEnd(text, start);
+        if (start == 0 && end < 0) {
+            return text;
+        }
+        return text.substring(start, end < 0 ? text.length() : end).trim();
+    }
+}
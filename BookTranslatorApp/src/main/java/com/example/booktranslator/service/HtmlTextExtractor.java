@@ -0,0 +1,307 @@
+package com.example.booktranslator.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Single-pass HTML-to-text extractor. Markup is consumed as a character-level state machine, so the input
+ * can arrive in arbitrary chunks (a tag, comment or entity may straddle two chunks) and no intermediate
+ * copies of the document are made.
+ * <ul>
+ *     <li>{@code script} and {@code style} bodies and comments are dropped;</li>
+ *     <li>named (full HTML5 table) and numeric character references are decoded;</li>
+ *     <li>runs of whitespace collapse to one space, or to one newline when they span a block-level
+ *     element, so paragraph and heading boundaries survive for segmentation.</li>
+ * </ul>
+ * Instances are stateful and not thread-safe.
+ */
+final class HtmlTextExtractor {
+
+    private static final Map<String, String> ENTITIES = loadEntities();
+    private static final Set<String> BLOCK_ELEMENTS = Set.of(
+            "address", "article", "aside", "blockquote", "body", "br", "dd", "div", "dl", "dt", "figcaption",
+            "figure", "footer", "h1", "h2", "h3", "h4", "h5", "h6", "header", "hr", "html", "li", "main", "nav",
+            "ol", "p", "pre", "section", "table", "tbody", "td", "tfoot", "th", "thead", "title", "tr", "ul"
+    );
+    private static final int MAX_ENTITY_LENGTH = 32;
+    private static final int MAX_TAG_NAME_LENGTH = 16;
+    private static final char NO_BREAK_SPACE = '\u00A0';
+
+    private enum State { TEXT, TAG_OPEN, TAG_NAME, TAG_BODY, MARKUP_DECLARATION, COMMENT, RAW_TEXT, ENTITY }
+
+    private static final int NO_SPACE = 0;
+    private static final int SPACE = 1;
+    private static final int NEWLINE = 2;
+
+    private final StringBuilder out = new StringBuilder();
+    private final StringBuilder tagName = new StringBuilder(MAX_TAG_NAME_LENGTH);
+    private final StringBuilder entity = new StringBuilder(MAX_ENTITY_LENGTH);
+    private State state = State.TEXT;
+    private boolean closingTag;
+    private char quote;
+    private int commentDashes;
+    private String rawTextEnd;
+    private int rawTextMatched;
+    private int pendingSpace = NO_SPACE;
+    private boolean emittedText;
+
+    static String extract(String html) {
+        HtmlTextExtractor extractor = new HtmlTextExtractor();
+        String head = extractor.feed(html);
+        return head + extractor.finish();
+    }
+
+    /**
+     * Consumes the next chunk of markup and returns the text it completed. Trailing whitespace and an
+     * unterminated entity are held back until the next chunk or {@link #finish()}.
+     */
+    String feed(CharSequence chunk) {
+        for (int i = 0, length = chunk.length(); i < length; i++) {
+            accept(chunk.charAt(i));
+        }
+        return drain();
+    }
+
+    String finish() {
+        if (state == State.ENTITY) {
+            flushEntity(false);
+        }
+        state = State.TEXT;
+        return drain();
+    }
+
+    private void accept(char c) {
+        switch (state) {
+            case TEXT -> acceptText(c);
+            case ENTITY -> acceptEntity(c);
+            case TAG_OPEN -> acceptTagOpen(c);
+            case TAG_NAME -> acceptTagName(c);
+            case TAG_BODY -> acceptTagBody(c);
+            case MARKUP_DECLARATION -> acceptMarkupDeclaration(c);
+            case COMMENT -> acceptComment(c);
+            case RAW_TEXT -> acceptRawText(c);
+        }
+    }
+
+    private void acceptText(char c) {
+        if (c == '<') {
+            state = State.TAG_OPEN;
+        } else if (c == '&') {
+            entity.setLength(0);
+            state = State.ENTITY;
+        } else {
+            emit(c);
+        }
+    }
+
+    private void acceptTagOpen(char c) {
+        tagName.setLength(0);
+        closingTag = false;
+        if (c == '/') {
+            closingTag = true;
+            state = State.TAG_NAME;
+        } else if (Character.isLetter(c)) {
+            tagName.append(Character.toLowerCase(c));
+            state = State.TAG_NAME;
+        } else if (c == '!') {
+            commentDashes = 0;
+            state = State.MARKUP_DECLARATION;
+        } else if (c == '?') {
+            quote = 0;
+            state = State.TAG_BODY;
+        } else {
+            // A lone '<' in running text, e.g. "a < b".
+            emit('<');
+            state = State.TEXT;
+            acceptText(c);
+        }
+    }
+
+    private void acceptTagName(char c) {
+        if (Character.isLetterOrDigit(c)) {
+            if (tagName.length() < MAX_TAG_NAME_LENGTH) {
+                tagName.append(Character.toLowerCase(c));
+            }
+            return;
+        }
+        quote = 0;
+        state = State.TAG_BODY;
+        acceptTagBody(c);
+    }
+
+    private void acceptTagBody(char c) {
+        if (quote != 0) {
+            if (c == quote) {
+                quote = 0;
+            }
+        } else if (c == '"' || c == '\'') {
+            quote = c;
+        } else if (c == '>') {
+            endTag();
+        }
+    }
+
+    /**
+     * Called after {@code <!}. Two dashes open a comment; anything else is a declaration such as the
+     * doctype, which is skipped like a tag.
+     */
+    private void acceptMarkupDeclaration(char c) {
+        if (c == '-' && commentDashes < 2) {
+            commentDashes++;
+            if (commentDashes == 2) {
+                commentDashes = 0;
+                state = State.COMMENT;
+            }
+            return;
+        }
+        closingTag = true;
+        quote = 0;
+        state = State.TAG_BODY;
+        acceptTagBody(c);
+    }
+
+    private void acceptComment(char c) {
+        if (c == '-') {
+            commentDashes++;
+        } else if (c == '>' && commentDashes >= 2) {
+            state = State.TEXT;
+        } else {
+            commentDashes = 0;
+        }
+    }
+
+    private void acceptRawText(char c) {
+        if (Character.toLowerCase(c) == rawTextEnd.charAt(rawTextMatched)) {
+            rawTextMatched++;
+            if (rawTextMatched == rawTextEnd.length()) {
+                tagName.setLength(0);
+                closingTag = true;
+                quote = 0;
+                state = State.TAG_BODY;
+            }
+        } else {
+            rawTextMatched = c == '<' ? 1 : 0;
+        }
+    }
+
+    private void endTag() {
+        String name = tagName.toString();
+        state = State.TEXT;
+        if (!closingTag && (name.equals("script") || name.equals("style"))) {
+            rawTextEnd = "</" + name;
+            rawTextMatched = 0;
+            state = State.RAW_TEXT;
+            return;
+        }
+        if (BLOCK_ELEMENTS.contains(name)) {
+            pendingSpace = NEWLINE;
+        }
+    }
+
+    private void acceptEntity(char c) {
+        if (c == ';') {
+            flushEntity(true);
+            state = State.TEXT;
+        } else if ((Character.isLetterOrDigit(c) || (c == '#' && entity.isEmpty())) && entity.length() < MAX_ENTITY_LENGTH) {
+            entity.append(c);
+        } else {
+            flushEntity(false);
+            state = State.TEXT;
+            acceptText(c);
+        }
+    }
+
+    private void flushEntity(boolean terminated) {
+        String decoded = decodeEntity(entity, terminated);
+        if (decoded != null) {
+            for (int i = 0; i < decoded.length(); i++) {
+                emit(decoded.charAt(i));
+            }
+            return;
+        }
+        emit('&');
+        for (int i = 0; i < entity.length(); i++) {
+            emit(entity.charAt(i));
+        }
+        if (terminated) {
+            emit(';');
+        }
+    }
+
+    private static String decodeEntity(CharSequence reference, boolean terminated) {
+        if (reference.isEmpty()) {
+            return null;
+        }
+        if (reference.charAt(0) == '#') {
+            return decodeNumeric(reference);
+        }
+        String name = reference.toString();
+        return ENTITIES.get(terminated ? name + ";" : name);
+    }
+
+    private static String decodeNumeric(CharSequence reference) {
+        boolean hex = reference.length() > 1 && (reference.charAt(1) == 'x' || reference.charAt(1) == 'X');
+        int start = hex ? 2 : 1;
+        if (start >= reference.length()) {
+            return null;
+        }
+        long codePoint = 0;
+        for (int i = start; i < reference.length(); i++) {
+            int digit = Character.digit(reference.charAt(i), hex ? 16 : 10);
+            if (digit < 0) {
+                return null;
+            }
+            codePoint = Math.min(codePoint * (hex ? 16 : 10) + digit, Integer.MAX_VALUE);
+        }
+        if (codePoint == 0 || codePoint > Character.MAX_CODE_POINT
+                || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+            return "\uFFFD";
+        }
+        return new String(Character.toChars((int) codePoint));
+    }
+
+    private void emit(char c) {
+        if (Character.isWhitespace(c) || c == NO_BREAK_SPACE) {
+            pendingSpace = Math.max(pendingSpace, SPACE);
+            return;
+        }
+        if (pendingSpace != NO_SPACE && emittedText) {
+            out.append(pendingSpace == NEWLINE ? '\n' : ' ');
+        }
+        pendingSpace = NO_SPACE;
+        emittedText = true;
+        out.append(c);
+    }
+
+    private String drain() {
+        String text = out.toString();
+        out.setLength(0);
+        return text;
+    }
+
+    private static Map<String, String> loadEntities() {
+        Properties properties = new Properties();
+        try (InputStream in = HtmlTextExtractor.class.getResourceAsStream("/html-entities.properties")) {
+            if (in == null) {
+                throw new IllegalStateException("html-entities.properties missing from classpath");
+            }
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.ISO_8859_1)) {
+                properties.load(reader);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        Map<String, String> entities = new HashMap<>(properties.size() * 2);
+        properties.forEach((key, value) -> entities.put(key.toString(), value.toString()));
+        return Collections.unmodifiableMap(entities);
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.booktranslator.service;
+
+import java.util.List;
+
+/**
+ * Accumulates streamed book text and reports when enough segments are available to stop downloading.
+ * <p>
+ * A prefix of the book is known to yield its first {@code maxSegments} segments unchanged once it holds
+ * at least one more segment after them, because that extra segment proves the last requested one is
+ * terminated. The buffer is re-segmented at geometrically growing sizes so total work stays linear in the
+ * amount of text received. The Project Gutenberg header is skipped before segmenting, and reaching the
+ * footer ends the book even if the transfer has more license text to send.
+ * <p>
+ * The same rule makes every segment but the last one of a check final, so {@link #drainFinal()} hands
+ * segments on while the download is still running.
+ */
+final class IncrementalSegmenter {
+
+    private static final int MIN_CHECK_INTERVAL = 16 * 1024;
+
+    private final SegmentationService segmentationService;
+    private final String mode;
+    private final int maxSegments;
+    private final StringBuilder buffer = new StringBuilder();
+    private int nextCheckAt = MIN_CHECK_INTERVAL;
+    private List<String> completed;
+    private List<String> stable = List.of();
+    private int drained;
+    private String body;
+
+    IncrementalSegmenter(SegmentationService segmentationService, String mode, int maxSegments) {
+        this.segmentationService = segmentationService;
+        this.mode = mode;
+        this.maxSegments = maxSegments;
+    }
+
+    /**
+     * Appends a chunk of text and returns {@code true} once the first {@code maxSegments} segments are final.
+     */
+    boolean append(CharSequence chunk) {
+        if (completed != null) {
+            return true;
+        }
+        buffer.append(chunk);
+        if (buffer.length() < nextCheckAt) {
+            return false;
+        }
+        nextCheckAt = Math.max(buffer.length() + MIN_CHECK_INTERVAL, buffer.length() * 3 / 2);
+        int start = GutenbergBoilerplate.bodyStart(buffer);
+        if (start < 0 && buffer.length() < GutenbergBoilerplate.HEADER_SCAN_LIMIT) {
+            // The header may still be arriving; segmenting now could count license text as content.
+            return false;
+        }
+        start = Math.max(0, start);
+        int end = GutenbergBoilerplate.bodyEnd(buffer, start);
+        if (end >= 0) {
+            body = buffer.substring(start, end).trim();
+            completed = segmentationService.segmentText(body, mode, maxSegments);
+            return true;
+        }
+        List<String> segments = segmentationService.segmentText(buffer.substring(start), mode, maxSegments + 1);
+        if (segments.size() > maxSegments) {
+            completed = List.copyOf(segments.subList(0, maxSegments));
+            return true;
+        }
+        // The last segment may still grow, or be split, as more text arrives.
+        stable = segments.subList(0, Math.max(0, segments.size() - 1));
+        return false;
+    }
+
+    /**
+     * Segments that became final since the last call, in order.
+     */
+    List<String> drainFinal() {
+        return drain(completed != null ? completed : stable);
+    }
+
+    /**
+     * Ends the stream and returns the requested segments not drained yet.
+     */
+    List<String> drainRemaining() {
+        return drain(segments());
+    }
+
+    private List<String> drain(List<String> segments) {
+        if (segments.size() <= drained) {
+            return List.of();
+        }
+        List<String> fresh = List.copyOf(segments.subList(drained, segments.size()));
+        drained = segments.size();
+        return fresh;
+    }
+
+    boolean isComplete() {
+        return completed != null;
+    }
+
+    /**
+     * Whether the whole book body was received, either because the stream ended or the footer was reached.
+     */
+    boolean hasWholeBody() {
+        return completed == null || body != null;
+    }
+
+    /**
+     * The requested segments: the early result when the stream was cut short, otherwise the segmentation
+     * of everything received.
+     */
+    List<String> segments() {
+        if (completed != null) {
+            return completed;
+        }
+        return segmentationService.segmentText(text(), mode, maxSegments);
+    }
+
+    /**
+     * The book body with the Gutenberg boilerplate removed. Only meaningful when {@link #hasWholeBody()}.
+     */
+    String text() {
+        if (body == null) {
+            body = GutenbergBoilerplate.strip(buffer.toString());
+        }
+        return body;
+    }
+}
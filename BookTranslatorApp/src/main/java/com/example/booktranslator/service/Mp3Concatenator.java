@@ -0,0 +1,109 @@
+package com.example.booktranslator.service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Stitches independently encoded MP3 files into one stream. MPEG audio frames are self-contained, so the
+ * files can be appended as-is once the per-file containers are removed:
+ * <ul>
+ *     <li>the ID3v2 tag is kept on the first part only, and the ID3v1 trailer on the last part only;</li>
+ *     <li>a leading Xing/Info/VBRI frame is dropped from every part, because its frame count and seek
+ *     table describe that part alone and would make players report the wrong duration.</li>
+ * </ul>
+ * Bytes that do not look like MP3 are passed through untouched.
+ */
+final class Mp3Concatenator {
+
+    private static final int ID3V2_HEADER_BYTES = 10;
+    private static final int ID3V1_TAG_BYTES = 128;
+    private static final int[] MPEG1_BITRATES = {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320};
+    private static final int[] MPEG2_BITRATES = {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160};
+    private static final int[] MPEG1_SAMPLE_RATES = {44100, 48000, 32000};
+
+    private Mp3Concatenator() {
+    }
+
+    static byte[] concatenate(List<byte[]> parts) {
+        if (parts.size() == 1) {
+            return parts.get(0);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(parts.stream().mapToInt(part -> part.length).sum());
+        for (int i = 0; i < parts.size(); i++) {
+            byte[] part = parts.get(i);
+            int tagEnd = id3v2Length(part);
+            int end = i < parts.size() - 1 && hasId3v1(part, tagEnd) ? part.length - ID3V1_TAG_BYTES : part.length;
+            if (i == 0) {
+                out.write(part, 0, tagEnd);
+            }
+            int start = tagEnd + vbrFrameLength(part, tagEnd, end);
+            out.write(part, start, end - start);
+        }
+        return out.toByteArray();
+    }
+
+    static int id3v2Length(byte[] data) {
+        if (data.length < ID3V2_HEADER_BYTES || data[0] != 'I' || data[1] != 'D' || data[2] != '3') {
+            return 0;
+        }
+        int size = 0;
+        for (int i = 6; i < 10; i++) {
+            // Syncsafe integer: 7 significant bits per byte.
+            size = (size << 7) | (data[i] & 0x7F);
+        }
+        boolean footer = (data[5] & 0x10) != 0;
+        return Math.min(data.length, ID3V2_HEADER_BYTES + size + (footer ? ID3V2_HEADER_BYTES : 0));
+    }
+
+    private static boolean hasId3v1(byte[] data, int start) {
+        int offset = data.length - ID3V1_TAG_BYTES;
+        return offset >= start
+                && data[offset] == 'T' && data[offset + 1] == 'A' && data[offset + 2] == 'G';
+    }
+
+    /**
+     * Length of the Xing/Info/VBRI header frame at {@code offset}, or 0 when the first frame carries audio.
+     */
+    static int vbrFrameLength(byte[] data, int offset, int end) {
+        if (offset + 4 > end || (data[offset] & 0xFF) != 0xFF || (data[offset + 1] & 0xE0) != 0xE0) {
+            return 0;
+        }
+        int version = (data[offset + 1] >> 3) & 0x03;
+        int layer = (data[offset + 1] >> 1) & 0x03;
+        int bitrateIndex = (data[offset + 2] >> 4) & 0x0F;
+        int sampleRateIndex = (data[offset + 2] >> 2) & 0x03;
+        int padding = (data[offset + 2] >> 1) & 0x01;
+        boolean mono = ((data[offset + 3] >> 6) & 0x03) == 3;
+        // Only Layer III with a valid version, bitrate and sample rate.
+        if (version == 1 || layer != 1 || bitrateIndex == 0 || bitrateIndex == 15 || sampleRateIndex == 3) {
+            return 0;
+        }
+        boolean mpeg1 = version == 3;
+        int bitrate = (mpeg1 ? MPEG1_BITRATES : MPEG2_BITRATES)[bitrateIndex] * 1000;
+        int sampleRate = MPEG1_SAMPLE_RATES[sampleRateIndex] >> (mpeg1 ? 0 : version == 2 ? 1 : 2);
+        int frameLength = (mpeg1 ? 144 : 72) * bitrate / sampleRate + padding;
+        int sideInfo = mpeg1 ? (mono ? 17 : 32) : (mono ? 9 : 17);
+        if (offset + frameLength > end) {
+            return 0;
+        }
+        if (hasMarker(data, offset + 4 + sideInfo, "Xing") || hasMarker(data, offset + 4 + sideInfo, "Info")
+                || hasMarker(data, offset + 4 + 32, "VBRI")) {
+            return frameLength;
+        }
+        return 0;
+    }
+
+    private static boolean hasMarker(byte[] data, int offset, String marker) {
+        byte[] expected = marker.getBytes(StandardCharsets.US_ASCII);
+        if (offset + expected.length > data.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (data[offset + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
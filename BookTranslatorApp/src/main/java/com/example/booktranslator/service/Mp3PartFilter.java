@@ -0,0 +1,134 @@
+package com.example.booktranslator.service;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Streaming counterpart of {@link Mp3Concatenator} for one part of a multi-part narration: the part arrives
+ * in arbitrary chunks and leaves with the same containers removed, holding back only the bytes needed to
+ * decide. The head is buffered until its ID3v2 tag and first frame are complete, and a non-final part keeps
+ * its last 128 bytes back in case they are an ID3v1 trailer. Memory use is bounded by the tag size plus a
+ * couple of frames, whatever the length of the part.
+ * <p>
+ * Feeding every part through its own filter yields exactly {@link Mp3Concatenator#concatenate}'s output.
+ * Instances are stateful and not thread-safe.
+ */
+final class Mp3PartFilter {
+
+    private static final byte[] EMPTY = new byte[0];
+    private static final int ID3V1_TAG_BYTES = 128;
+    // Enough for the Xing/Info/VBRI frame at any bitrate and sample rate (at most 1441 bytes at 320 kbit/s, 32 kHz).
+    private static final int FIRST_FRAME_BYTES = 2048;
+    // Tags larger than this are passed through rather than buffered.
+    private static final int MAX_TAG_BYTES = 1024 * 1024;
+
+    private final boolean first;
+    private final boolean last;
+    private final boolean passThrough;
+    private ByteArrayOutputStream head = new ByteArrayOutputStream();
+    private byte[] tail = EMPTY;
+
+    Mp3PartFilter(boolean first, boolean last) {
+        this.first = first;
+        this.last = last;
+        this.passThrough = first && last;
+    }
+
+    /**
+     * Accepts the next chunk of the part and returns the bytes that can be emitted now.
+     */
+    byte[] feed(byte[] chunk) {
+        if (passThrough) {
+            return chunk;
+        }
+        if (head != null) {
+            head.writeBytes(chunk);
+            byte[] buffered = head.toByteArray();
+            if (!headComplete(buffered)) {
+                return EMPTY;
+            }
+            head = null;
+            return holdTail(stripHead(buffered));
+        }
+        return holdTail(chunk);
+    }
+
+    /**
+     * Ends the part and returns whatever was held back, minus an ID3v1 trailer on a non-final part.
+     */
+    byte[] finish() {
+        if (passThrough) {
+            return EMPTY;
+        }
+        byte[] remaining = EMPTY;
+        if (head != null) {
+            remaining = stripHead(head.toByteArray());
+            head = null;
+        }
+        byte[] rest = concat(tail, remaining);
+        tail = EMPTY;
+        if (!last && rest.length >= ID3V1_TAG_BYTES) {
+            int offset = rest.length - ID3V1_TAG_BYTES;
+            if (rest[offset] == 'T' && rest[offset + 1] == 'A' && rest[offset + 2] == 'G') {
+                return Arrays.copyOf(rest, offset);
+            }
+        }
+        return rest;
+    }
+
+    private static boolean headComplete(byte[] buffered) {
+        if (buffered.length < 10) {
+            return false;
+        }
+        int declared = declaredTagLength(buffered);
+        if (declared > MAX_TAG_BYTES) {
+            return true;
+        }
+        return buffered.length >= declared + FIRST_FRAME_BYTES;
+    }
+
+    private byte[] stripHead(byte[] buffered) {
+        int tagEnd = declaredTagLength(buffered) > MAX_TAG_BYTES ? 0 : Mp3Concatenator.id3v2Length(buffered);
+        int start = tagEnd + Mp3Concatenator.vbrFrameLength(buffered, tagEnd, buffered.length);
+        if (!first) {
+            return Arrays.copyOfRange(buffered, start, buffered.length);
+        }
+        byte[] kept = new byte[tagEnd + buffered.length - start];
+        System.arraycopy(buffered, 0, kept, 0, tagEnd);
+        System.arraycopy(buffered, start, kept, tagEnd, buffered.length - start);
+        return kept;
+    }
+
+    private static int declaredTagLength(byte[] buffered) {
+        if (buffered[0] != 'I' || buffered[1] != 'D' || buffered[2] != '3') {
+            return 0;
+        }
+        int size = 0;
+        for (int i = 6; i < 10; i++) {
+            size = (size << 7) | (buffered[i] & 0x7F);
+        }
+        return 10 + size + ((buffered[5] & 0x10) != 0 ? 10 : 0);
+    }
+
+    private byte[] holdTail(byte[] chunk) {
+        if (last) {
+            return chunk;
+        }
+        byte[] pending = concat(tail, chunk);
+        int emit = Math.max(0, pending.length - ID3V1_TAG_BYTES);
+        tail = Arrays.copyOfRange(pending, emit, pending.length);
+        return Arrays.copyOf(pending, emit);
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        if (a.length == 0) {
+            return b;
+        }
+        if (b.length == 0) {
+            return a;
+        }
+        byte[] joined = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, joined, a.length, b.length);
+        return joined;
+    }
+}
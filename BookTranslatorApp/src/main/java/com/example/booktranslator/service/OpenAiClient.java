@@ -1,14 +1,21 @@
 package com.example.booktranslator.service;
 
+import com.example.booktranslator.config.HttpClientConfig;
 import com.example.booktranslator.config.OpenAiProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
 import java.util.Map;
@@ -19,19 +26,40 @@ public class OpenAiClient {
 
     private static final Logger log = LoggerFactory.getLogger(OpenAiClient.class);
 
+    /**
+     * Bump whenever the translation prompts change so cached translations from older prompts are not reused.
+     */
+    public static final String PROMPT_VERSION = "1";
+
+    static final String SPEECH_VOICE = "alloy";
+
+    private static final String SINGLE_SEGMENT_PROMPT =
+            "You translate English literary text to %s. Maintain sentence boundaries and do not add commentary.";
+    private static final String BATCH_PROMPT =
+            "You translate English literary text to %s. The input is a list of segments, each wrapped as "
+                    + "<s id=\"N\">text</s>. Translate every segment separately and reply with the same tags and ids, "
+                    + "one translated segment per tag, in the same order. Never merge, split or skip segments and "
+                    + "do not add commentary. The text is escaped like XML: keep &lt; and &amp; as they are.";
+
     private final WebClient webClient;
     private final OpenAiProperties properties;
     private final ObjectMapper objectMapper;
+    private final OpenAiRateLimiter rateLimiter;
+    private final PipelineMetrics metrics;
     private final String apiKey;
 
-    public OpenAiClient(WebClient.Builder webClientBuilder,
+    public OpenAiClient(@Qualifier(HttpClientConfig.OPENAI) WebClient.Builder webClientBuilder,
                         OpenAiProperties properties,
-                        ObjectMapper objectMapper) {
+                        ObjectMapper objectMapper,
+                        OpenAiRateLimiter rateLimiter,
+                        PipelineMetrics metrics) {
         this.webClient = webClientBuilder
                 .baseUrl(properties.apiUrl())
                 .build();
         this.properties = properties;
         this.objectMapper = objectMapper;
+        this.rateLimiter = rateLimiter;
+        this.metrics = metrics;
         this.apiKey = resolveApiKey();
     }
 
@@ -40,63 +68,221 @@ public class OpenAiClient {
             return Optional.empty();
         }
         try {
-            Map<String, Object> request = Map.of(
-                    "model", properties.chatModel(),
-                    "messages", List.of(
-                            Map.of("role", "system", "content", "You translate English literary text to %s. Maintain sentence boundaries and do not add commentary.".formatted(targetLanguage)),
-                            Map.of("role", "user", "content", text)
-                    ),
-                    "temperature", 0.2
-            );
-
-            String response = webClient.post()
-                    .uri("/chat/completions")
-                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(request)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-            if (response == null) {
-                return Optional.empty();
-            }
-            JsonNode root = objectMapper.readTree(response);
-            JsonNode choices = root.path("choices");
-            if (!choices.isArray() || choices.isEmpty()) {
-                return Optional.empty();
-            }
-            return Optional.ofNullable(choices.get(0).path("message").path("content").asText(null));
+            return chatCompletion(SINGLE_SEGMENT_PROMPT.formatted(targetLanguage), text);
         } catch (Exception ex) {
+            restoreInterrupt(ex);
             log.error("OpenAI translation request failed", ex);
             return Optional.empty();
         }
     }
 
+    /**
+     * Non-blocking counterpart of {@link #translate(String, String)}: completes empty when the request fails.
+     */
+    public Mono<String> translateReactive(String text, String targetLanguage) {
+        if (!isConfigured()) {
+            return Mono.empty();
+        }
+        return chatCompletionReactive(SINGLE_SEGMENT_PROMPT.formatted(targetLanguage), text)
+                .onErrorResume(ex -> {
+                    log.error("OpenAI translation request failed", ex);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Translates several segments with one chat completion. The result holds exactly one translation per
+     * input, in order, or is empty when the request fails or the model merged or dropped segments.
+     */
+    public Optional<List<String>> translateBatch(List<String> texts, String targetLanguage) {
+        if (!isConfigured() || texts.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            return chatCompletion(BATCH_PROMPT.formatted(targetLanguage), SegmentBatcher.encode(texts))
+                    .flatMap(content -> {
+                        Optional<List<String>> translations = SegmentBatcher.decode(content, texts.size());
+                        if (translations.isEmpty()) {
+                            log.warn("Batch translation response did not contain {} tagged segments", texts.size());
+                        }
+                        return translations;
+                    });
+        } catch (Exception ex) {
+            restoreInterrupt(ex);
+            log.error("OpenAI batch translation request failed", ex);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Non-blocking counterpart of {@link #translateBatch(List, String)}.
+     */
+    public Mono<List<String>> translateBatchReactive(List<String> texts, String targetLanguage) {
+        if (!isConfigured() || texts.isEmpty()) {
+            return Mono.empty();
+        }
+        return chatCompletionReactive(BATCH_PROMPT.formatted(targetLanguage), SegmentBatcher.encode(texts))
+                .flatMap(content -> {
+                    Optional<List<String>> translations = SegmentBatcher.decode(content, texts.size());
+                    if (translations.isEmpty()) {
+                        log.warn("Batch translation response did not contain {} tagged segments", texts.size());
+                    }
+                    return Mono.justOrEmpty(translations);
+                })
+                .onErrorResume(ex -> {
+                    log.error("OpenAI batch translation request failed", ex);
+                    return Mono.empty();
+                });
+    }
+
+    public String audioModel() {
+        return properties.audioModel();
+    }
+
     public Optional<byte[]> synthesizeSpeech(String text) {
         if (!isConfigured()) {
             return Optional.empty();
         }
         try {
-            Map<String, Object> request = Map.of(
-                    "model", properties.audioModel(),
-                    "voice", "alloy",
-                    "input", text,
-                    "format", "mp3"
-            );
-            return Optional.ofNullable(webClient.post()
-                    .uri("/audio/speech")
-                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(request)
+            // Speech is limited per request, not per token.
+            ResponseEntity<byte[]> response = rateLimiter.execute("speech", 0, () -> speechRequest(text)
                     .retrieve()
-                    .bodyToMono(byte[].class)
+                    .toEntity(byte[].class)
                     .block());
+            return Optional.ofNullable(response != null ? response.getBody() : null);
         } catch (Exception ex) {
+            restoreInterrupt(ex);
             log.error("OpenAI text-to-speech request failed", ex);
             return Optional.empty();
         }
     }
 
+    /**
+     * Non-blocking counterpart of {@link #synthesizeSpeech(String)}: completes empty when the request fails.
+     */
+    public Mono<byte[]> synthesizeSpeechReactive(String text) {
+        if (!isConfigured()) {
+            return Mono.empty();
+        }
+        return rateLimiter.executeReactive("speech", 0, () -> speechRequest(text)
+                        .retrieve()
+                        .toEntity(byte[].class))
+                .mapNotNull(ResponseEntity::getBody)
+                .onErrorResume(ex -> {
+                    log.error("OpenAI text-to-speech request failed", ex);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Starts a speech request and returns its body as it arrives, once the response headers show it
+     * succeeded; throttled or failed starts are retried like {@link #synthesizeSpeech(String)}. The caller
+     * must consume or cancel the body, and is responsible for releasing each buffer.
+     */
+    public Optional<Flux<DataBuffer>> streamSpeech(String text) {
+        if (!isConfigured()) {
+            return Optional.empty();
+        }
+        try {
+            ResponseEntity<Flux<DataBuffer>> response = rateLimiter.execute("speech", 0, () -> speechRequest(text)
+                    .retrieve()
+                    .toEntityFlux(DataBuffer.class)
+                    .block());
+            return Optional.ofNullable(response != null ? response.getBody() : null);
+        } catch (Exception ex) {
+            restoreInterrupt(ex);
+            log.error("OpenAI text-to-speech stream failed to start", ex);
+            return Optional.empty();
+        }
+    }
+
+    private Optional<String> chatCompletion(String systemPrompt, String userContent) throws Exception {
+        ResponseEntity<String> entity = rateLimiter.execute("chat completion", estimatedTokens(systemPrompt, userContent),
+                () -> chatRequest(systemPrompt, userContent)
+                        .retrieve()
+                        .toEntity(String.class)
+                        .block());
+        String response = entity != null ? entity.getBody() : null;
+        if (response == null) {
+            return Optional.empty();
+        }
+        return parseCompletion(response);
+    }
+
+    private Mono<String> chatCompletionReactive(String systemPrompt, String userContent) {
+        return rateLimiter.executeReactive("chat completion", estimatedTokens(systemPrompt, userContent),
+                        () -> chatRequest(systemPrompt, userContent)
+                                .retrieve()
+                                .toEntity(String.class))
+                .mapNotNull(ResponseEntity::getBody)
+                .handle((response, sink) -> {
+                    try {
+                        parseCompletion(response).ifPresent(sink::next);
+                    } catch (JsonProcessingException ex) {
+                        sink.error(ex);
+                    }
+                });
+    }
+
+    private WebClient.RequestHeadersSpec<?> chatRequest(String systemPrompt, String userContent) {
+        Map<String, Object> request = Map.of(
+                "model", properties.chatModel(),
+                "messages", List.of(
+                        Map.of("role", "system", "content", systemPrompt),
+                        Map.of("role", "user", "content", userContent)
+                ),
+                "temperature", 0.2
+        );
+        return webClient.post()
+                .uri("/chat/completions")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request);
+    }
+
+    private WebClient.RequestHeadersSpec<?> speechRequest(String text) {
+        Map<String, Object> request = Map.of(
+                "model", properties.audioModel(),
+                "voice", SPEECH_VOICE,
+                "input", text,
+                "format", "mp3"
+        );
+        return webClient.post()
+                .uri("/audio/speech")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request);
+    }
+
+    private static int estimatedTokens(String systemPrompt, String userContent) {
+        // A translation is about as long as its source, so reserve the prompt's tokens twice.
+        return 2 * SegmentBatcher.estimateTokens(systemPrompt + userContent);
+    }
+
+    private Optional<String> parseCompletion(String response) throws JsonProcessingException {
+        JsonNode root = objectMapper.readTree(response);
+        JsonNode usage = root.path("usage");
+        if (usage.isObject()) {
+            metrics.tokens("prompt", usage.path("prompt_tokens").asLong());
+            metrics.tokens("completion", usage.path("completion_tokens").asLong());
+        }
+        return messageContent(root);
+    }
+
+    static Optional<String> messageContent(JsonNode completion) {
+        JsonNode choices = completion.path("choices");
+        if (!choices.isArray() || choices.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(choices.get(0).path("message").path("content").asText(null));
+    }
+
+    private static void restoreInterrupt(Exception ex) {
+        if (ex instanceof InterruptedException) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     private boolean isConfigured() {
         if (apiKey == null || apiKey.isBlank()) {
             log.warn("OpenAI API key not configured. Set OPENAI_API_KEY environment variable.");
@@ -0,0 +1,388 @@
+package com.example.booktranslator.service;
+
+import com.example.booktranslator.config.RateLimitProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Client-side limiter shared by every OpenAI call. Requests first take from a requests-per-minute and a
+ * tokens-per-minute bucket, so bursts from concurrent translation workers are smoothed to the account's
+ * quota instead of being answered with 429s. The buckets are pulled down to the {@code x-ratelimit-remaining-*}
+ * values the API reports, and an exhausted quota pauses all callers until the matching {@code x-ratelimit-reset-*}.
+ * <p>
+ * 429, 5xx and connection failures are retried with full-jitter exponential backoff, never sooner than
+ * {@code Retry-After}, until the attempt limit or the per-call deadline is reached.
+ */
+@Component
+public class OpenAiRateLimiter implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(OpenAiRateLimiter.class);
+
+    private static final int DEFAULT_REQUESTS_PER_MINUTE = 500;
+    private static final int DEFAULT_TOKENS_PER_MINUTE = 200_000;
+    private static final int DEFAULT_MAX_ATTEMPTS = 6;
+    private static final Duration DEFAULT_INITIAL_BACKOFF = Duration.ofSeconds(1);
+    private static final Duration DEFAULT_MAX_BACKOFF = Duration.ofSeconds(30);
+    private static final Duration DEFAULT_DEADLINE = Duration.ofMinutes(2);
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+    interface Sleeper {
+        void sleep(Duration duration) throws InterruptedException;
+    }
+
+    private final TokenBucket requestBucket;
+    private final TokenBucket tokenBucket;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Duration deadline;
+    private final Clock clock;
+    private final Sleeper sleeper;
+    private final DoubleSupplier random;
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+    private final AtomicLong waitMillis = new AtomicLong();
+    private long pausedUntil;
+
+    @Autowired
+    public OpenAiRateLimiter(RateLimitProperties properties) {
+        this(properties, Clock.systemUTC(), duration -> Thread.sleep(duration.toMillis()),
+                () -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    OpenAiRateLimiter(RateLimitProperties properties, Clock clock, Sleeper sleeper, DoubleSupplier random) {
+        this.clock = clock;
+        this.sleeper = sleeper;
+        this.random = random;
+        long now = clock.millis();
+        this.requestBucket = new TokenBucket(orDefault(properties.requestsPerMinute(), DEFAULT_REQUESTS_PER_MINUTE), now);
+        this.tokenBucket = new TokenBucket(orDefault(properties.tokensPerMinute(), DEFAULT_TOKENS_PER_MINUTE), now);
+        this.maxAttempts = Math.max(1, orDefault(properties.maxAttempts(), DEFAULT_MAX_ATTEMPTS));
+        this.initialBackoff = properties.initialBackoff() != null ? properties.initialBackoff() : DEFAULT_INITIAL_BACKOFF;
+        this.maxBackoff = properties.maxBackoff() != null ? properties.maxBackoff() : DEFAULT_MAX_BACKOFF;
+        this.deadline = properties.deadline() != null ? properties.deadline() : DEFAULT_DEADLINE;
+    }
+
+    /**
+     * Runs {@code call} once both buckets allow it, retrying throttled and transient failures.
+     *
+     * @param tokens estimated tokens the call consumes (prompt plus completion), 0 for endpoints billed per request
+     * @throws TimeoutException when the quota does not allow the call before the deadline
+     */
+    public <T> ResponseEntity<T> execute(String operation, int tokens, Supplier<ResponseEntity<T>> call)
+            throws InterruptedException, TimeoutException {
+        long callDeadline = clock.millis() + deadline.toMillis();
+        for (int attempt = 1; ; attempt++) {
+            acquire(operation, tokens, callDeadline);
+            RuntimeException failure;
+            Duration retryAfter = null;
+            try {
+                ResponseEntity<T> response = call.get();
+                observe(response.getHeaders());
+                return response;
+            } catch (WebClientResponseException ex) {
+                observe(ex.getHeaders());
+                if (!isRetryable(ex.getStatusCode())) {
+                    throw ex;
+                }
+                if (ex.getStatusCode().value() == 429) {
+                    throttled.incrementAndGet();
+                }
+                retryAfter = retryAfter(ex.getHeaders(), clock);
+                failure = ex;
+            } catch (WebClientRequestException ex) {
+                failure = ex;
+            }
+            Duration delay = backoff(attempt, retryAfter);
+            if (attempt >= maxAttempts || clock.millis() + delay.toMillis() > callDeadline) {
+                exhausted.incrementAndGet();
+                throw failure;
+            }
+            retries.incrementAndGet();
+            log.warn("OpenAI {} failed ({}), retrying in {} ms (attempt {} of {})",
+                    operation, failure.getMessage(), delay.toMillis(), attempt + 1, maxAttempts);
+            if (retryAfter != null) {
+                // The server asked everyone to back off, not just this caller.
+                pauseUntil(clock.millis() + delay.toMillis());
+            } else {
+                sleep(delay);
+            }
+        }
+    }
+
+    /**
+     * Non-blocking counterpart of {@link #execute}: waits for quota and backs off with timers instead of
+     * sleeping, so no thread is held while a call is throttled. Each attempt subscribes to a fresh
+     * {@code call}.
+     */
+    public <T> Mono<ResponseEntity<T>> executeReactive(String operation, int tokens, Supplier<Mono<ResponseEntity<T>>> call) {
+        return Mono.defer(() -> attemptReactive(operation, tokens, call, clock.millis() + deadline.toMillis(), 1));
+    }
+
+    private <T> Mono<ResponseEntity<T>> attemptReactive(String operation, int tokens,
+                                                        Supplier<Mono<ResponseEntity<T>>> call,
+                                                        long callDeadline, int attempt) {
+        return acquireReactive(operation, tokens, callDeadline)
+                .then(Mono.defer(call))
+                .doOnNext(response -> observe(response.getHeaders()))
+                .onErrorResume(ex -> {
+                    Duration retryAfter = null;
+                    if (ex instanceof WebClientResponseException responseException) {
+                        observe(responseException.getHeaders());
+                        if (!isRetryable(responseException.getStatusCode())) {
+                            return Mono.error(ex);
+                        }
+                        if (responseException.getStatusCode().value() == 429) {
+                            throttled.incrementAndGet();
+                        }
+                        retryAfter = retryAfter(responseException.getHeaders(), clock);
+                    } else if (!(ex instanceof WebClientRequestException)) {
+                        return Mono.error(ex);
+                    }
+                    Duration delay = backoff(attempt, retryAfter);
+                    if (attempt >= maxAttempts || clock.millis() + delay.toMillis() > callDeadline) {
+                        exhausted.incrementAndGet();
+                        return Mono.error(ex);
+                    }
+                    retries.incrementAndGet();
+                    log.warn("OpenAI {} failed ({}), retrying in {} ms (attempt {} of {})",
+                            operation, ex.getMessage(), delay.toMillis(), attempt + 1, maxAttempts);
+                    Mono<Long> wait;
+                    if (retryAfter != null) {
+                        // The next acquire waits out the pause along with every other caller.
+                        pauseUntil(clock.millis() + delay.toMillis());
+                        wait = Mono.just(0L);
+                    } else {
+                        wait = delay(delay);
+                    }
+                    return wait.then(attemptReactive(operation, tokens, call, callDeadline, attempt + 1));
+                });
+    }
+
+    private Mono<Void> acquireReactive(String operation, int tokens, long callDeadline) {
+        return Mono.defer(() -> {
+            long wait;
+            try {
+                wait = reserve(operation, tokens, callDeadline);
+            } catch (TimeoutException ex) {
+                return Mono.error(ex);
+            }
+            return wait == 0
+                    ? Mono.empty()
+                    : delay(Duration.ofMillis(wait)).then(acquireReactive(operation, tokens, callDeadline));
+        });
+    }
+
+    private Mono<Long> delay(Duration duration) {
+        waitMillis.addAndGet(duration.toMillis());
+        return Mono.delay(duration);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder(PipelineMetrics.RATE_LIMIT_EVENTS, throttled, AtomicLong::get)
+                .tag("event", "throttled").register(registry);
+        FunctionCounter.builder(PipelineMetrics.RATE_LIMIT_EVENTS, retries, AtomicLong::get)
+                .tag("event", "retry").register(registry);
+        FunctionCounter.builder(PipelineMetrics.RATE_LIMIT_EVENTS, exhausted, AtomicLong::get)
+                .tag("event", "exhausted").register(registry);
+        FunctionCounter.builder(PipelineMetrics.RATE_LIMIT_WAIT, waitMillis, AtomicLong::get)
+                .baseUnit("milliseconds").register(registry);
+    }
+
+    private void acquire(String operation, int tokens, long callDeadline) throws InterruptedException, TimeoutException {
+        long wait;
+        while ((wait = reserve(operation, tokens, callDeadline)) > 0) {
+            sleep(Duration.ofMillis(wait));
+        }
+    }
+
+    /**
+     * Takes the call's quota and returns 0, or returns how long to wait before trying again.
+     */
+    private synchronized long reserve(String operation, int tokens, long callDeadline) throws TimeoutException {
+        long now = clock.millis();
+        long wait = Math.max(0, pausedUntil - now);
+        wait = Math.max(wait, requestBucket.millisUntil(1, now));
+        wait = Math.max(wait, tokenBucket.millisUntil(tokens, now));
+        if (wait == 0) {
+            requestBucket.take(1);
+            tokenBucket.take(tokens);
+            return 0;
+        }
+        if (now + wait > callDeadline) {
+            exhausted.incrementAndGet();
+            throw new TimeoutException("OpenAI " + operation + " would exceed its deadline waiting for rate limit quota");
+        }
+        return wait;
+    }
+
+    private synchronized void observe(HttpHeaders headers) {
+        long now = clock.millis();
+        syncBucket(requestBucket, headers.getFirst("x-ratelimit-remaining-requests"),
+                headers.getFirst("x-ratelimit-reset-requests"), now);
+        syncBucket(tokenBucket, headers.getFirst("x-ratelimit-remaining-tokens"),
+                headers.getFirst("x-ratelimit-reset-tokens"), now);
+    }
+
+    private void syncBucket(TokenBucket bucket, String remainingHeader, String resetHeader, long now) {
+        if (remainingHeader == null) {
+            return;
+        }
+        try {
+            long remaining = Long.parseLong(remainingHeader.trim());
+            bucket.limitTo(remaining, now);
+            Duration reset = parseDuration(resetHeader);
+            if (remaining <= 0 && reset != null) {
+                pausedUntil = Math.max(pausedUntil, now + reset.toMillis());
+            }
+        } catch (NumberFormatException ex) {
+            log.debug("Ignoring malformed rate limit header {}", remainingHeader);
+        }
+    }
+
+    private synchronized void pauseUntil(long until) {
+        pausedUntil = Math.max(pausedUntil, until);
+    }
+
+    private Duration backoff(int attempt, Duration retryAfter) {
+        long ceiling = Math.min(maxBackoff.toMillis(), initialBackoff.toMillis() << Math.min(attempt - 1, 20));
+        long jittered = (long) (random.getAsDouble() * ceiling);
+        return retryAfter != null && retryAfter.toMillis() > jittered ? retryAfter : Duration.ofMillis(jittered);
+    }
+
+    private void sleep(Duration duration) throws InterruptedException {
+        if (duration.isZero() || duration.isNegative()) {
+            return;
+        }
+        waitMillis.addAndGet(duration.toMillis());
+        sleeper.sleep(duration);
+    }
+
+    private static boolean isRetryable(HttpStatusCode status) {
+        return status.value() == 429 || status.value() == 408 || status.is5xxServerError();
+    }
+
+    /**
+     * Reads {@code retry-after-ms}, then {@code Retry-After} as delta-seconds or an HTTP date, which is
+     * measured from {@code clock}'s current time.
+     */
+    static Duration retryAfter(HttpHeaders headers, Clock clock) {
+        String millis = headers.getFirst("retry-after-ms");
+        String value = headers.getFirst(HttpHeaders.RETRY_AFTER);
+        try {
+            if (millis != null) {
+                return Duration.ofMillis((long) Double.parseDouble(millis.trim()));
+            }
+            if (value == null) {
+                return null;
+            }
+            return Duration.ofMillis((long) (Double.parseDouble(value.trim()) * 1000));
+        } catch (NumberFormatException ex) {
+            try {
+                Duration until = Duration.between(ZonedDateTime.now(clock), ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME));
+                return until.isNegative() ? Duration.ZERO : until;
+            } catch (RuntimeException ignored) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Parses the Go-style durations used by {@code x-ratelimit-reset-*}, e.g. {@code 20ms}, {@code 1s} or {@code 6m0s}.
+     */
+    static Duration parseDuration(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        Matcher matcher = DURATION_PART.matcher(value.trim());
+        double millis = 0;
+        boolean matched = false;
+        while (matcher.find()) {
+            matched = true;
+            double amount = Double.parseDouble(matcher.group(1));
+            millis += switch (matcher.group(2)) {
+                case "h" -> amount * 3_600_000;
+                case "m" -> amount * 60_000;
+                case "s" -> amount * 1_000;
+                default -> amount;
+            };
+        }
+        return matched ? Duration.ofMillis((long) Math.ceil(millis)) : null;
+    }
+
+    private static int orDefault(Integer value, int fallback) {
+        return value != null ? value : fallback;
+    }
+
+    /**
+     * Continuously refilling bucket holding at most one minute of quota. A non-positive rate disables it.
+     */
+    private static final class TokenBucket {
+
+        private final double capacity;
+        private final double perMilli;
+        private double available;
+        private long refilledAt;
+
+        TokenBucket(int perMinute, long now) {
+            this.capacity = perMinute;
+            this.perMilli = perMinute / 60_000.0;
+            this.available = perMinute;
+            this.refilledAt = now;
+        }
+
+        long millisUntil(double amount, long now) {
+            if (capacity <= 0) {
+                return 0;
+            }
+            refill(now);
+            double missing = Math.min(amount, capacity) - available;
+            return missing <= 0 ? 0 : (long) Math.ceil(missing / perMilli);
+        }
+
+        void take(double amount) {
+            if (capacity > 0) {
+                available -= Math.min(amount, capacity);
+            }
+        }
+
+        void limitTo(double remaining, long now) {
+            if (capacity > 0) {
+                refill(now);
+                available = Math.min(available, remaining);
+            }
+        }
+
+        private void refill(long now) {
+            if (now > refilledAt) {
+                available = Math.min(capacity, available + (now - refilledAt) * perMilli);
+                refilledAt = now;
+            }
+        }
+    }
+}
@@ -1,41 +1,362 @@
 package com.example.booktranslator.service;
 
 import com.example.booktranslator.config.OpenAiProperties;
+import com.example.booktranslator.config.TranslationProperties;
 import com.example.booktranslator.model.TranslationSegment;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
 
+/**
+ * Translates segments through the cache and OpenAI. Segments missing from the cache are claimed in a
+ * process-wide in-flight registry first: when another request is already translating the same text into
+ * the same language, this request waits for that result instead of paying for a second upstream call.
+ */
 @Service
-public class OpenAiTranslationService {
+public class OpenAiTranslationService implements MeterBinder {
 
     private static final Logger log = LoggerFactory.getLogger(OpenAiTranslationService.class);
 
     private final OpenAiClient openAiClient;
     private final OpenAiProperties properties;
+    private final TranslationProperties translationProperties;
+    private final TranslationCache translationCache;
+    private final PipelineMetrics metrics;
+    private final SingleFlight<String, String> inFlight = new SingleFlight<>();
 
-    public OpenAiTranslationService(OpenAiClient openAiClient, OpenAiProperties properties) {
+    public OpenAiTranslationService(OpenAiClient openAiClient,
+                                    OpenAiProperties properties,
+                                    TranslationProperties translationProperties,
+                                    TranslationCache translationCache,
+                                    PipelineMetrics metrics) {
         this.openAiClient = openAiClient;
         this.properties = properties;
+        this.translationProperties = translationProperties;
+        this.translationCache = translationCache;
+        this.metrics = metrics;
     }
 
     public List<TranslationSegment> translateSegments(List<String> segments, String targetLanguage) {
-        int limit = properties.maxSentences() != null
-                ? Math.min(properties.maxSentences(), segments.size())
-                : segments.size();
-        List<TranslationSegment> results = new ArrayList<>();
+        return translateSegments(segments, targetLanguage, segment -> {
+        });
+    }
+
+    /**
+     * Translates segments as {@link #translateSegments(List, String)} does, reporting each segment to
+     * {@code onTranslated} as soon as it is done. With concurrency enabled the listener is called from
+     * worker threads and not necessarily in index order.
+     */
+    public List<TranslationSegment> translateSegments(List<String> segments,
+                                                      String targetLanguage,
+                                                      Consumer<TranslationSegment> onTranslated) {
+        Lookup lookup = lookUp(segments, targetLanguage);
+        TranslationSegment[] results = new TranslationSegment[lookup.limit()];
+        for (TranslationSegment cached : lookup.cached()) {
+            results[cached.index() - 1] = cached;
+            onTranslated.accept(cached);
+        }
+        try {
+            if (!lookup.pending().isEmpty()) {
+                for (TranslationSegment translated : translatePending(lookup.pending(), segments, targetLanguage, onTranslated, lookup.owned())) {
+                    results[translated.index() - 1] = translated;
+                }
+            }
+        } finally {
+            release(segments, targetLanguage, lookup.owned());
+        }
+        // Our own claims are resolved by now, so waiting here cannot deadlock with a request waiting on us.
+        lookup.joined().forEach((index, claim) -> {
+            results[index] = awaitShared(index, segments.get(index), targetLanguage, claim);
+            onTranslated.accept(results[index]);
+        });
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Non-blocking counterpart of {@link #translateSegments(List, String, Consumer)}: emits each segment as
+     * soon as it is translated, not necessarily in index order. Upstream calls are made without blocking a
+     * thread and waiting on another request's translation of the same text is asynchronous too.
+     */
+    public Flux<TranslationSegment> translateSegmentsReactive(List<String> segments, String targetLanguage) {
+        return Mono.fromCallable(() -> lookUp(segments, targetLanguage))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(lookup -> {
+                    Flux<TranslationSegment> owned = translatePendingReactive(lookup.pending(), segments, targetLanguage, lookup.owned());
+                    Flux<TranslationSegment> joined = Flux.fromIterable(lookup.joined().entrySet())
+                            .flatMap(entry -> awaitSharedReactive(entry.getKey(), segments.get(entry.getKey()),
+                                    targetLanguage, entry.getValue()));
+                    // Released however the subscriber leaves, even before the owned segments were subscribed.
+                    return Flux.concat(Flux.fromIterable(lookup.cached()), Flux.merge(owned, joined))
+                            .doFinally(signal -> release(segments, targetLanguage, lookup.owned()));
+                });
+    }
+
+    /**
+     * Serves what the cache has and claims the rest, either as owner or as a joiner of another request.
+     */
+    private Lookup lookUp(List<String> segments, String targetLanguage) {
+        int limit = segmentLimit(segments.size());
+        List<TranslationSegment> cachedSegments = new ArrayList<>();
+        List<Integer> pending = new ArrayList<>();
+        Map<Integer, SingleFlight.Claim<String>> owned = new HashMap<>();
+        Map<Integer, SingleFlight.Claim<String>> joined = new LinkedHashMap<>();
         for (int i = 0; i < limit; i++) {
             String segment = segments.get(i);
-            String translation = openAiClient.translate(segment, targetLanguage)
-                    .orElseGet(() -> {
-                        log.warn("Falling back to source text for segment {}", i);
-                        return segment;
-                    });
-            results.add(new TranslationSegment(i + 1, segment, translation));
+            Optional<String> cached = translationCache.get(segment, targetLanguage);
+            if (cached.isPresent()) {
+                cachedSegments.add(new TranslationSegment(i + 1, segment, cached.get()));
+                continue;
+            }
+            SingleFlight.Claim<String> claim = inFlight.claim(flightKey(segment, targetLanguage));
+            if (claim.owner()) {
+                pending.add(i);
+                owned.put(i, claim);
+            } else {
+                joined.put(i, claim);
+            }
+        }
+        return new Lookup(limit, cachedSegments, pending, owned, joined);
+    }
+
+    private record Lookup(int limit,
+                          List<TranslationSegment> cached,
+                          List<Integer> pending,
+                          Map<Integer, SingleFlight.Claim<String>> owned,
+                          Map<Integer, SingleFlight.Claim<String>> joined) {
+    }
+
+    /**
+     * Releases anything left unresolved by an error or cancellation so that other requests stop waiting on it.
+     */
+    private void release(List<String> segments, String targetLanguage, Map<Integer, SingleFlight.Claim<String>> owned) {
+        owned.forEach((index, claim) -> inFlight.fail(flightKey(segments.get(index), targetLanguage), claim,
+                new CancellationException("Translation of segment " + index + " was abandoned")));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder(PipelineMetrics.TRANSLATION_IN_FLIGHT, inFlight, SingleFlight::inFlight).register(registry);
+        Gauge.builder(PipelineMetrics.TRANSLATION_WAITING, inFlight, SingleFlight::waiting).register(registry);
+        FunctionCounter.builder(PipelineMetrics.TRANSLATION_COALESCED, inFlight, SingleFlight::coalesced).register(registry);
+    }
+
+    /**
+     * How many of {@code available} segments a single call translates, given {@code openai.max-sentences}.
+     */
+    public int segmentLimit(int available) {
+        return properties.maxSentences() != null
+                ? Math.min(properties.maxSentences(), available)
+                : available;
+    }
+
+    private TranslationSegment awaitShared(int index, String segment, String targetLanguage, SingleFlight.Claim<String> claim) {
+        try {
+            return new TranslationSegment(index + 1, segment, inFlight.await(claim));
+        } catch (CancellationException ex) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw ex;
+            }
+            log.debug("Shared translation of segment {} was abandoned, translating it here", index);
+        } catch (RuntimeException ex) {
+            log.debug("Shared translation of segment {} failed, translating it here", index);
+        }
+        return translateSegment(index, segment, targetLanguage, Map.of());
+    }
+
+    private Mono<TranslationSegment> awaitSharedReactive(int index, String segment, String targetLanguage,
+                                                         SingleFlight.Claim<String> claim) {
+        return Mono.fromFuture(() -> inFlight.awaitAsync(claim))
+                .map(translation -> new TranslationSegment(index + 1, segment, translation))
+                .onErrorResume(ex -> {
+                    log.debug("Shared translation of segment {} failed, translating it here", index);
+                    return translateSegmentReactive(index, segment, targetLanguage, Map.of());
+                });
+    }
+
+    private List<TranslationSegment> translatePending(List<Integer> pending,
+                                                      List<String> segments,
+                                                      String targetLanguage,
+                                                      Consumer<TranslationSegment> onTranslated,
+                                                      Map<Integer, SingleFlight.Claim<String>> claims) {
+        List<List<Integer>> groups = plan(pending, segments);
+        int concurrency = resolveConcurrency();
+        if (concurrency <= 1 || groups.size() <= 1) {
+            List<TranslationSegment> results = new ArrayList<>();
+            for (List<Integer> group : groups) {
+                results.addAll(translateGroup(group, segments, targetLanguage, onTranslated, claims));
+            }
+            return results;
         }
+        // flatMapSequential keeps at most `concurrency` calls in flight and re-emits them in source order.
+        return Flux.fromIterable(groups)
+                .flatMapSequential(group -> Mono.fromCallable(() -> translateGroup(group, segments, targetLanguage, onTranslated, claims))
+                        .subscribeOn(Schedulers.boundedElastic()), concurrency)
+                .flatMapIterable(group -> group)
+                .collectList()
+                .block();
+    }
+
+    private List<TranslationSegment> translateGroup(List<Integer> group,
+                                                    List<String> segments,
+                                                    String targetLanguage,
+                                                    Consumer<TranslationSegment> onTranslated,
+                                                    Map<Integer, SingleFlight.Claim<String>> claims) {
+        List<TranslationSegment> results = translateGroup(group, segments, targetLanguage, claims);
+        results.forEach(onTranslated);
         return results;
     }
+
+    private List<TranslationSegment> translateGroup(List<Integer> group,
+                                                    List<String> segments,
+                                                    String targetLanguage,
+                                                    Map<Integer, SingleFlight.Claim<String>> claims) {
+        if (group.size() == 1) {
+            int index = group.get(0);
+            return List.of(translateSegment(index, segments.get(index), targetLanguage, claims));
+        }
+        List<String> texts = group.stream().map(segments::get).toList();
+        Optional<List<String>> translations = metrics.time(PipelineMetrics.TRANSLATE,
+                () -> openAiClient.translateBatch(texts, targetLanguage), "kind", "batch");
+        List<TranslationSegment> results = new ArrayList<>(group.size());
+        if (translations.isEmpty()) {
+            log.warn("Batch of {} segments starting at {} failed, retrying segments individually",
+                    group.size(), group.get(0));
+            for (int index : group) {
+                results.add(translateSegment(index, segments.get(index), targetLanguage, claims));
+            }
+            return results;
+        }
+        for (int i = 0; i < group.size(); i++) {
+            int index = group.get(i);
+            String translation = translations.get().get(i);
+            publish(index, segments.get(index), targetLanguage, translation, claims);
+            results.add(new TranslationSegment(index + 1, segments.get(index), translation));
+        }
+        return results;
+    }
+
+    private TranslationSegment translateSegment(int index,
+                                                String segment,
+                                                String targetLanguage,
+                                                Map<Integer, SingleFlight.Claim<String>> claims) {
+        return metrics.time(PipelineMetrics.TRANSLATE,
+                        () -> openAiClient.translate(segment, targetLanguage), "kind", "single")
+                .map(translated -> {
+                    publish(index, segment, targetLanguage, translated, claims);
+                    return new TranslationSegment(index + 1, segment, translated);
+                })
+                .orElseGet(() -> fallBack(index, segment, targetLanguage, claims));
+    }
+
+    private TranslationSegment fallBack(int index, String segment, String targetLanguage, Map<Integer, SingleFlight.Claim<String>> claims) {
+        log.warn("Falling back to source text for segment {}", index);
+        metrics.fallbackSegment();
+        // Waiters retry on their own rather than inherit the untranslated fallback.
+        SingleFlight.Claim<String> claim = claims.get(index);
+        if (claim != null) {
+            inFlight.fail(flightKey(segment, targetLanguage), claim,
+                    new IllegalStateException("Translation of segment " + index + " failed"));
+        }
+        return TranslationSegment.untranslated(index + 1, segment);
+    }
+
+    private Flux<TranslationSegment> translatePendingReactive(List<Integer> pending,
+                                                              List<String> segments,
+                                                              String targetLanguage,
+                                                              Map<Integer, SingleFlight.Claim<String>> claims) {
+        return Flux.fromIterable(plan(pending, segments))
+                .flatMap(group -> translateGroupReactive(group, segments, targetLanguage, claims), resolveConcurrency());
+    }
+
+    private Flux<TranslationSegment> translateGroupReactive(List<Integer> group,
+                                                            List<String> segments,
+                                                            String targetLanguage,
+                                                            Map<Integer, SingleFlight.Claim<String>> claims) {
+        if (group.size() == 1) {
+            int index = group.get(0);
+            return translateSegmentReactive(index, segments.get(index), targetLanguage, claims).flux();
+        }
+        List<String> texts = group.stream().map(segments::get).toList();
+        return metrics.time(PipelineMetrics.TRANSLATE, openAiClient.translateBatchReactive(texts, targetLanguage), "kind", "batch")
+                // Publishing writes to the cache's log, so it is kept off the HTTP client's event loop.
+                .publishOn(Schedulers.boundedElastic())
+                .flatMapIterable(translations -> {
+                    List<TranslationSegment> results = new ArrayList<>(group.size());
+                    for (int i = 0; i < group.size(); i++) {
+                        int index = group.get(i);
+                        publish(index, segments.get(index), targetLanguage, translations.get(i), claims);
+                        results.add(new TranslationSegment(index + 1, segments.get(index), translations.get(i)));
+                    }
+                    return results;
+                })
+                .switchIfEmpty(Flux.defer(() -> {
+                    log.warn("Batch of {} segments starting at {} failed, retrying segments individually",
+                            group.size(), group.get(0));
+                    return Flux.fromIterable(group)
+                            .flatMap(index -> translateSegmentReactive(index, segments.get(index), targetLanguage, claims));
+                }));
+    }
+
+    private Mono<TranslationSegment> translateSegmentReactive(int index,
+                                                              String segment,
+                                                              String targetLanguage,
+                                                              Map<Integer, SingleFlight.Claim<String>> claims) {
+        return metrics.time(PipelineMetrics.TRANSLATE, openAiClient.translateReactive(segment, targetLanguage), "kind", "single")
+                .publishOn(Schedulers.boundedElastic())
+                .map(translated -> {
+                    publish(index, segment, targetLanguage, translated, claims);
+                    return new TranslationSegment(index + 1, segment, translated);
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> fallBack(index, segment, targetLanguage, claims)));
+    }
+
+    private void publish(int index,
+                         String segment,
+                         String targetLanguage,
+                         String translation,
+                         Map<Integer, SingleFlight.Claim<String>> claims) {
+        translationCache.put(segment, targetLanguage, translation);
+        SingleFlight.Claim<String> claim = claims.get(index);
+        if (claim != null) {
+            inFlight.complete(flightKey(segment, targetLanguage), claim, translation);
+        }
+    }
+
+    private String flightKey(String segment, String targetLanguage) {
+        return properties.chatModel() + "\u0000" + targetLanguage + "\u0000" + segment;
+    }
+
+    private List<List<Integer>> plan(List<Integer> pending, List<String> segments) {
+        int tokenBudget = resolveBatchTokenBudget();
+        return tokenBudget > 0 && pending.size() > 1
+                ? SegmentBatcher.plan(segments, pending, tokenBudget)
+                : pending.stream().map(List::of).toList();
+    }
+
+    private int resolveBatchTokenBudget() {
+        Integer budget = translationProperties.batchTokenBudget();
+        return budget != null ? Math.max(0, budget) : 0;
+    }
+
+    private int resolveConcurrency() {
+        Integer concurrency = translationProperties.concurrency();
+        return concurrency != null ? Math.max(1, concurrency) : 1;
+    }
 }
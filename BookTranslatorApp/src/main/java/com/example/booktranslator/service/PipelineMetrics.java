@@ -0,0 +1,108 @@
+package com.example.booktranslator.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Supplier;
+
+/**
+ * Meters for the translation pipeline. Stage timers publish percentile histograms so latency
+ * distributions can be aggregated in Prometheus; everything is exposed through {@code /actuator/metrics}
+ * and {@code /actuator/prometheus}. The caches, the rate limiter and the in-flight registry publish their
+ * own counters and gauges under the names declared here, as {@code MeterBinder}s.
+ */
+@Component
+public class PipelineMetrics {
+
+    public static final String DOWNLOAD = "pipeline.download";
+    public static final String CLEAN = "pipeline.clean";
+    public static final String SEGMENT = "pipeline.segment";
+    public static final String TRANSLATE = "pipeline.translate";
+    public static final String SPEECH = "pipeline.speech";
+    public static final String AUDIO_WRITE = "pipeline.audio.write";
+    public static final String FALLBACK_SEGMENTS = "translation.fallback.segments";
+    public static final String UPSTREAM_RESPONSES = "upstream.responses";
+    public static final String UPSTREAM_BYTES = "upstream.received.bytes";
+    public static final String OPENAI_TOKENS = "openai.tokens";
+    public static final String TRANSLATION_CACHE_REQUESTS = "translation.cache.requests";
+    public static final String TRANSLATION_CACHE_ENTRIES = "translation.cache.entries";
+    public static final String SEARCH_CACHE_REQUESTS = "search.cache.requests";
+    public static final String SEARCH_CACHE_COALESCED = "search.cache.coalesced";
+    public static final String SEARCH_CACHE_ENTRIES = "search.cache.entries";
+    public static final String RATE_LIMIT_EVENTS = "openai.ratelimit.events";
+    public static final String RATE_LIMIT_WAIT = "openai.ratelimit.wait";
+    public static final String TRANSLATION_IN_FLIGHT = "translation.inflight.calls";
+    public static final String TRANSLATION_WAITING = "translation.inflight.waiting";
+    public static final String TRANSLATION_COALESCED = "translation.inflight.coalesced";
+
+    private final MeterRegistry registry;
+
+    public PipelineMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Metrics backed by a registry with no backends, for tests and tools that do not assert on meters.
+     */
+    public static PipelineMetrics noop() {
+        return new PipelineMetrics(new CompositeMeterRegistry());
+    }
+
+    public <T> T time(String stage, Supplier<T> work, String... tags) {
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            return work.get();
+        } finally {
+            sample.stop(timer(stage, tags));
+        }
+    }
+
+    /**
+     * Times each subscription to {@code work}, from subscribe until it completes, fails or is cancelled.
+     */
+    public <T> Mono<T> time(String stage, Mono<T> work, String... tags) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(registry);
+            return work.doFinally(signal -> sample.stop(timer(stage, tags)));
+        });
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    public void stop(Timer.Sample sample, String stage, String... tags) {
+        sample.stop(timer(stage, tags));
+    }
+
+    public void fallbackSegment() {
+        registry.counter(FALLBACK_SEGMENTS).increment();
+    }
+
+    public void upstreamResponse(String upstream, int status) {
+        registry.counter(UPSTREAM_RESPONSES, "upstream", upstream, "status", String.valueOf(status)).increment();
+    }
+
+    public void upstreamBytes(String upstream, long bytes) {
+        Counter.builder(UPSTREAM_BYTES)
+                .baseUnit("bytes")
+                .tag("upstream", upstream)
+                .register(registry)
+                .increment(bytes);
+    }
+
+    public void tokens(String type, long count) {
+        registry.counter(OPENAI_TOKENS, "type", type).increment(count);
+    }
+
+    private Timer timer(String stage, String... tags) {
+        return Timer.builder(stage)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
@@ -1,118 +1,401 @@
 package com.example.booktranslator.service;
 
 import com.example.booktranslator.config.BookSourceProperties;
+import com.example.booktranslator.config.HttpClientConfig;
 import com.example.booktranslator.model.BookSummary;
+import com.example.booktranslator.model.ChapterInfo;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public class PublicDomainBookService {
 
+    /**
+     * Bump whenever {@link #cleanText} or {@link HtmlTextExtractor} change so cached text cleaned the old way
+     * is downloaded and cleaned again.
+     */
+    public static final String CLEANER_VERSION = "1";
+
     private static final Logger log = LoggerFactory.getLogger(PublicDomainBookService.class);
+    private static final int MAX_TABLES_OF_CONTENTS = 256;
+    // Enough to get past an XML declaration and doctype to the opening <html> tag.
+    private static final int SNIFF_CHARS = 8 * 1024;
 
     private final WebClient webClient;
     private final ObjectMapper objectMapper;
     private final BookSourceProperties properties;
+    private final BookTextCache bookTextCache;
+    private final BookSearchCache searchCache;
+    private final SegmentationService segmentationService;
+    private final PipelineMetrics metrics;
+    private final Map<String, List<ChapterInfo>> tablesOfContents = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, List<ChapterInfo>> eldest) {
+                    return size() > MAX_TABLES_OF_CONTENTS;
+                }
+            });
 
-    public PublicDomainBookService(WebClient.Builder webClientBuilder,
+    public PublicDomainBookService(@Qualifier(HttpClientConfig.GUTENDEX) WebClient.Builder webClientBuilder,
                                    ObjectMapper objectMapper,
-                                   BookSourceProperties properties) {
+                                   BookSourceProperties properties,
+                                   BookTextCache bookTextCache,
+                                   BookSearchCache searchCache,
+                                   SegmentationService segmentationService,
+                                   PipelineMetrics metrics) {
         this.webClient = webClientBuilder.build();
         this.objectMapper = objectMapper;
         this.properties = properties;
+        this.bookTextCache = bookTextCache;
+        this.searchCache = searchCache;
+        this.segmentationService = segmentationService;
+        this.metrics = metrics;
     }
 
     public List<BookSummary> searchBooks(String query) {
         if (query == null || query.isBlank()) {
             return List.of();
         }
+        try {
+            return searchCache.get(query, () -> fetchSearchResults(query));
+        } catch (RuntimeException ex) {
+            log.error("Failed to search books for '{}'", query, ex);
+            return List.of();
+        }
+    }
+
+    /**
+     * Non-blocking counterpart of {@link #searchBooks(String)}, sharing its cache.
+     */
+    public Mono<List<BookSummary>> searchBooksReactive(String query) {
+        if (query == null || query.isBlank()) {
+            return Mono.just(List.of());
+        }
+        return searchCache.getReactive(query, () -> searchResults(query))
+                .onErrorResume(ex -> {
+                    log.error("Failed to search books for '{}'", query, ex);
+                    return Mono.just(List.of());
+                });
+    }
+
+    /**
+     * Queries Gutendex, throwing on any failure so that an error is not mistaken for an empty result and cached.
+     */
+    private List<BookSummary> fetchSearchResults(String query) {
+        return searchResults(query).block();
+    }
+
+    private Mono<List<BookSummary>> searchResults(String query) {
         URI uri = UriComponentsBuilder.fromHttpUrl(properties.searchUrl())
-                .queryParam("search", query)
+                .queryParam("search", URLEncoder.encode(query, StandardCharsets.UTF_8))
                 .build(true)
                 .toUri();
+        return webClient.get()
+                .uri(uri)
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToMono(String.class)
+                .map(response -> parseSearchResults(objectMapper, response))
+                .defaultIfEmpty(List.of());
+    }
+
+    static List<BookSummary> parseSearchResults(ObjectMapper objectMapper, String response) {
+        JsonNode root;
         try {
-            String response = webClient.get()
-                    .uri(uri)
-                    .accept(MediaType.APPLICATION_JSON)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .onErrorResume(throwable -> {
-                        log.warn("Failed to fetch search results", throwable);
-                        return Mono.empty();
-                    })
-                    .block();
-            if (response == null) {
-                return List.of();
-            }
-            JsonNode root = objectMapper.readTree(response);
-            JsonNode results = root.path("results");
-            List<BookSummary> summaries = new ArrayList<>();
-            for (JsonNode node : results) {
-                long id = node.path("id").asLong();
-                String title = node.path("title").asText();
-                JsonNode authors = node.path("authors");
-                String author = authors.isArray() && !authors.isEmpty()
-                        ? authors.get(0).path("name").asText()
-                        : "Unknown";
-                JsonNode formats = node.path("formats");
-                String downloadUrl = firstAvailableTextUrl(formats);
-                summaries.add(new BookSummary(id, title, author, downloadUrl));
-            }
-            return summaries;
-        } catch (Exception ex) {
-            log.error("Error parsing search response", ex);
-            return List.of();
+            root = objectMapper.readTree(response);
+        } catch (JsonProcessingException ex) {
+            throw new UncheckedIOException("Error parsing search response", ex);
         }
+        JsonNode results = root.path("results");
+        List<BookSummary> summaries = new ArrayList<>();
+        for (JsonNode node : results) {
+            long id = node.path("id").asLong();
+            String title = node.path("title").asText();
+            JsonNode authors = node.path("authors");
+            String author = authors.isArray() && !authors.isEmpty()
+                    ? authors.get(0).path("name").asText()
+                    : "Unknown";
+            JsonNode formats = node.path("formats");
+            String downloadUrl = firstAvailableTextUrl(formats);
+            summaries.add(new BookSummary(id, title, author, downloadUrl));
+        }
+        return summaries;
     }
 
     public Optional<String> downloadBookText(long id, String downloadUrl) {
-        String url = downloadUrl;
-        if (url == null || url.isBlank()) {
-            url = UriComponentsBuilder.fromHttpUrl(properties.searchUrl())
-                    .pathSegment(String.valueOf(id))
-                    .build(true)
-                    .toUriString();
-        }
-        try {
-            String payload = webClient.get()
+        return downloadBookTextReactive(id, downloadUrl).blockOptional();
+    }
+
+    /**
+     * Non-blocking counterpart of {@link #downloadBookText(long, String)}: completes empty when the book is
+     * unavailable. Reading and writing the on-disk cache, and cleaning the payload, run on the bounded
+     * elastic scheduler rather than on the HTTP client's event loop.
+     */
+    public Mono<String> downloadBookTextReactive(long id, String downloadUrl) {
+        String url = resolveDownloadUrl(id, downloadUrl);
+        Mono<String> text = Mono.fromCallable(() -> bookTextCache.get(id, url))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(cached -> cached.isPresent() && bookTextCache.isFresh(cached.get())
+                        ? Mono.just(cached.get().text())
+                        : fetchBookText(id, url, cached));
+        return metrics.time(PipelineMetrics.DOWNLOAD, text, "operation", "text");
+    }
+
+    /**
+     * Non-blocking counterpart of {@link #downloadSegments(long, String, String, int)}. The whole book is
+     * downloaded, or revalidated when cached, and then segmented.
+     */
+    public Mono<List<String>> downloadSegmentsReactive(long id, String downloadUrl, String mode, int maxSegments) {
+        return downloadBookTextReactive(id, downloadUrl)
+                .map(text -> segmentationService.segmentText(text, mode, maxSegments));
+    }
+
+    private Mono<String> fetchBookText(long id, String url, Optional<BookTextCache.Entry> cached) {
+        return webClient.get()
+                .uri(url)
+                .headers(headers -> cached.ifPresent(entry -> {
+                    if (entry.etag() != null) {
+                        headers.setIfNoneMatch(entry.etag());
+                    }
+                    if (entry.lastModified() != null) {
+                        headers.set(HttpHeaders.IF_MODIFIED_SINCE, entry.lastModified());
+                    }
+                }))
+                .exchangeToMono(response -> {
+                    HttpHeaders headers = response.headers().asHttpHeaders();
+                    String etag = headers.getETag();
+                    String lastModified = headers.getFirst(HttpHeaders.LAST_MODIFIED);
+                    if (response.statusCode().value() == HttpStatus.NOT_MODIFIED.value()) {
+                        return response.releaseBody().thenReturn(new Download(null, null, etag, lastModified));
+                    }
+                    if (response.statusCode().is2xxSuccessful()) {
+                        MediaType contentType = headers.getContentType();
+                        return response.bodyToMono(String.class)
+                                .map(body -> new Download(body, contentType, etag, lastModified));
+                    }
+                    return response.createError();
+                })
+                .publishOn(Schedulers.boundedElastic())
+                .mapNotNull(download -> {
+                    if (download.payload() == null) {
+                        if (cached.isEmpty()) {
+                            return null;
+                        }
+                        bookTextCache.markValidated(id, url, cached.get(), download.etag(), download.lastModified());
+                        return cached.get().text();
+                    }
+                    String text = cleanPayload(download.payload(), download.contentType());
+                    bookTextCache.put(id, url, text, download.etag(), download.lastModified());
+                    return text;
+                })
+                .switchIfEmpty(Mono.justOrEmpty(cached.map(BookTextCache.Entry::text)))
+                .onErrorResume(ex -> {
+                    if (cached.isPresent()) {
+                        log.warn("Failed to revalidate book {}, serving cached text", id, ex);
+                        return Mono.just(cached.get().text());
+                    }
+                    log.error("Failed to download book {}", id, ex);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Downloads just enough of the book to produce its first {@code maxSegments} segments. The payload is
+     * cleaned and segmented while it streams in and the HTTP download is cancelled as soon as the requested
+     * segments are final. Books that are already cached go through {@link #downloadBookText(long, String)}
+     * so they are revalidated instead of re-downloaded.
+     */
+    public Optional<List<String>> downloadSegments(long id, String downloadUrl, String mode, int maxSegments) {
+        return metrics.time(PipelineMetrics.DOWNLOAD, () -> streamSegments(id, downloadUrl, mode, maxSegments)
+                .collectList()
+                .map(Optional::of)
+                .onErrorReturn(Optional.empty())
+                .block(), "operation", "segments");
+    }
+
+    /**
+     * Emits the book's first {@code maxSegments} segments as soon as each one is final, while the rest of
+     * the book is still downloading, so later stages can start on the opening segments right away. The
+     * download is cancelled once the requested segments are out, or when the subscriber cancels, and
+     * backpressure from a slow subscriber pauses reading from the socket. Fails when the book cannot be
+     * downloaded and completes empty when it has no content.
+     */
+    public Flux<String> streamSegments(long id, String downloadUrl, String mode, int maxSegments) {
+        String url = resolveDownloadUrl(id, downloadUrl);
+        return Mono.fromCallable(() -> bookTextCache.get(id, url).isPresent())
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(cached -> cached
+                        ? downloadBookTextReactive(id, downloadUrl)
+                                .switchIfEmpty(Mono.error(() -> new IllegalStateException("Book " + id + " is unavailable")))
+                                .flatMapIterable(text -> segmentationService.segmentText(text, mode, maxSegments))
+                        : streamUncachedSegments(id, url, mode, maxSegments));
+    }
+
+    private Flux<String> streamUncachedSegments(long id, String url, String mode, int maxSegments) {
+        return Flux.defer(() -> {
+            IncrementalSegmenter segmenter = new IncrementalSegmenter(segmentationService, mode, maxSegments);
+            return webClient.get()
                     .uri(url)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-            if (payload == null) {
-                return Optional.empty();
-            }
-            return Optional.of(cleanPayload(payload));
-        } catch (Exception ex) {
-            log.error("Failed to download book {}", id, ex);
-            return Optional.empty();
+                    .exchangeToFlux(response -> {
+                        if (!response.statusCode().is2xxSuccessful()) {
+                            return response.<String>createError().flux();
+                        }
+                        HttpHeaders headers = response.headers().asHttpHeaders();
+                        String etag = headers.getETag();
+                        String lastModified = headers.getFirst(HttpHeaders.LAST_MODIFIED);
+                        BodyText body = new BodyText(headers.getContentType());
+                        // takeUntil cancels the body subscription, which aborts the transfer, once enough
+                        // segments are final. The line decoder handles multi-byte characters split across
+                        // network buffers; HTML is converted to text as it arrives.
+                        return response.bodyToFlux(String.class)
+                                .takeUntil(line -> segmenter.append(body.feed(line + "\n")))
+                                .concatMapIterable(line -> segmenter.drainFinal())
+                                .concatWith(Flux.defer(() -> {
+                                    segmenter.append(body.finish());
+                                    List<String> remaining = segmenter.drainRemaining();
+                                    if (!segmenter.hasWholeBody()) {
+                                        log.debug("Stopped downloading book {} once {} segments were ready", id, maxSegments);
+                                        return Flux.fromIterable(remaining);
+                                    }
+                                    return Mono.fromRunnable(() -> bookTextCache.put(id, url, segmenter.text(), etag, lastModified))
+                                            .subscribeOn(Schedulers.boundedElastic())
+                                            .thenMany(Flux.fromIterable(remaining));
+                                }));
+                    })
+                    .doOnError(ex -> log.error("Failed to download book {}", id, ex));
+        });
+    }
+
+    /**
+     * The chapters of the whole book with their titles and offsets into the cleaned text. The book is
+     * indexed once and the result kept in memory, so picking a chapter range does not re-scan it.
+     */
+    public Optional<List<ChapterInfo>> tableOfContents(long id, String downloadUrl) {
+        String key = id + "\u0000" + resolveDownloadUrl(id, downloadUrl);
+        List<ChapterInfo> cached = tablesOfContents.get(key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        return downloadBookText(id, downloadUrl).map(text -> {
+            List<ChapterInfo> chapters = List.copyOf(segmentationService.tableOfContents(text));
+            tablesOfContents.put(key, chapters);
+            return chapters;
+        });
+    }
+
+    private String resolveDownloadUrl(long id, String downloadUrl) {
+        if (downloadUrl != null && !downloadUrl.isBlank()) {
+            return downloadUrl;
         }
+        return UriComponentsBuilder.fromHttpUrl(properties.searchUrl())
+                .pathSegment(String.valueOf(id))
+                .build(true)
+                .toUriString();
+    }
+
+    private String cleanPayload(String payload, MediaType contentType) {
+        return metrics.time(PipelineMetrics.CLEAN, () -> cleanText(payload, contentType));
+    }
+
+    static String cleanText(String payload) {
+        return cleanText(payload, null);
+    }
+
+    /**
+     * Reduces a downloaded payload to the book body: HTML is flattened to text, then the Gutenberg license
+     * header and footer are stripped.
+     */
+    static String cleanText(String payload, MediaType contentType) {
+        String text = isHtml(contentType, payload) ? HtmlTextExtractor.extract(payload) : payload;
+        return GutenbergBoilerplate.strip(text);
     }
 
-    private String cleanPayload(String payload) {
-        if (payload.contains("<body")) {
-            return payload.replaceAll("<[^>]+>", " ")
-                    .replaceAll("&nbsp;", " ")
-                    .replaceAll("&amp;", "&")
-                    .replaceAll("\s+", " ")
-                    .trim();
+    /**
+     * Whether a payload is HTML: either its content type says so, or its opening {@value #SNIFF_CHARS}
+     * characters contain an {@code <html>} or {@code <body>} tag, since mirrors also serve HTML as
+     * {@code text/plain}, as {@code application/octet-stream} or without a type. The streaming and whole-body
+     * downloads both decide with this rule.
+     */
+    static boolean isHtml(MediaType contentType, CharSequence payload) {
+        if (contentType != null && (MediaType.TEXT_HTML.isCompatibleWith(contentType)
+                || MediaType.APPLICATION_XHTML_XML.isCompatibleWith(contentType))) {
+            return true;
+        }
+        String head = payload.subSequence(0, Math.min(payload.length(), SNIFF_CHARS)).toString().toLowerCase(Locale.ROOT);
+        return head.contains("<html") || head.contains("<body");
+    }
+
+    private record Download(String payload, MediaType contentType, String etag, String lastModified) {
+    }
+
+    /**
+     * Turns a streamed body into text, line by line. Unless the content type already says HTML, lines are
+     * held back until enough of the body has arrived for {@link #isHtml} to decide; HTML is then passed
+     * through an {@link HtmlTextExtractor}.
+     */
+    private static final class BodyText {
+
+        private final MediaType contentType;
+        private StringBuilder head = new StringBuilder();
+        private HtmlTextExtractor extractor;
+
+        BodyText(MediaType contentType) {
+            this.contentType = contentType;
+            if (isHtml(contentType, "")) {
+                decide();
+            }
+        }
+
+        String feed(String line) {
+            if (head == null) {
+                return extractor != null ? extractor.feed(line) : line;
+            }
+            head.append(line);
+            return head.length() < SNIFF_CHARS ? "" : decide();
+        }
+
+        String finish() {
+            String rest = head != null ? decide() : "";
+            return extractor != null ? rest + extractor.finish() : rest;
+        }
+
+        private String decide() {
+            String buffered = head.toString();
+            head = null;
+            if (!isHtml(contentType, buffered)) {
+                return buffered;
+            }
+            extractor = new HtmlTextExtractor();
+            return extractor.feed(buffered);
         }
-        return payload;
     }
 
-    private String firstAvailableTextUrl(JsonNode formats) {
+    private static String firstAvailableTextUrl(JsonNode formats) {
         if (formats == null) {
             return null;
         }
@@ -0,0 +1,89 @@
+package com.example.booktranslator.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Packs consecutive segments into token-budgeted batches and converts them to and from the
+ * index-tagged format used for multi-segment chat completions. Segment text is escaped like XML character
+ * data, so a literal {@code </s>} or {@code <s id=} in the source cannot be mistaken for a tag.
+ */
+final class SegmentBatcher {
+
+    private static final Pattern TAGGED_SEGMENT = Pattern.compile("<s id=\"(\\d+)\">(.*?)</s>", Pattern.DOTALL);
+    private static final int TAG_OVERHEAD_TOKENS = 8;
+
+    private SegmentBatcher() {
+    }
+
+    /**
+     * Groups the given segment indices, in order, into batches whose estimated size stays within
+     * {@code tokenBudget}. A segment that exceeds the budget on its own is placed in a batch by itself.
+     */
+    static List<List<Integer>> plan(List<String> segments, List<Integer> indices, int tokenBudget) {
+        List<List<Integer>> batches = new ArrayList<>();
+        List<Integer> current = new ArrayList<>();
+        int currentTokens = 0;
+        for (int i : indices) {
+            int tokens = estimateTokens(segments.get(i)) + TAG_OVERHEAD_TOKENS;
+            if (!current.isEmpty() && currentTokens + tokens > tokenBudget) {
+                batches.add(current);
+                current = new ArrayList<>();
+                currentTokens = 0;
+            }
+            current.add(i);
+            currentTokens += tokens;
+        }
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+
+    static String encode(List<String> texts) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < texts.size(); i++) {
+            builder.append("<s id=\"").append(i + 1).append("\">")
+                    .append(escape(texts.get(i)))
+                    .append("</s>\n");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Splits a tagged response back into per-segment translations. Returns empty unless every id from
+     * 1 to {@code expected} appears exactly once and in order, which is how merged or dropped segments
+     * are detected.
+     */
+    static Optional<List<String>> decode(String response, int expected) {
+        if (response == null) {
+            return Optional.empty();
+        }
+        List<String> translations = new ArrayList<>(expected);
+        Matcher matcher = TAGGED_SEGMENT.matcher(response);
+        while (matcher.find()) {
+            int id = Integer.parseInt(matcher.group(1));
+            String translation = unescape(matcher.group(2).trim());
+            if (id != translations.size() + 1 || translation.isEmpty()) {
+                return Optional.empty();
+            }
+            translations.add(translation);
+        }
+        return translations.size() == expected ? Optional.of(translations) : Optional.empty();
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;");
+    }
+
+    private static String unescape(String text) {
+        return text.replace("&lt;", "<").replace("&amp;", "&");
+    }
+
+    static int estimateTokens(String text) {
+        return TokenEstimator.estimate(text) + 1;
+    }
+}
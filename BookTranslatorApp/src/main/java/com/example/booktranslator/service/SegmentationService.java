@@ -1,8 +1,10 @@
 package com.example.booktranslator.service;
 
+import com.example.booktranslator.config.SegmentationProperties;
+import com.example.booktranslator.model.ChapterInfo;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.text.BreakIterator;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
@@ -10,29 +12,75 @@ import java.util.Locale;
 @Service
 public class SegmentationService {
 
+    private static final int AVERAGE_SENTENCE_CHARS = 100;
+    private static final int DEFAULT_TOKEN_TARGET = 600;
+
+    private final PipelineMetrics metrics;
+    private final int tokenTarget;
+
+    @Autowired
+    public SegmentationService(PipelineMetrics metrics, SegmentationProperties properties) {
+        this.metrics = metrics;
+        this.tokenTarget = properties.tokenTarget() != null ? Math.max(1, properties.tokenTarget()) : DEFAULT_TOKEN_TARGET;
+    }
+
+    SegmentationService() {
+        this(PipelineMetrics.noop(), new SegmentationProperties(null));
+    }
+
     public List<String> segmentText(String text, String mode, int maxSegments) {
-        return switch (mode.toLowerCase(Locale.ROOT)) {
+        String normalizedMode = normalizeMode(mode);
+        return metrics.time(PipelineMetrics.SEGMENT, () -> switch (normalizedMode) {
             case "pages" -> splitByPages(text, maxSegments);
             case "chapters" -> splitByChapters(text, maxSegments);
+            case "tokens" -> packByTokens(text, maxSegments);
             default -> splitBySentences(text, maxSegments);
+        }, "mode", normalizedMode);
+    }
+
+    /**
+     * The segmentation mode actually used for {@code mode}: unknown or missing modes fall back to sentences.
+     */
+    static String normalizeMode(String mode) {
+        String lowerCase = mode == null ? "" : mode.strip().toLowerCase(Locale.ROOT);
+        return switch (lowerCase) {
+            case "pages", "chapters", "tokens" -> lowerCase;
+            default -> "sentences";
         };
     }
 
+    /**
+     * Sentence boundaries as offset spans, for callers that only materialize some of the segments.
+     */
+    public SentenceSpans sentenceSpans(String text, int maxSegments) {
+        return metrics.time(PipelineMetrics.SEGMENT, () -> findSentences(text, maxSegments), "mode", "sentences");
+    }
+
     private List<String> splitBySentences(String text, int maxSegments) {
-        BreakIterator iterator = BreakIterator.getSentenceInstance(Locale.US);
-        iterator.setText(text);
-        List<String> sentences = new ArrayList<>();
-        int start = iterator.first();
-        int end = iterator.next();
-        while (end != BreakIterator.DONE && sentences.size() < maxSegments) {
-            String sentence = text.substring(start, end).trim();
-            if (!sentence.isEmpty()) {
-                sentences.add(sentence);
-            }
-            start = end;
-            end = iterator.next();
+        return new ArrayList<>(findSentences(text, maxSegments).segments());
+    }
+
+    /**
+     * Scans large texts in parallel when the limit is high enough that most of the text would be read
+     * anyway; otherwise a single scan stops as soon as the limit is reached.
+     */
+    private SentenceSpans findSentences(String text, int maxSegments) {
+        if (text.length() >= SentenceSegmenter.PARALLEL_THRESHOLD
+                && Runtime.getRuntime().availableProcessors() > 1
+                && (long) maxSegments * AVERAGE_SENTENCE_CHARS >= text.length()) {
+            return SentenceSegmenter.segmentParallel(text).limit(maxSegments);
         }
-        return sentences;
+        return SentenceSegmenter.segment(text, maxSegments);
+    }
+
+    /**
+     * Packs whole sentences into segments of up to {@code tokenTarget} estimated tokens. A sentence longer
+     * than the target becomes a segment of its own rather than being split.
+     */
+    private List<String> packByTokens(String text, int maxSegments) {
+        TokenPacker packer = new TokenPacker(text, tokenTarget, maxSegments);
+        SentenceSegmenter.forEach(text, packer);
+        return packer.finish();
     }
 
     private List<String> splitByPages(String text, int maxSegments) {
@@ -40,22 +88,20 @@ public class SegmentationService {
         return splitBySize(text, charsPerPage, maxSegments);
     }
 
+    /**
+     * The book's chapter headings, found in a single pass, for building a table of contents.
+     */
+    public List<ChapterInfo> tableOfContents(String text) {
+        return metrics.time(PipelineMetrics.SEGMENT, () -> ChapterIndex.scan(text, Integer.MAX_VALUE).tableOfContents(),
+                "mode", "toc");
+    }
+
     private List<String> splitByChapters(String text, int maxSegments) {
-        String[] chapters = text.split("(?i)\\bchapter\\b");
-        List<String> results = new ArrayList<>();
-        for (String chapter : chapters) {
-            if (chapter.isBlank()) {
-                continue;
-            }
-            results.add(chapter.trim());
-            if (results.size() >= maxSegments) {
-                break;
-            }
-        }
-        if (results.isEmpty()) {
-            results.addAll(splitBySentences(text, maxSegments));
+        ChapterIndex index = ChapterIndex.scan(text, maxSegments);
+        if (index.size() == 0) {
+            return splitBySentences(text, maxSegments);
         }
-        return results;
+        return index.chapters();
     }
 
     private List<String> splitBySize(String text, int size, int maxSegments) {
@@ -68,4 +114,47 @@ public class SegmentationService {
         }
         return segments;
     }
+
+    private static final class TokenPacker implements SentenceSegmenter.SpanSink {
+
+        private final String text;
+        private final int tokenTarget;
+        private final int maxSegments;
+        private final List<String> segments = new ArrayList<>();
+        private int start = -1;
+        private int end;
+        private int tokens;
+
+        TokenPacker(String text, int tokenTarget, int maxSegments) {
+            this.text = text;
+            this.tokenTarget = tokenTarget;
+            this.maxSegments = maxSegments;
+        }
+
+        @Override
+        public boolean accept(int sentenceStart, int sentenceEnd) {
+            int sentenceTokens = TokenEstimator.estimate(text, sentenceStart, sentenceEnd);
+            if (start >= 0 && tokens + sentenceTokens > tokenTarget) {
+                segments.add(text.substring(start, end));
+                start = -1;
+                if (segments.size() >= maxSegments) {
+                    return false;
+                }
+            }
+            if (start < 0) {
+                start = sentenceStart;
+                tokens = 0;
+            }
+            end = sentenceEnd;
+            tokens += sentenceTokens;
+            return true;
+        }
+
+        List<String> finish() {
+            if (start >= 0 && segments.size() < maxSegments) {
+                segments.add(text.substring(start, end));
+            }
+            return segments;
+        }
+    }
 }
@@ -0,0 +1,286 @@
+package com.example.booktranslator.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Rule-based sentence segmenter that scans the text once and records offset spans instead of substrings.
+ * <p>
+ * A sentence ends at a run of terminators ({@code . ! ? …} or the full-width {@code 。！？}) plus any
+ * closing quotes or brackets, when it is followed by whitespace and the next word does not start with a
+ * lowercase letter. That keeps dialogue tags ({@code "Are you late?" he asked.}) and trailing-off
+ * ellipses ({@code the coat... no}) inside their sentence. A single period after a known abbreviation
+ * ({@code Mr.}, {@code Dr.}, {@code St.}) or an initial does not end a sentence. A blank line always ends
+ * one, so headings and paragraphs without final punctuation stand alone.
+ * <p>
+ * Because blank lines are hard boundaries, a long text can be cut at blank lines and the pieces
+ * segmented independently; {@link #segmentParallel} does that on the common fork-join pool.
+ */
+final class SentenceSegmenter {
+
+    /**
+     * Below this size a whole-text scan is faster than coordinating parallel chunks.
+     */
+    static final int PARALLEL_THRESHOLD = 512 * 1024;
+
+    private static final int CHUNK_SIZE = 128 * 1024;
+    private static final int MAX_ABBREVIATION_LENGTH = 6;
+    private static final Set<String> ABBREVIATIONS = Set.of(
+            "Mr", "Mrs", "Ms", "Messrs", "Mme", "Mlle", "Dr", "St", "Jr", "Sr", "Prof", "Rev", "Hon",
+            "Capt", "Col", "Gen", "Lt", "Sgt", "Mt", "Ft", "No", "vs", "viz", "cf", "e.g", "i.e"
+    );
+
+    private SentenceSegmenter() {
+    }
+
+    /**
+     * Receives sentence offsets in order; returning {@code false} stops the scan.
+     */
+    @FunctionalInterface
+    interface SpanSink {
+        boolean accept(int start, int end);
+    }
+
+    static SentenceSpans segment(String text, int maxSegments) {
+        Spans spans = new Spans(maxSegments);
+        scan(text, 0, text.length(), spans);
+        return spans.toSentenceSpans(text);
+    }
+
+    /**
+     * Streams sentence offsets to {@code sink} until the text ends or the sink declines more.
+     */
+    static void forEach(String text, SpanSink sink) {
+        scan(text, 0, text.length(), sink);
+    }
+
+    /**
+     * Segments the whole text in chunks cut at blank lines, scanning the chunks in parallel. The result
+     * is identical to {@link #segment} with no limit.
+     */
+    static SentenceSpans segmentParallel(String text) {
+        List<Integer> cuts = chunkBoundaries(text);
+        List<Spans> parts = IntStream.range(0, cuts.size() - 1)
+                .parallel()
+                .mapToObj(chunk -> {
+                    Spans spans = new Spans(Integer.MAX_VALUE);
+                    scan(text, cuts.get(chunk), cuts.get(chunk + 1), spans);
+                    return spans;
+                })
+                .toList();
+        Spans merged = new Spans(Integer.MAX_VALUE);
+        parts.forEach(merged::addAll);
+        return merged.toSentenceSpans(text);
+    }
+
+    private static void scan(String text, int from, int to, SpanSink sink) {
+        int segmentStart = skipWhitespace(text, from, to);
+        int i = segmentStart;
+        while (i < to) {
+            char c = text.charAt(i);
+            if (isTerminator(c)) {
+                int runEnd = i + 1;
+                while (runEnd < to && isTerminator(text.charAt(runEnd))) {
+                    runEnd++;
+                }
+                while (runEnd < to && isCloser(text.charAt(runEnd))) {
+                    runEnd++;
+                }
+                if (endsSentence(text, segmentStart, i, runEnd, to)) {
+                    if (!sink.accept(segmentStart, runEnd)) {
+                        return;
+                    }
+                    segmentStart = skipWhitespace(text, runEnd, to);
+                    i = segmentStart;
+                } else {
+                    i = runEnd;
+                }
+            } else if (c == '\n' && isBlankLine(text, i, to)) {
+                int end = trimEnd(text, segmentStart, i);
+                if (end > segmentStart && !sink.accept(segmentStart, end)) {
+                    return;
+                }
+                segmentStart = skipWhitespace(text, i, to);
+                i = segmentStart;
+            } else {
+                i++;
+            }
+        }
+        if (segmentStart < to) {
+            int end = trimEnd(text, segmentStart, to);
+            if (end > segmentStart) {
+                sink.accept(segmentStart, end);
+            }
+        }
+    }
+
+    /**
+     * Decides whether the terminator run {@code [terminator, runEnd)} closes the sentence that began at
+     * {@code segmentStart}.
+     */
+    private static boolean endsSentence(String text, int segmentStart, int terminator, int runEnd, int to) {
+        char c = text.charAt(terminator);
+        if (c == '。' || c == '！' || c == '？' || runEnd == to) {
+            return true;
+        }
+        if (!Character.isWhitespace(text.charAt(runEnd))) {
+            // Decimal numbers, "U.S.A" and the like.
+            return false;
+        }
+        boolean singlePeriod = c == '.' && !isTerminator(text.charAt(terminator + 1));
+        if (singlePeriod && isAbbreviation(text, segmentStart, terminator)) {
+            return false;
+        }
+        int next = runEnd;
+        int newlines = 0;
+        while (next < to && Character.isWhitespace(text.charAt(next))) {
+            if (text.charAt(next) == '\n') {
+                newlines++;
+            }
+            next++;
+        }
+        if (next == to || newlines >= 2) {
+            return true;
+        }
+        while (next < to && isOpener(text.charAt(next))) {
+            next++;
+        }
+        return next == to || !Character.isLowerCase(text.charAt(next));
+    }
+
+    /**
+     * Whether the word ending just before the period at {@code period} is an abbreviation or an initial.
+     */
+    private static boolean isAbbreviation(String text, int segmentStart, int period) {
+        int start = period;
+        while (start > segmentStart && start > period - MAX_ABBREVIATION_LENGTH - 1) {
+            char previous = text.charAt(start - 1);
+            if (!Character.isLetter(previous) && previous != '.') {
+                break;
+            }
+            start--;
+        }
+        int length = period - start;
+        if (length == 0 || length > MAX_ABBREVIATION_LENGTH
+                || (start > segmentStart && Character.isLetter(text.charAt(start - 1)))) {
+            return false;
+        }
+        if (length == 1) {
+            char initial = text.charAt(start);
+            return Character.isUpperCase(initial) && initial != 'I';
+        }
+        return ABBREVIATIONS.contains(text.substring(start, period));
+    }
+
+    private static boolean isBlankLine(String text, int newline, int to) {
+        for (int i = newline + 1; i < to; i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                return true;
+            }
+            if (!Character.isWhitespace(c)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Offsets at which the text can be split without changing the segmentation: the text's ends plus a
+     * point just past a blank line roughly every {@link #CHUNK_SIZE} characters.
+     */
+    private static List<Integer> chunkBoundaries(String text) {
+        List<Integer> cuts = new ArrayList<>();
+        cuts.add(0);
+        int target = CHUNK_SIZE;
+        while (target < text.length()) {
+            int newline = text.indexOf('\n', target);
+            while (newline >= 0 && !isBlankLine(text, newline, text.length())) {
+                newline = text.indexOf('\n', newline + 1);
+            }
+            if (newline < 0) {
+                break;
+            }
+            int cut = text.indexOf('\n', newline + 1) + 1;
+            cuts.add(cut);
+            target = cut + CHUNK_SIZE;
+        }
+        cuts.add(text.length());
+        return cuts;
+    }
+
+    private static boolean isTerminator(char c) {
+        return c == '.' || c == '!' || c == '?' || c == '…' || c == '。' || c == '！' || c == '？';
+    }
+
+    private static boolean isCloser(char c) {
+        return c == '"' || c == '\'' || c == '”' || c == '’' || c == '»' || c == ')' || c == ']';
+    }
+
+    private static boolean isOpener(char c) {
+        return c == '"' || c == '\'' || c == '“' || c == '‘' || c == '«' || c == '(' || c == '[' || c == '_';
+    }
+
+    private static int skipWhitespace(String text, int from, int to) {
+        int i = from;
+        while (i < to && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int trimEnd(String text, int from, int to) {
+        int end = to;
+        while (end > from && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Growable pair of offset arrays holding at most {@code limit} spans.
+     */
+    private static final class Spans implements SpanSink {
+
+        private final int limit;
+        private int[] starts = new int[64];
+        private int[] ends = new int[64];
+        private int size;
+
+        Spans(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public boolean accept(int start, int end) {
+            if (size >= limit) {
+                return false;
+            }
+            add(start, end);
+            return size < limit;
+        }
+
+        void add(int start, int end) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            size++;
+        }
+
+        void addAll(Spans other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.starts[i], other.ends[i]);
+            }
+        }
+
+        SentenceSpans toSentenceSpans(String text) {
+            return new SentenceSpans(text, starts, ends, size);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.booktranslator.service;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Segment boundaries over a source text, stored as parallel arrays of start (inclusive) and end
+ * (exclusive) offsets. Segment strings are only created when {@link #segment(int)} or {@link #segments()}
+ * is called, so a whole book can be segmented without copying the text that is never sent.
+ */
+public final class SentenceSpans {
+
+    private final String source;
+    private final int[] starts;
+    private final int[] ends;
+    private final int size;
+
+    SentenceSpans(String source, int[] starts, int[] ends, int size) {
+        this.source = source;
+        this.starts = starts;
+        this.ends = ends;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int start(int index) {
+        return starts[checkIndex(index)];
+    }
+
+    public int end(int index) {
+        return ends[checkIndex(index)];
+    }
+
+    public String segment(int index) {
+        checkIndex(index);
+        return source.substring(starts[index], ends[index]);
+    }
+
+    /**
+     * A lazy view of the segments: each string is cut from the source when the element is read.
+     */
+    public List<String> segments() {
+        return new AbstractList<>() {
+            @Override
+            public String get(int index) {
+                return segment(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * The first {@code count} spans, sharing the source text.
+     */
+    SentenceSpans limit(int count) {
+        if (count >= size) {
+            return this;
+        }
+        return new SentenceSpans(source, Arrays.copyOf(starts, count), Arrays.copyOf(ends, count), count);
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Segment " + index + " out of range for " + size + " segments");
+        }
+        return index;
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.booktranslator.service;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent calls for the same key into one execution. The first caller runs the loader and
+ * every caller that arrives while it is in flight receives the same result or exception. Nothing is kept
+ * once the call completes, so this coalesces duplicate work without caching it.
+ * <p>
+ * Work that covers several keys at once, such as a batched upstream request, can use {@link #claim(Object)}
+ * to take ownership of each key and resolve it later with {@link #complete} or {@link #fail}.
+ */
+final class SingleFlight<K, V> {
+
+    /**
+     * The outcome of {@link #claim(Object)}: the owner must resolve {@code result}; other callers wait on it.
+     */
+    record Claim<V>(CompletableFuture<V> result, boolean owner) {
+    }
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /**
+     * Runs {@code loader} on the calling thread unless a call for {@code key} is already in flight, in
+     * which case this waits for that call instead.
+     */
+    V run(K key, Supplier<V> loader) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return await(existing);
+        }
+        execute(key, call, loader);
+        return await(call);
+    }
+
+    /**
+     * Starts {@code loader} on {@code executor} unless a call for {@code key} is already in flight. The
+     * returned future is a copy, so cancelling it does not affect other callers.
+     */
+    CompletableFuture<V> runAsync(K key, Supplier<V> loader, Executor executor) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return existing.copy();
+        }
+        try {
+            executor.execute(() -> execute(key, call, loader));
+        } catch (RejectedExecutionException ex) {
+            inFlight.remove(key, call);
+            call.completeExceptionally(ex);
+        }
+        return call.copy();
+    }
+
+    /**
+     * Takes ownership of {@code key}, or joins the call already in flight for it. An owner must always
+     * resolve its claim, also when it gives up, or joiners would wait forever.
+     */
+    Claim<V> claim(K key) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return new Claim<>(existing.copy(), false);
+        }
+        return new Claim<>(call, true);
+    }
+
+    void complete(K key, Claim<V> claim, V value) {
+        if (claim.owner()) {
+            claim.result().complete(value);
+            inFlight.remove(key, claim.result());
+        }
+    }
+
+    void fail(K key, Claim<V> claim, Throwable failure) {
+        if (claim.owner()) {
+            claim.result().completeExceptionally(failure);
+            inFlight.remove(key, claim.result());
+        }
+    }
+
+    /**
+     * Waits for a claim owned by another caller, rethrowing its failure.
+     */
+    V await(Claim<V> claim) {
+        return await(claim.result());
+    }
+
+    /**
+     * Non-blocking counterpart of {@link #await(Claim)}: the caller counts as waiting until the returned
+     * future completes or is cancelled.
+     */
+    CompletableFuture<V> awaitAsync(Claim<V> claim) {
+        CompletableFuture<V> call = claim.result();
+        if (!call.isDone()) {
+            waiting.incrementAndGet();
+            call.whenComplete((value, failure) -> waiting.decrementAndGet());
+        }
+        return call;
+    }
+
+    int inFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * Callers that joined a call already in flight instead of starting their own.
+     */
+    long coalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * Callers currently waiting on another caller's result, whether blocked or not.
+     */
+    int waiting() {
+        return waiting.get();
+    }
+
+    private void execute(K key, CompletableFuture<V> call, Supplier<V> loader) {
+        try {
+            call.complete(loader.get());
+        } catch (Throwable ex) {
+            call.completeExceptionally(ex);
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    private V await(CompletableFuture<V> call) {
+        if (call.isDone()) {
+            return join(call);
+        }
+        waiting.incrementAndGet();
+        try {
+            return join(call);
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    private static <V> V join(CompletableFuture<V> call) {
+        try {
+            return call.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException ex) {
+            // Only this caller stops waiting; the shared call carries on for the others.
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for an in-flight call");
+        }
+    }
+}
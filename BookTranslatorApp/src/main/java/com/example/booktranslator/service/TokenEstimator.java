@@ -0,0 +1,105 @@
+package com.example.booktranslator.service;
+
+/**
+ * Offline approximation of the token count a GPT-style byte-pair tokenizer assigns to a text, without the
+ * vocabulary files. Text is split the way the tokenizer pre-splits it (letter runs with their leading
+ * space, digit groups of up to three, punctuation runs, newline runs) and each piece is costed from its
+ * length: short ASCII words are a single token, longer ones are split into roughly five-letter pieces,
+ * non-ASCII letters cost about one token per two characters and ideographs one per character.
+ * <p>
+ * English prose comes out at the usual four to five characters per token. It is an estimate for sizing
+ * requests and rate-limit reservations, not an exact count.
+ */
+final class TokenEstimator {
+
+    private static final int SINGLE_TOKEN_WORD_LENGTH = 6;
+    private static final int LETTERS_PER_TOKEN = 5;
+    private static final int DIGITS_PER_TOKEN = 3;
+
+    private TokenEstimator() {
+    }
+
+    static int estimate(CharSequence text) {
+        return estimate(text, 0, text.length());
+    }
+
+    static int estimate(CharSequence text, int from, int to) {
+        int tokens = 0;
+        int i = from;
+        while (i < to) {
+            char c = text.charAt(i);
+            if (Character.isLetter(c)) {
+                int start = i;
+                boolean ascii = true;
+                int ideographs = 0;
+                while (i < to && (Character.isLetter(text.charAt(i)) || isWordJoiner(text, i, to))) {
+                    char letter = text.charAt(i);
+                    if (letter >= 0x80) {
+                        ascii = false;
+                        if (Character.isIdeographic(letter)) {
+                            ideographs++;
+                        }
+                    }
+                    i++;
+                }
+                tokens += wordTokens(i - start, ascii, ideographs);
+            } else if (Character.isDigit(c)) {
+                int start = i;
+                while (i < to && Character.isDigit(text.charAt(i))) {
+                    i++;
+                }
+                tokens += (i - start + DIGITS_PER_TOKEN - 1) / DIGITS_PER_TOKEN;
+            } else if (c == '\n' || c == '\r') {
+                while (i < to && (text.charAt(i) == '\n' || text.charAt(i) == '\r')) {
+                    i++;
+                }
+                tokens++;
+            } else if (Character.isWhitespace(c)) {
+                // A single space merges into the following word; longer runs are tokens of their own.
+                int start = i;
+                while (i < to && text.charAt(i) != '\n' && text.charAt(i) != '\r' && Character.isWhitespace(text.charAt(i))) {
+                    i++;
+                }
+                if (i - start > 1) {
+                    tokens++;
+                }
+            } else {
+                int start = i;
+                while (i < to && isPunctuation(text.charAt(i))) {
+                    i++;
+                }
+                // Common pairs such as ." or ," are single tokens.
+                tokens += Math.max(1, (i - start + 1) / 2);
+                if (i == start) {
+                    i++;
+                }
+            }
+        }
+        return tokens;
+    }
+
+    private static int wordTokens(int length, boolean ascii, int ideographs) {
+        if (ideographs > 0) {
+            return ideographs + (length - ideographs + 1) / 2;
+        }
+        if (!ascii) {
+            return (length + 1) / 2;
+        }
+        if (length <= SINGLE_TOKEN_WORD_LENGTH) {
+            return 1;
+        }
+        return (length + LETTERS_PER_TOKEN - 1) / LETTERS_PER_TOKEN;
+    }
+
+    /**
+     * An apostrophe between letters, as in "don't", continues the word.
+     */
+    private static boolean isWordJoiner(CharSequence text, int i, int to) {
+        char c = text.charAt(i);
+        return (c == '\'' || c == '’') && i + 1 < to && Character.isLetter(text.charAt(i + 1));
+    }
+
+    private static boolean isPunctuation(char c) {
+        return !Character.isLetterOrDigit(c) && !Character.isWhitespace(c);
+    }
+}
@@ -0,0 +1,365 @@
+package com.example.booktranslator.service;
+
+import com.example.booktranslator.config.OpenAiProperties;
+import com.example.booktranslator.config.TranslationStoreProperties;
+import com.example.booktranslator.model.BookSummary;
+import com.example.booktranslator.model.NarratedRange;
+import com.example.booktranslator.model.TranslatedBookPage;
+import com.example.booktranslator.model.TranslationJobRequest;
+import com.example.booktranslator.model.TranslationResult;
+import com.example.booktranslator.model.TranslationSegment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Embedded store of completed translations, one directory per book edition (its id and download URL),
+ * segmentation mode, target language and chat model, so a finished book can be reopened or shared without
+ * running the pipeline again. Each narrated range keeps its own audio file.
+ * <p>
+ * Segments live in an append-only data file of {@code [int length][UTF-8 source][int length][UTF-8
+ * translation]} records. A separate index file holds one fixed-size {@code [long offset][int length]} slot
+ * per segment position, so any page is read with one index read plus one read per segment, however long
+ * the book. Ranges translated by separate jobs fill in the same slots; a re-translated segment is
+ * appended and its slot repointed. The index is written after the data it points to, and the metadata
+ * file is replaced atomically, so a crash never exposes a slot without its record.
+ */
+@Component
+public class TranslatedBookStore {
+
+    private static final Logger log = LoggerFactory.getLogger(TranslatedBookStore.class);
+
+    private static final String DATA_FILE = "segments.dat";
+    private static final String INDEX_FILE = "segments.idx";
+    private static final String META_FILE = "book.properties";
+    private static final int SLOT_BYTES = Long.BYTES + Integer.BYTES;
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final String AUDIO_PREFIX = "audio.";
+
+    private final boolean enabled;
+    private final Path directory;
+    private final String chatModel;
+    private final int defaultPageSize;
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+    public TranslatedBookStore(TranslationStoreProperties properties, OpenAiProperties openAiProperties) {
+        this.enabled = !Boolean.FALSE.equals(properties.enabled());
+        this.directory = Paths.get(properties.directory() != null ? properties.directory() : "translated-books");
+        this.chatModel = openAiProperties.chatModel();
+        this.defaultPageSize = properties.pageSize() != null ? properties.pageSize() : DEFAULT_PAGE_SIZE;
+    }
+
+    static TranslatedBookStore disabled() {
+        return new TranslatedBookStore(new TranslationStoreProperties(false, null, null),
+                new OpenAiProperties(null, null, null, null));
+    }
+
+    public int defaultPageSize() {
+        return defaultPageSize;
+    }
+
+    /**
+     * Stores a completed job's segments at their positions in the book. A result shorter than the
+     * requested range means the book ended there, which is remembered so later requests running past the
+     * end are still recognised as covered. Segments that fell back to their source text are left out, as
+     * in the checkpoint store, so the range is not covered and the next request translates them again.
+     */
+    public void save(TranslationJobRequest request, TranslationResult result) {
+        if (!enabled || result.segments().isEmpty()) {
+            return;
+        }
+        String key = key(request.bookId(), request.downloadUrl(), request.segmentationMode(), request.targetLanguage());
+        Path bookDirectory = directory.resolve(key);
+        synchronized (lock(key)) {
+            try {
+                Files.createDirectories(bookDirectory);
+                Properties meta = readMeta(bookDirectory).orElseGet(Properties::new);
+                int highest = Integer.parseInt(meta.getProperty("segmentCount", "0"));
+                try (FileChannel data = FileChannel.open(bookDirectory.resolve(DATA_FILE),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                     FileChannel index = FileChannel.open(bookDirectory.resolve(INDEX_FILE),
+                             StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                    long position = data.size();
+                    for (TranslationSegment segment : result.segments()) {
+                        if (segment.fallback()) {
+                            continue;
+                        }
+                        ByteBuffer record = encode(segment);
+                        int length = record.remaining();
+                        writeFully(data, record, position);
+                        writeFully(index, ByteBuffer.allocate(SLOT_BYTES).putLong(position).putInt(length).flip(),
+                                (long) (segment.index() - 1) * SLOT_BYTES);
+                        position += length;
+                        highest = Math.max(highest, segment.index());
+                    }
+                    data.force(false);
+                    index.force(false);
+                }
+                meta.setProperty("bookId", String.valueOf(request.bookId()));
+                meta.setProperty("title", String.valueOf(request.title()));
+                if (request.downloadUrl() != null) {
+                    meta.setProperty("downloadUrl", request.downloadUrl());
+                }
+                meta.setProperty("segmentationMode", SegmentationService.normalizeMode(request.segmentationMode()));
+                meta.setProperty("targetLanguage", String.valueOf(request.targetLanguage()));
+                meta.setProperty("chatModel", String.valueOf(chatModel));
+                meta.setProperty("segmentCount", String.valueOf(highest));
+                if (result.segments().size() < request.segments()) {
+                    meta.setProperty("bookEnd", String.valueOf(request.offset() + result.segments().size()));
+                }
+                if (result.audioFileName() != null) {
+                    int first = result.segments().get(0).index();
+                    int last = result.segments().get(result.segments().size() - 1).index();
+                    meta.setProperty(AUDIO_PREFIX + first + "-" + last, result.audioFileName());
+                }
+                writeMeta(bookDirectory, meta);
+            } catch (IOException | RuntimeException ex) {
+                log.warn("Failed to store translation of book {}", request.bookId(), ex);
+            }
+        }
+    }
+
+    /**
+     * Whether every segment of the request's range, up to the end of the book, is already stored.
+     */
+    public boolean covers(TranslationJobRequest request) {
+        if (!enabled) {
+            return false;
+        }
+        Path bookDirectory = directory.resolve(
+                key(request.bookId(), request.downloadUrl(), request.segmentationMode(), request.targetLanguage()));
+        try {
+            Optional<Properties> meta = readMeta(bookDirectory);
+            if (meta.isEmpty()) {
+                return false;
+            }
+            int end = request.offset() + request.segments();
+            String bookEnd = meta.get().getProperty("bookEnd");
+            if (bookEnd != null) {
+                end = Math.min(end, Integer.parseInt(bookEnd));
+            }
+            if (end <= request.offset()) {
+                return false;
+            }
+            ByteBuffer slots = readSlots(bookDirectory, request.offset(), end);
+            while (slots.hasRemaining()) {
+                slots.getLong();
+                if (slots.getInt() == 0) {
+                    return false;
+                }
+            }
+            return slots.limit() == (end - request.offset()) * SLOT_BYTES;
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Unable to read stored translation of book {}", request.bookId(), ex);
+            return false;
+        }
+    }
+
+    /**
+     * Reads one page of a stored translation, counting pages from one. Empty when this edition of the book
+     * has not been translated with this mode, language and model.
+     */
+    public Optional<TranslatedBookPage> page(long bookId, String downloadUrl, String segmentationMode,
+                                             String targetLanguage, int page, int pageSize) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        int size = Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+        Path bookDirectory = directory.resolve(key(bookId, downloadUrl, segmentationMode, targetLanguage));
+        try {
+            Optional<Properties> found = readMeta(bookDirectory);
+            if (found.isEmpty()) {
+                return Optional.empty();
+            }
+            Properties meta = found.get();
+            int total = Integer.parseInt(meta.getProperty("segmentCount", "0"));
+            int current = Math.max(1, Math.min(page, Math.max(1, (total + size - 1) / size)));
+            int from = (current - 1) * size;
+            List<TranslationSegment> segments = readSegments(bookDirectory, from, Math.min(from + size, total));
+            return Optional.of(new TranslatedBookPage(
+                    new BookSummary(bookId, meta.getProperty("title"), "", meta.getProperty("downloadUrl")),
+                    SegmentationService.normalizeMode(segmentationMode),
+                    targetLanguage,
+                    segments,
+                    current,
+                    size,
+                    total,
+                    narration(meta, from + 1, from + size)
+            ));
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Unable to read stored translation of book {}", bookId, ex);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * The stored segments from {@code first} to {@code last} inclusive, counting from one, without the gaps.
+     * Empty when nothing of that range is stored.
+     */
+    public List<TranslationSegment> segments(long bookId, String downloadUrl, String segmentationMode,
+                                             String targetLanguage, int first, int last) {
+        if (!enabled) {
+            return List.of();
+        }
+        Path bookDirectory = directory.resolve(key(bookId, downloadUrl, segmentationMode, targetLanguage));
+        try {
+            Optional<Properties> meta = readMeta(bookDirectory);
+            if (meta.isEmpty()) {
+                return List.of();
+            }
+            int total = Integer.parseInt(meta.get().getProperty("segmentCount", "0"));
+            return readSegments(bookDirectory, Math.max(0, first - 1), Math.min(last, total));
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Unable to read stored translation of book {}", bookId, ex);
+            return List.of();
+        }
+    }
+
+    /**
+     * The narrated ranges overlapping segments {@code first} to {@code last}, in book order.
+     */
+    private static List<NarratedRange> narration(Properties meta, int first, int last) {
+        List<NarratedRange> ranges = new ArrayList<>();
+        for (String name : meta.stringPropertyNames()) {
+            if (!name.startsWith(AUDIO_PREFIX)) {
+                continue;
+            }
+            String[] bounds = name.substring(AUDIO_PREFIX.length()).split("-", 2);
+            NarratedRange range = new NarratedRange(Integer.parseInt(bounds[0]), Integer.parseInt(bounds[1]),
+                    meta.getProperty(name));
+            if (range.first() <= last && range.last() >= first) {
+                ranges.add(range);
+            }
+        }
+        ranges.sort(Comparator.comparingInt(NarratedRange::first).thenComparingInt(NarratedRange::last));
+        return ranges;
+    }
+
+    private List<TranslationSegment> readSegments(Path bookDirectory, int from, int to) throws IOException {
+        List<TranslationSegment> segments = new ArrayList<>(Math.max(0, to - from));
+        if (to <= from) {
+            return segments;
+        }
+        ByteBuffer slots = readSlots(bookDirectory, from, to);
+        try (FileChannel data = FileChannel.open(bookDirectory.resolve(DATA_FILE), StandardOpenOption.READ)) {
+            for (int position = from; slots.remaining() >= SLOT_BYTES; position++) {
+                long offset = slots.getLong();
+                int length = slots.getInt();
+                if (length == 0) {
+                    continue;
+                }
+                ByteBuffer record = ByteBuffer.allocate(length);
+                readFully(data, record, offset);
+                record.flip();
+                segments.add(new TranslationSegment(position + 1, readString(record), readString(record)));
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * The index slots for segment positions {@code [from, to)}, cut short where the index file ends.
+     */
+    private static ByteBuffer readSlots(Path bookDirectory, int from, int to) throws IOException {
+        try (FileChannel index = FileChannel.open(bookDirectory.resolve(INDEX_FILE), StandardOpenOption.READ)) {
+            long start = (long) from * SLOT_BYTES;
+            long available = Math.max(0, Math.min((long) to * SLOT_BYTES, index.size()) - start);
+            ByteBuffer slots = ByteBuffer.allocate((int) available);
+            readFully(index, slots, start);
+            return slots.flip();
+        }
+    }
+
+    private static ByteBuffer encode(TranslationSegment segment) {
+        byte[] source = segment.source().getBytes(StandardCharsets.UTF_8);
+        byte[] translated = segment.translated().getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(Integer.BYTES * 2 + source.length + translated.length)
+                .putInt(source.length).put(source)
+                .putInt(translated.length).put(translated)
+                .flip();
+    }
+
+    private static String readString(ByteBuffer record) {
+        byte[] bytes = new byte[record.getInt()];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of stored translation");
+            }
+        }
+    }
+
+    private static Optional<Properties> readMeta(Path bookDirectory) throws IOException {
+        Path metaFile = bookDirectory.resolve(META_FILE);
+        if (!Files.exists(metaFile)) {
+            return Optional.empty();
+        }
+        Properties meta = new Properties();
+        try (Reader reader = Files.newBufferedReader(metaFile, StandardCharsets.UTF_8)) {
+            meta.load(reader);
+        }
+        return Optional.of(meta);
+    }
+
+    private static void writeMeta(Path bookDirectory, Properties meta) throws IOException {
+        Path tempMeta = Files.createTempFile(bookDirectory, META_FILE, ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tempMeta, StandardCharsets.UTF_8)) {
+            meta.store(writer, null);
+        }
+        Files.move(tempMeta, bookDirectory.resolve(META_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Object lock(String key) {
+        return locks.computeIfAbsent(key, ignored -> new Object());
+    }
+
+    private String key(long bookId, String downloadUrl, String segmentationMode, String targetLanguage) {
+        String source = downloadUrl == null ? "" : downloadUrl.strip();
+        String mode = SegmentationService.normalizeMode(segmentationMode);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Object part : new Object[]{bookId, source, mode, targetLanguage, chatModel}) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+}
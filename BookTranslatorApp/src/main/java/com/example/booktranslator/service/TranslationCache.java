@@ -0,0 +1,259 @@
+package com.example.booktranslator.service;
+
+import com.example.booktranslator.config.OpenAiProperties;
+import com.example.booktranslator.config.TranslationCacheProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Two-tier cache of segment translations keyed by a SHA-256 of the prompt version, chat model, target
+ * language and source text. The first tier is a size-bounded in-memory LRU map; the second is an
+ * append-only log on disk whose offset index is rebuilt on startup.
+ * <p>
+ * Each log record is {@code [32-byte key][int length][int crc32][UTF-8 translation]}. A torn or corrupt
+ * tail left behind by a crash is detected through the checksum and truncated when the log is reopened.
+ */
+@Component
+public class TranslationCache implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(TranslationCache.class);
+
+    private static final String LOG_FILE = "translations.log";
+    private static final int KEY_BYTES = 32;
+    private static final int HEADER_BYTES = KEY_BYTES + Integer.BYTES * 2;
+    private static final int DEFAULT_MEMORY_ENTRIES = 10_000;
+
+    private final boolean enabled;
+    private final String chatModel;
+    private final Map<String, String> memory;
+    private final Map<String, Long> diskIndex = new ConcurrentHashMap<>();
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private FileChannel channel;
+    private long appendPosition;
+
+    public TranslationCache(TranslationCacheProperties properties, OpenAiProperties openAiProperties) {
+        this.enabled = !Boolean.FALSE.equals(properties.enabled());
+        this.chatModel = openAiProperties.chatModel();
+        int maxEntries = properties.memoryEntries() != null ? properties.memoryEntries() : DEFAULT_MEMORY_ENTRIES;
+        this.memory = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxEntries;
+            }
+        });
+        if (enabled) {
+            Path directory = Paths.get(properties.directory() != null ? properties.directory() : "translation-cache");
+            openLog(directory.resolve(LOG_FILE));
+        }
+    }
+
+    static TranslationCache disabled() {
+        return new TranslationCache(new TranslationCacheProperties(false, 0, null),
+                new OpenAiProperties(null, null, null, null));
+    }
+
+    public Optional<String> get(String text, String targetLanguage) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        String key = key(text, targetLanguage);
+        String cached = memory.get(key);
+        if (cached != null) {
+            memoryHits.incrementAndGet();
+            return Optional.of(cached);
+        }
+        Long offset = diskIndex.get(key);
+        if (offset != null) {
+            Optional<String> stored = readRecord(offset);
+            if (stored.isPresent()) {
+                diskHits.incrementAndGet();
+                memory.put(key, stored.get());
+                return stored;
+            }
+        }
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    public void put(String text, String targetLanguage, String translation) {
+        if (!enabled) {
+            return;
+        }
+        String key = key(text, targetLanguage);
+        memory.put(key, translation);
+        if (channel != null && !diskIndex.containsKey(key)) {
+            appendRecord(key, translation);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder(PipelineMetrics.TRANSLATION_CACHE_REQUESTS, memoryHits, AtomicLong::get)
+                .tag("result", "memory-hit").register(registry);
+        FunctionCounter.builder(PipelineMetrics.TRANSLATION_CACHE_REQUESTS, diskHits, AtomicLong::get)
+                .tag("result", "disk-hit").register(registry);
+        FunctionCounter.builder(PipelineMetrics.TRANSLATION_CACHE_REQUESTS, misses, AtomicLong::get)
+                .tag("result", "miss").register(registry);
+        Gauge.builder(PipelineMetrics.TRANSLATION_CACHE_ENTRIES, memory, Map::size).tag("tier", "memory").register(registry);
+        Gauge.builder(PipelineMetrics.TRANSLATION_CACHE_ENTRIES, diskIndex, Map::size).tag("tier", "disk").register(registry);
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            log.warn("Failed to close translation cache log", ex);
+        }
+        channel = null;
+    }
+
+    private String key(String text, String targetLanguage) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : new String[]{OpenAiClient.PROMPT_VERSION, chatModel, targetLanguage, text}) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+
+    private void openLog(Path logFile) {
+        try {
+            Files.createDirectories(logFile.getParent());
+            channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            appendPosition = rebuildIndex();
+            if (appendPosition < channel.size()) {
+                log.warn("Truncating corrupt tail of translation cache log {} at offset {}", logFile, appendPosition);
+                channel.truncate(appendPosition);
+            }
+            log.info("Loaded {} cached translations from {}", diskIndex.size(), logFile);
+        } catch (IOException ex) {
+            log.warn("Translation cache log {} unavailable, using memory tier only", logFile, ex);
+            close();
+        }
+    }
+
+    private long rebuildIndex() throws IOException {
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            readFully(header, position);
+            header.flip();
+            byte[] key = new byte[KEY_BYTES];
+            header.get(key);
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length < 0 || position + HEADER_BYTES + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, position + HEADER_BYTES);
+            if (crc(payload.array()) != checksum) {
+                break;
+            }
+            diskIndex.put(HexFormat.of().formatHex(key), position);
+            position += HEADER_BYTES + length;
+        }
+        return position;
+    }
+
+    private Optional<String> readRecord(long offset) {
+        FileChannel current = channel;
+        if (current == null) {
+            return Optional.empty();
+        }
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(header, offset);
+            header.flip();
+            header.position(KEY_BYTES);
+            int length = header.getInt();
+            int checksum = header.getInt();
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, offset + HEADER_BYTES);
+            if (crc(payload.array()) != checksum) {
+                log.warn("Checksum mismatch in translation cache at offset {}", offset);
+                return Optional.empty();
+            }
+            return Optional.of(new String(payload.array(), StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            log.warn("Failed to read translation cache record at offset {}", offset, ex);
+            return Optional.empty();
+        }
+    }
+
+    private synchronized void appendRecord(String key, String translation) {
+        if (channel == null || diskIndex.containsKey(key)) {
+            return;
+        }
+        byte[] payload = translation.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length)
+                .put(HexFormat.of().parseHex(key))
+                .putInt(payload.length)
+                .putInt(crc(payload))
+                .put(payload)
+                .flip();
+        try {
+            long position = appendPosition;
+            while (record.hasRemaining()) {
+                position += channel.write(record, position);
+            }
+            diskIndex.put(key, appendPosition);
+            appendPosition = position;
+        } catch (IOException ex) {
+            log.warn("Failed to append to translation cache log", ex);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Unexpected end of translation cache log");
+            }
+        }
+    }
+
+    private static int crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+}
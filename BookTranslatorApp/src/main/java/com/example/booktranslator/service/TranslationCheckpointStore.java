@@ -0,0 +1,273 @@
+package com.example.booktranslator.service;
+
+import com.example.booktranslator.config.JobProperties;
+import com.example.booktranslator.config.OpenAiProperties;
+import com.example.booktranslator.model.TranslationJobRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Local progress log for translation jobs, so a run that is interrupted or crashes resumes from the last
+ * translated segment instead of starting over.
+ * <p>
+ * Each book range (book, URL, mode, language, offset and length) has one JSON-lines file per chat model
+ * and prompt version, since a translation from another model or prompt must not be resumed: a header with
+ * the job id and request, then one record per translated segment, flushed as soon as the segment is done.
+ * Finishing a job deletes its file; a failure is appended as a final record so the job is not resumed
+ * automatically, though submitting the same range again still picks up its segments. A torn last line
+ * left by a crash is ignored.
+ */
+@Component
+public class TranslationCheckpointStore {
+
+    private static final Logger log = LoggerFactory.getLogger(TranslationCheckpointStore.class);
+
+    private static final String SUFFIX = ".jsonl";
+
+    private final boolean enabled;
+    private final Path directory;
+    private final String chatModel;
+    private final ObjectMapper objectMapper;
+    private final Set<String> open = ConcurrentHashMap.newKeySet();
+
+    public TranslationCheckpointStore(JobProperties properties, OpenAiProperties openAiProperties, ObjectMapper objectMapper) {
+        this.enabled = properties.checkpointDirectory() == null || !properties.checkpointDirectory().isBlank();
+        this.directory = Paths.get(properties.checkpointDirectory() != null ? properties.checkpointDirectory() : "translation-checkpoints");
+        this.chatModel = openAiProperties.chatModel();
+        this.objectMapper = objectMapper;
+    }
+
+    static TranslationCheckpointStore disabled() {
+        return new TranslationCheckpointStore(new JobProperties(null, null, null, "", false),
+                new OpenAiProperties(null, null, null, null), new ObjectMapper());
+    }
+
+    public record Interrupted(String jobId, TranslationJobRequest request) {
+    }
+
+    /**
+     * Opens the checkpoint for a job's range, loading any segments a previous run recorded. When another
+     * live job already holds the same range the checkpoint is read-only, so two runs never append to
+     * one file.
+     */
+    public Checkpoint open(String jobId, TranslationJobRequest request) {
+        if (!enabled) {
+            return new Checkpoint(null, null, Map.of());
+        }
+        String key = key(request);
+        if (!open.add(key)) {
+            return new Checkpoint(null, null, read(file(key)).completed());
+        }
+        Path file = file(key);
+        try {
+            Map<Integer, String> completed = read(file).completed();
+            Files.createDirectories(directory);
+            Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            if (Files.size(file) == 0) {
+                ObjectNode header = objectMapper.createObjectNode().put("jobId", jobId);
+                header.set("request", objectMapper.valueToTree(request));
+                writeLine(writer, header);
+            }
+            return new Checkpoint(key, writer, completed);
+        } catch (IOException ex) {
+            log.warn("Translation checkpoint {} unavailable, progress will not be saved", file, ex);
+            open.remove(key);
+            return new Checkpoint(null, null, Map.of());
+        }
+    }
+
+    /**
+     * Jobs whose checkpoint was left behind by a run that neither finished nor failed. Checkpoints written
+     * with another chat model or prompt version could never be resumed, so they are deleted instead.
+     */
+    public List<Interrupted> interrupted() {
+        List<Interrupted> interrupted = new ArrayList<>();
+        if (!enabled || !Files.isDirectory(directory)) {
+            return interrupted;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+                    .forEach(file -> {
+                        Contents contents = read(file);
+                        if (contents.request() == null || contents.failed()) {
+                            return;
+                        }
+                        if (!file.equals(file(key(contents.request())))) {
+                            discard(file);
+                            return;
+                        }
+                        interrupted.add(new Interrupted(contents.jobId(), contents.request()));
+                    });
+        } catch (IOException ex) {
+            log.warn("Unable to list translation checkpoints in {}", directory, ex);
+        }
+        return interrupted;
+    }
+
+    private void discard(Path file) {
+        try {
+            Files.deleteIfExists(file);
+            log.info("Discarded translation checkpoint {} from another model or prompt version", file);
+        } catch (IOException ex) {
+            log.warn("Failed to delete translation checkpoint {}", file, ex);
+        }
+    }
+
+    private Contents read(Path file) {
+        Map<Integer, String> completed = new HashMap<>();
+        String jobId = null;
+        TranslationJobRequest request = null;
+        boolean failed = false;
+        if (!Files.exists(file)) {
+            return new Contents(null, null, completed, false);
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                JsonNode record;
+                try {
+                    record = objectMapper.readTree(line);
+                } catch (IOException ex) {
+                    log.debug("Skipping unreadable line in translation checkpoint {}", file);
+                    continue;
+                }
+                if (record.has("request")) {
+                    jobId = record.path("jobId").asText();
+                    request = objectMapper.treeToValue(record.get("request"), TranslationJobRequest.class);
+                } else if (record.has("failed")) {
+                    failed = true;
+                } else if (record.has("index")) {
+                    completed.put(record.get("index").asInt(), record.path("translation").asText());
+                    failed = false;
+                }
+            }
+        } catch (IOException ex) {
+            log.warn("Unable to read translation checkpoint {}", file, ex);
+        }
+        return new Contents(jobId, request, completed, failed);
+    }
+
+    private void writeLine(Writer writer, JsonNode record) throws IOException {
+        writer.write(objectMapper.writeValueAsString(record));
+        writer.write('\n');
+        writer.flush();
+    }
+
+    private Path file(String key) {
+        return directory.resolve(key + SUFFIX);
+    }
+
+    private String key(TranslationJobRequest request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Object part : new Object[]{request.bookId(), request.downloadUrl(), request.segmentationMode(),
+                    request.targetLanguage(), request.offset(), request.segments(), chatModel,
+                    OpenAiClient.PROMPT_VERSION}) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+
+    private record Contents(String jobId, TranslationJobRequest request, Map<Integer, String> completed, boolean failed) {
+    }
+
+    /**
+     * One job's handle on its checkpoint. Recording is thread-safe because translation workers report
+     * segments concurrently. Closing without {@link #finish()} or {@link #fail(String)} leaves the
+     * checkpoint to be resumed.
+     */
+    public final class Checkpoint implements AutoCloseable {
+
+        private final String key;
+        private final Map<Integer, String> completed;
+        private Writer writer;
+
+        private Checkpoint(String key, Writer writer, Map<Integer, String> completed) {
+            this.key = key;
+            this.writer = writer;
+            this.completed = completed;
+        }
+
+        /**
+         * Translations recorded by earlier runs, by segment index within the range.
+         */
+        public Map<Integer, String> completed() {
+            return completed;
+        }
+
+        public synchronized void record(int index, String translation) {
+            write(objectMapper.createObjectNode().put("index", index).put("translation", translation));
+        }
+
+        public synchronized void fail(String message) {
+            write(objectMapper.createObjectNode().put("failed", message));
+            close();
+        }
+
+        public synchronized void finish() {
+            if (writer == null) {
+                return;
+            }
+            close();
+            try {
+                Files.deleteIfExists(file(key));
+            } catch (IOException ex) {
+                log.warn("Failed to delete translation checkpoint {}", key, ex);
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            if (writer == null) {
+                return;
+            }
+            try {
+                writer.close();
+            } catch (IOException ex) {
+                log.warn("Failed to close translation checkpoint {}", key, ex);
+            }
+            writer = null;
+            open.remove(key);
+        }
+
+        private void write(JsonNode record) {
+            if (writer == null) {
+                return;
+            }
+            try {
+                writeLine(writer, record);
+            } catch (IOException ex) {
+                log.warn("Failed to write translation checkpoint {}, progress will not be saved", key, ex);
+                close();
+            }
+        }
+    }
+}
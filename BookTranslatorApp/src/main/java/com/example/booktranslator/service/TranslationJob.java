@@ -0,0 +1,131 @@
+package com.example.booktranslator.service;
+
+import com.example.booktranslator.model.JobStage;
+import com.example.booktranslator.model.JobStatus;
+import com.example.booktranslator.model.TranslationJobRequest;
+import com.example.booktranslator.model.TranslationResult;
+import com.example.booktranslator.model.TranslationSegment;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A translation pipeline run tracked by {@link TranslationJobService}. Progress fields are written by the
+ * worker thread and read by status requests, so they are volatile or atomic. Translated segments are also
+ * published to a replaying sink so event-stream subscribers see every segment however late they join.
+ */
+public class TranslationJob {
+
+    private final String id;
+    private final TranslationJobRequest request;
+    private final AtomicInteger completedSegments = new AtomicInteger();
+    private final Sinks.Many<TranslationSegment> segments = Sinks.many().replay().all();
+    private volatile JobStage stage = JobStage.QUEUED;
+    private volatile int totalSegments;
+    private volatile TranslationResult result;
+    private volatile String error;
+    private volatile Instant finishedAt;
+    private volatile int restoredSegments;
+    private volatile long translatingSinceNanos;
+
+    public TranslationJob(String id, TranslationJobRequest request) {
+        this.id = id;
+        this.request = request;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public TranslationJobRequest getRequest() {
+        return request;
+    }
+
+    public JobStage getStage() {
+        return stage;
+    }
+
+    public TranslationResult getResult() {
+        return result;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    /**
+     * Segments in the order they finished translating, completing once the whole job has finished.
+     */
+    public Flux<TranslationSegment> segments() {
+        return segments.asFlux();
+    }
+
+    /**
+     * Current progress. Throughput is averaged over the segments this run has translated since it started
+     * translating, and the ETA assumes the rest go at the same rate.
+     */
+    public JobStatus status() {
+        int completed = completedSegments.get();
+        double rate = 0;
+        Long eta = null;
+        int translatedHere = completed - restoredSegments;
+        if (stage == JobStage.TRANSLATING && translatedHere > 0) {
+            double elapsedSeconds = (System.nanoTime() - translatingSinceNanos) / 1e9;
+            rate = translatedHere / Math.max(elapsedSeconds, 1e-3);
+            eta = Math.round((totalSegments - completed) / rate);
+        }
+        return new JobStatus(id, stage, completed, totalSegments, error, rate, eta);
+    }
+
+    void advance(JobStage next) {
+        stage = next;
+    }
+
+    void startTranslating(int total) {
+        totalSegments = total;
+        translatingSinceNanos = System.nanoTime();
+        stage = JobStage.TRANSLATING;
+    }
+
+    /**
+     * Corrects the total once the download shows how many segments the range really has.
+     */
+    void rangeSize(int total) {
+        totalSegments = total;
+    }
+
+    /**
+     * Reports a segment recovered from a checkpoint: it counts as done but not towards this run's rate.
+     */
+    synchronized void segmentRestored(TranslationSegment segment) {
+        restoredSegments++;
+        segmentTranslated(segment);
+    }
+
+    // Sinks reject concurrent emissions, and translation workers report segments in parallel.
+    synchronized void segmentTranslated(TranslationSegment segment) {
+        completedSegments.incrementAndGet();
+        segments.tryEmitNext(segment);
+    }
+
+    synchronized void complete(TranslationResult translationResult) {
+        result = translationResult;
+        finishedAt = Instant.now();
+        stage = JobStage.COMPLETED;
+        segments.tryEmitComplete();
+    }
+
+    synchronized void fail(String message) {
+        error = message;
+        finishedAt = Instant.now();
+        stage = JobStage.FAILED;
+        segments.tryEmitComplete();
+    }
+}
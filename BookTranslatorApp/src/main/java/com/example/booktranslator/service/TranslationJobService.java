@@ -0,0 +1,126 @@
+package com.example.booktranslator.service;
+
+import com.example.booktranslator.config.JobProperties;
+import com.example.booktranslator.model.TranslationJobRequest;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs translation pipelines off the request threads on a fixed-size worker pool with a bounded queue.
+ * When both are full new jobs are rejected instead of piling up, which gives the application admission
+ * control. Finished jobs stay available for {@code translation.jobs.retention} so their results can be
+ * rendered.
+ */
+@Service
+public class TranslationJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(TranslationJobService.class);
+
+    private static final int DEFAULT_THREADS = 4;
+    private static final int DEFAULT_QUEUE_CAPACITY = 16;
+    private static final Duration DEFAULT_RETENTION = Duration.ofHours(1);
+
+    private final TranslationPipeline pipeline;
+    private final TranslationCheckpointStore checkpointStore;
+    private final ThreadPoolExecutor executor;
+    private final Duration retention;
+    private final boolean resumeOnStartup;
+    private final Map<String, TranslationJob> jobs = new ConcurrentHashMap<>();
+
+    public TranslationJobService(TranslationPipeline pipeline,
+                                 JobProperties properties,
+                                 TranslationCheckpointStore checkpointStore) {
+        this.pipeline = pipeline;
+        this.checkpointStore = checkpointStore;
+        this.resumeOnStartup = !Boolean.FALSE.equals(properties.resumeOnStartup());
+        int threads = properties.threads() != null ? properties.threads() : DEFAULT_THREADS;
+        int queueCapacity = properties.queueCapacity() != null ? properties.queueCapacity() : DEFAULT_QUEUE_CAPACITY;
+        this.retention = properties.retention() != null ? properties.retention() : DEFAULT_RETENTION;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), workerThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Queues a job and returns immediately.
+     *
+     * @throws RejectedExecutionException when every worker is busy and the queue is full
+     */
+    public TranslationJob submit(TranslationJobRequest request) {
+        return submit(UUID.randomUUID().toString(), request);
+    }
+
+    /**
+     * Re-queues jobs that were still running when the application last stopped, under their original ids
+     * so existing links to them keep working. Jobs that do not fit in the queue stay checkpointed for the
+     * next start.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJobs() {
+        if (!resumeOnStartup) {
+            return;
+        }
+        for (TranslationCheckpointStore.Interrupted interrupted : checkpointStore.interrupted()) {
+            try {
+                submit(interrupted.jobId(), interrupted.request());
+                log.info("Resuming interrupted translation job {} for book {}", interrupted.jobId(), interrupted.request().bookId());
+            } catch (RejectedExecutionException ex) {
+                log.warn("No room to resume translation job {} now; it stays checkpointed", interrupted.jobId());
+            }
+        }
+    }
+
+    private TranslationJob submit(String id, TranslationJobRequest request) {
+        evictExpired();
+        TranslationJob job = new TranslationJob(id, request);
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> pipeline.run(job));
+        } catch (RejectedExecutionException ex) {
+            jobs.remove(job.getId());
+            log.warn("Rejected translation job for book {}: {} running, {} queued",
+                    request.bookId(), executor.getActiveCount(), executor.getQueue().size());
+            throw ex;
+        }
+        return job;
+    }
+
+    public Optional<TranslationJob> find(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void evictExpired() {
+        Instant cutoff = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.getFinishedAt() != null && job.getFinishedAt().isBefore(cutoff));
+    }
+
+    private static ThreadFactory workerThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "translation-job-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
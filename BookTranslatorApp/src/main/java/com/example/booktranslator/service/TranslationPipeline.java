@@ -0,0 +1,260 @@
+package com.example.booktranslator.service;
+
+import com.example.booktranslator.model.BookSummary;
+import com.example.booktranslator.model.JobStage;
+import com.example.booktranslator.model.TranslationJobRequest;
+import com.example.booktranslator.model.TranslationResult;
+import com.example.booktranslator.model.TranslationSegment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Runs the download, segmentation, translation and narration stages for one job, recording progress on
+ * the job as it goes. The stages overlap: segments are translated as soon as the download has made them
+ * final, in chunks of up to {@code openai.max-sentences} segments, and speech chunks are synthesized as
+ * soon as enough of the script is translated. Bounded hand-offs between the stages hold back a stage that
+ * runs ahead, so the job takes about as long as its slowest stage rather than the sum of all of them.
+ * <p>
+ * Every translated segment is checkpointed so an interrupted run can resume. Completed results are kept
+ * in the {@link TranslatedBookStore}.
+ */
+@Service
+public class TranslationPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(TranslationPipeline.class);
+
+    // Chunks of downloaded segments that may wait for translation before the download is paused.
+    private static final int STAGE_QUEUE = 2;
+    private static final Duration CHUNK_LINGER = Duration.ofMillis(250);
+
+    private final PublicDomainBookService bookService;
+    private final OpenAiTranslationService translationService;
+    private final AudioGenerationService audioGenerationService;
+    private final TranslationCheckpointStore checkpointStore;
+    private final TranslatedBookStore translatedBookStore;
+
+    public TranslationPipeline(PublicDomainBookService bookService,
+                               OpenAiTranslationService translationService,
+                               AudioGenerationService audioGenerationService,
+                               TranslationCheckpointStore checkpointStore,
+                               TranslatedBookStore translatedBookStore) {
+        this.bookService = bookService;
+        this.translationService = translationService;
+        this.audioGenerationService = audioGenerationService;
+        this.checkpointStore = checkpointStore;
+        this.translatedBookStore = translatedBookStore;
+    }
+
+    public void run(TranslationJob job) {
+        TranslationJobRequest request = job.getRequest();
+        TranslationCheckpointStore.Checkpoint checkpoint = checkpointStore.open(job.getId(), request);
+        // Narrated here only when not left to the first listener; the job waits for it either way.
+        boolean narrate = !audioGenerationService.isStreaming();
+        AudioGenerationService.Narration narration = null;
+        try {
+            job.advance(JobStage.DOWNLOADING);
+            if (!checkpoint.completed().isEmpty()) {
+                log.info("Resuming translation job {} with {} of {} segments already done",
+                        job.getId(), checkpoint.completed().size(), request.segments());
+            }
+            AtomicInteger available = new AtomicInteger();
+            List<TranslationSegment> translations = new ArrayList<>();
+            int chunkSize = Math.max(1, translationService.segmentLimit(request.segments()));
+            Flux<List<PendingSegment>> chunks = bookService.streamSegments(request.bookId(), request.downloadUrl(),
+                            request.segmentationMode(), request.offset() + request.segments())
+                    .onErrorMap(DownloadFailedException::new)
+                    .doOnNext(segment -> available.incrementAndGet())
+                    .skip(request.offset())
+                    .index((position, text) -> new PendingSegment(position.intValue(), text))
+                    // Hands over what is ready after a short wait rather than holding segments for a full chunk.
+                    .bufferTimeout(chunkSize, CHUNK_LINGER, true);
+            // toStream's prefetch is the bounded queue between downloading and translating: when it is full,
+            // reading from the socket pauses instead of buffering the book.
+            try (Stream<List<PendingSegment>> pending = chunks.toStream(STAGE_QUEUE)) {
+                for (List<PendingSegment> chunk : (Iterable<List<PendingSegment>>) pending::iterator) {
+                    if (translations.isEmpty()) {
+                        job.startTranslating(request.segments());
+                    }
+                    for (TranslationSegment segment : translateChunk(job, checkpoint, chunk)) {
+                        translations.add(segment);
+                        if (narration != null) {
+                            narration.add(segment);
+                        } else if (narrate && !restored(checkpoint, request, segment)) {
+                            // Narration overlaps translation from the first segment translated by this run.
+                            // Until then the range came from the checkpoint, and a range restored entirely
+                            // was most likely narrated before, so it is looked up by its script instead.
+                            narration = audioGenerationService.startNarration();
+                            translations.forEach(narration::add);
+                        }
+                    }
+                }
+            }
+            if (translations.isEmpty()) {
+                fail(job, checkpoint, request.offset() == 0
+                        ? "No content extracted from book for translation."
+                        : "The book has only " + available.get() + " segments, fewer than the requested starting point.");
+                return;
+            }
+            job.rangeSize(translations.size());
+
+            job.advance(JobStage.GENERATING_AUDIO);
+            // When streaming, narration starts once someone presses play rather than holding up the job.
+            Optional<String> audioFileName;
+            if (!narrate) {
+                audioFileName = audioGenerationService.prepareAudio(translations);
+            } else if (narration != null) {
+                audioFileName = narration.finish();
+            } else {
+                audioFileName = audioGenerationService.generateAudio(translations);
+            }
+
+            TranslationResult result = new TranslationResult(
+                    new BookSummary(request.bookId(), request.title(), "", request.downloadUrl()),
+                    translations,
+                    audioFileName.orElse(null)
+            );
+            // Stored before completing so the page the job redirects to can already be served from disk.
+            translatedBookStore.save(request, result);
+            job.complete(result);
+            checkpoint.finish();
+        } catch (DownloadFailedException ex) {
+            fail(job, checkpoint, "Unable to download the selected book. Please try another title.");
+        } catch (RuntimeException ex) {
+            log.error("Translation job {} failed", job.getId(), ex);
+            if (Exceptions.unwrap(ex) instanceof InterruptedException) {
+                // Reactor reports the interrupt as an exception; keep the flag for the check below.
+                Thread.currentThread().interrupt();
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                // Shutting down: keep the checkpoint so the job resumes on the next start.
+                job.fail("Translation was interrupted and will resume when the translator restarts.");
+            } else {
+                fail(job, checkpoint, "Translation failed unexpectedly. Please try again.");
+            }
+        } finally {
+            if (narration != null) {
+                narration.close();
+            }
+            checkpoint.close();
+        }
+    }
+
+    /**
+     * Translates and narrates {@code request} for a caller waiting on the result, without a job or a
+     * checkpoint. No thread is held while the download, translation and speech calls are in flight.
+     * Completes empty when the book cannot be downloaded or has no segments in the requested range.
+     */
+    public Mono<TranslationResult> translate(TranslationJobRequest request) {
+        return bookService.downloadSegmentsReactive(request.bookId(), request.downloadUrl(),
+                        request.segmentationMode(), request.offset() + request.segments())
+                .filter(segmented -> segmented.size() > request.offset())
+                .flatMap(segmented -> translateRange(request, segmented.subList(request.offset(), segmented.size())))
+                .flatMap(translations -> narrate(translations)
+                        .map(Optional::of)
+                        .defaultIfEmpty(Optional.empty())
+                        .map(audioFileName -> new TranslationResult(
+                                new BookSummary(request.bookId(), request.title(), "", request.downloadUrl()),
+                                translations,
+                                audioFileName.orElse(null))))
+                .flatMap(result -> Mono.fromRunnable(() -> translatedBookStore.save(request, result))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .thenReturn(result));
+    }
+
+    private Mono<List<TranslationSegment>> translateRange(TranslationJobRequest request, List<String> range) {
+        int offset = request.offset();
+        int chunkSize = Math.max(1, translationService.segmentLimit(range.size()));
+        return Flux.range(0, (range.size() + chunkSize - 1) / chunkSize)
+                .concatMap(chunk -> {
+                    int from = chunk * chunkSize;
+                    return translationService.translateSegmentsReactive(
+                                    range.subList(from, Math.min(from + chunkSize, range.size())), request.targetLanguage())
+                            .map(segment -> segment.withIndex(offset + from + segment.index()));
+                })
+                .collectSortedList(Comparator.comparingInt(TranslationSegment::index));
+    }
+
+    private Mono<String> narrate(List<TranslationSegment> translations) {
+        return audioGenerationService.isStreaming()
+                ? Mono.justOrEmpty(audioGenerationService.prepareAudio(translations))
+                : audioGenerationService.generateAudioReactive(translations);
+    }
+
+    /**
+     * Translates one chunk of the range, skipping segments a previous run checkpointed. Segment indexes in
+     * the result are positions in the whole book, counting from one.
+     */
+    private List<TranslationSegment> translateChunk(TranslationJob job,
+                                                    TranslationCheckpointStore.Checkpoint checkpoint,
+                                                    List<PendingSegment> chunk) {
+        int offset = job.getRequest().offset();
+        TranslationSegment[] results = new TranslationSegment[chunk.size()];
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            PendingSegment segment = chunk.get(i);
+            String restored = checkpoint.completed().get(segment.position());
+            if (restored != null) {
+                results[i] = new TranslationSegment(offset + segment.position() + 1, segment.text(), restored);
+                job.segmentRestored(results[i]);
+            } else {
+                pending.add(i);
+            }
+        }
+        if (pending.isEmpty()) {
+            return Arrays.asList(results);
+        }
+        List<String> texts = pending.stream().map(i -> chunk.get(i).text()).toList();
+        List<TranslationSegment> translated = translationService.translateSegments(texts, job.getRequest().targetLanguage(),
+                segment -> {
+                    int position = chunk.get(pending.get(segment.index() - 1)).position();
+                    TranslationSegment positioned = segment.withIndex(offset + position + 1);
+                    // A segment that fell back to its source text is left out so a resumed run retries it.
+                    if (!positioned.fallback()) {
+                        checkpoint.record(position, positioned.translated());
+                    }
+                    job.segmentTranslated(positioned);
+                });
+        for (TranslationSegment segment : translated) {
+            int i = pending.get(segment.index() - 1);
+            results[i] = segment.withIndex(offset + chunk.get(i).position() + 1);
+        }
+        return Arrays.asList(results);
+    }
+
+    private static boolean restored(TranslationCheckpointStore.Checkpoint checkpoint, TranslationJobRequest request,
+                                    TranslationSegment segment) {
+        return checkpoint.completed().containsKey(segment.index() - request.offset() - 1);
+    }
+
+    /**
+     * A segment of the requested range, by its position within the range.
+     */
+    private record PendingSegment(int position, String text) {
+    }
+
+    private static final class DownloadFailedException extends RuntimeException {
+
+        DownloadFailedException(Throwable cause) {
+            super(cause);
+        }
+    }
+
+    private static void fail(TranslationJob job, TranslationCheckpointStore.Checkpoint checkpoint, String message) {
+        checkpoint.fail(message);
+        job.fail(message);
+    }
+}
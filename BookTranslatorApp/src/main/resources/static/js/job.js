@@ -0,0 +1,64 @@
+document.addEventListener('DOMContentLoaded', () => {
+    const container = document.getElementById('job');
+    if (!container) {
+        return;
+    }
+    const stageLabels = {
+        QUEUED: 'Waiting for a free translator…',
+        DOWNLOADING: 'Downloading the book…',
+        TRANSLATING: 'Translating segments…',
+        GENERATING_AUDIO: 'Generating narration…'
+    };
+    const stage = document.getElementById('job-stage');
+    const progress = document.getElementById('job-progress');
+    const segments = document.getElementById('job-segments');
+
+    const formatDuration = (seconds) => {
+        const hours = Math.floor(seconds / 3600);
+        const minutes = Math.floor((seconds % 3600) / 60);
+        if (hours > 0) {
+            return `${hours} h ${minutes} min`;
+        }
+        return minutes > 0 ? `${minutes} min` : `${seconds} s`;
+    };
+
+    const render = (status) => {
+        stage.textContent = stageLabels[status.stage] || status.stage;
+        progress.max = Math.max(status.totalSegments, 1);
+        progress.value = status.completedSegments;
+        let text = `${status.completedSegments} of ${status.totalSegments} segments translated`;
+        if (status.segmentsPerSecond > 0) {
+            text += ` · ${status.segmentsPerSecond.toFixed(1)} segments/s`;
+        }
+        if (status.etaSeconds !== null && status.etaSeconds !== undefined) {
+            text += ` · about ${formatDuration(status.etaSeconds)} left`;
+        }
+        segments.textContent = text;
+    };
+
+    const poll = () => {
+        fetch(container.dataset.statusUrl, {headers: {Accept: 'application/json'}})
+            .then((response) => {
+                if (!response.ok) {
+                    throw new Error(`Status request failed: ${response.status}`);
+                }
+                return response.json();
+            })
+            .then((status) => {
+                if (status.stage === 'FAILED') {
+                    window.location.assign(container.dataset.jobUrl);
+                    return;
+                }
+                render(status);
+                if (status.stage === 'COMPLETED') {
+                    // Segments and audio were already rendered from the event stream.
+                    stage.textContent = 'Translation complete.';
+                    return;
+                }
+                window.setTimeout(poll, 1000);
+            })
+            .catch(() => window.location.assign(container.dataset.jobUrl));
+    };
+
+    poll();
+});
@@ -1,8 +1,4 @@
-document.addEventListener('DOMContentLoaded', () => {
-    const audio = document.querySelector('audio');
-    if (!audio) {
-        return;
-    }
+const attachAudioStatus = (audio) => {
     const status = document.createElement('p');
     status.classList.add('helper');
     audio.parentElement.appendChild(status);
@@ -18,4 +14,72 @@ document.addEventListener('DOMContentLoaded', () => {
     audio.addEventListener('ended', () => {
         status.textContent = 'Playback finished.';
     });
+};
+
+const streamSegments = (container) => {
+    const body = container.querySelector('tbody');
+    const events = new EventSource(container.dataset.eventsUrl);
+    const rows = new Map();
+
+    const cell = (text) => {
+        const td = document.createElement('td');
+        td.textContent = text;
+        return td;
+    };
+
+    events.addEventListener('segment', (event) => {
+        const segment = JSON.parse(event.data);
+        const row = document.createElement('tr');
+        row.dataset.index = segment.index;
+        row.append(cell(segment.index), cell(segment.source), cell(segment.translated));
+        // A reconnect can deliver a segment that is already shown; replace it rather than add a duplicate.
+        const existing = rows.get(segment.index);
+        rows.set(segment.index, row);
+        if (existing) {
+            existing.replaceWith(row);
+            return;
+        }
+        // Segments translated in parallel can arrive out of order; keep the table sorted by index. Most
+        // arrive in order, so only scan when the segment does not belong at the end.
+        const last = body.lastElementChild;
+        if (!last || Number(last.dataset.index) < segment.index) {
+            body.appendChild(row);
+            return;
+        }
+        const next = Array.from(body.rows).find((other) => Number(other.dataset.index) > segment.index);
+        body.insertBefore(row, next || null);
+    });
+
+    events.addEventListener('complete', (event) => {
+        events.close();
+        const completion = JSON.parse(event.data);
+        if (!completion.audioFileName) {
+            document.getElementById('audio-unavailable').hidden = false;
+            return;
+        }
+        const audioUrl = container.dataset.audioUrl + encodeURIComponent(completion.audioFileName);
+        const section = document.getElementById('audio-section');
+        const audio = section.querySelector('audio');
+        audio.src = audioUrl;
+        document.getElementById('audio-download').href = `${audioUrl}/download`;
+        section.hidden = false;
+        attachAudioStatus(audio);
+    });
+
+    events.addEventListener('failed', () => {
+        events.close();
+    });
+};
+
+document.addEventListener('DOMContentLoaded', () => {
+    const stream = document.getElementById('segment-stream');
+    if (stream) {
+        streamSegments(stream);
+        return;
+    }
+    const audio = document.querySelector('audio');
+    if (!audio) {
+        return;
+    }
+    attachAudioStatus(audio);
 });
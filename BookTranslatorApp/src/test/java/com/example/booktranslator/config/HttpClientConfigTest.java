@@ -0,0 +1,132 @@
+package com.example.booktranslator.config;
+
+import com.example.booktranslator.service.PipelineMetrics;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HttpClientConfigTest {
+
+    private HttpServer server;
+    private ConnectionProvider connectionProvider;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/slow", exchange -> {
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200, "late");
+        });
+        server.createContext("/old", exchange -> {
+            exchange.getResponseHeaders().add("Location", "/new");
+            exchange.sendResponseHeaders(301, -1);
+            exchange.close();
+        });
+        server.createContext("/new", exchange -> respond(exchange, 200, "moved"));
+        server.createContext("/large", exchange -> respond(exchange, 200, "x".repeat(4096)));
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        if (connectionProvider != null) {
+            connectionProvider.dispose();
+        }
+    }
+
+    @Test
+    void failsSlowResponsesAfterTheResponseTimeout() {
+        WebClient client = client(profile(Duration.ofMillis(200), false, null));
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> get(client, "/slow")).isInstanceOf(RuntimeException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(1500));
+    }
+
+    @Test
+    void followsRedirectsOnlyWhenEnabled() {
+        assertThat(get(client(profile(null, true, null)), "/old")).isEqualTo("moved");
+        // Without redirects the empty 301 body comes back as-is.
+        assertThat(get(client(profile(null, false, null)), "/old")).isNull();
+    }
+
+    @Test
+    void appliesTheBufferLimit() {
+        WebClient client = client(profile(null, false, DataSize.ofKilobytes(1)));
+
+        assertThatThrownBy(() -> get(client, "/large")).hasRootCauseInstanceOf(DataBufferLimitException.class);
+    }
+
+    @Test
+    void countsUpstreamResponsesAndReceivedBytes() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        WebClient client = client(profile(null, false, null), new PipelineMetrics(registry));
+
+        get(client, "/large");
+        get(client, "/old");
+
+        assertThat(registry.get(PipelineMetrics.UPSTREAM_RESPONSES).tags("upstream", "test", "status", "200").counter().count())
+                .isEqualTo(1);
+        assertThat(registry.get(PipelineMetrics.UPSTREAM_RESPONSES).tags("upstream", "test", "status", "301").counter().count())
+                .isEqualTo(1);
+        assertThat(registry.get(PipelineMetrics.UPSTREAM_BYTES).tags("upstream", "test").counter().count())
+                .isEqualTo(4096);
+    }
+
+    private String get(WebClient client, String path) {
+        return client.get()
+                .uri("http://localhost:" + server.getAddress().getPort() + path)
+                .retrieve()
+                .bodyToMono(String.class)
+                .block();
+    }
+
+    private WebClient client(HttpClientProperties.Profile profile) {
+        return client(profile, PipelineMetrics.noop());
+    }
+
+    private WebClient client(HttpClientProperties.Profile profile, PipelineMetrics metrics) {
+        if (connectionProvider != null) {
+            connectionProvider.dispose();
+        }
+        connectionProvider = HttpClientConfig.connectionProvider("test", profile);
+        return HttpClientConfig.webClientBuilder("test", connectionProvider, profile,
+                        new DefaultListableBeanFactory().getBeanProvider(WebClientCustomizer.class), metrics)
+                .build();
+    }
+
+    private static HttpClientProperties.Profile profile(Duration responseTimeout, boolean followRedirect, DataSize maxInMemorySize) {
+        return new HttpClientProperties.Profile(4, 16, Duration.ofSeconds(5), null, null, null,
+                Duration.ofSeconds(2), null, responseTimeout, true, followRedirect, maxInMemorySize);
+    }
+
+    private static void respond(com.sun.net.httpserver.HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
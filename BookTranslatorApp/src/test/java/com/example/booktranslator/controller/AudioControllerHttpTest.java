@@ -0,0 +1,133 @@
+package com.example.booktranslator.controller;
+
+import com.example.booktranslator.service.AudioGenerationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+/**
+ * Exercises audio serving through a real Tomcat, where single ranges go through sendfile and multiple
+ * ranges through Spring's multipart/byteranges writer.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "openai.translation.cache.directory=target/test-translation-cache",
+        "book.cache.directory=target/test-book-cache",
+        "translation.jobs.checkpoint-directory=target/test-checkpoints",
+        "translation.store.directory=target/test-translated-books",
+        "audio.library.directory=target/test-audio"
+})
+class AudioControllerHttpTest {
+
+    private static final int FILE_SIZE = 256 * 1024;
+
+    @MockBean
+    private AudioGenerationService audioGenerationService;
+
+    @Value("${local.server.port}")
+    private int port;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private byte[] content;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        content = new byte[FILE_SIZE];
+        new Random(42).nextBytes(content);
+        Path file = Files.createTempFile("audio-http", ".mp3");
+        Files.write(file, content);
+        when(audioGenerationService.loadAudio("book.mp3")).thenReturn(Optional.of(new FileSystemResource(file)));
+    }
+
+    @Test
+    void servesConcurrentRangeRequests() {
+        Random random = new Random(7);
+        List<long[]> ranges = IntStream.range(0, 32)
+                .mapToObj(i -> {
+                    long start = random.nextInt(FILE_SIZE);
+                    return new long[]{start, Math.min(FILE_SIZE - 1, start + random.nextInt(64 * 1024))};
+                })
+                .toList();
+
+        List<CompletableFuture<HttpResponse<byte[]>>> responses = ranges.stream()
+                .map(range -> client.sendAsync(get("bytes=" + range[0] + "-" + range[1]), HttpResponse.BodyHandlers.ofByteArray()))
+                .toList();
+
+        for (int i = 0; i < ranges.size(); i++) {
+            long[] range = ranges.get(i);
+            HttpResponse<byte[]> response = responses.get(i).join();
+            assertThat(response.statusCode()).isEqualTo(206);
+            assertThat(response.headers().firstValue("Content-Range"))
+                    .hasValue("bytes " + range[0] + "-" + range[1] + "/" + FILE_SIZE);
+            assertThat(response.body()).isEqualTo(Arrays.copyOfRange(content, (int) range[0], (int) range[1] + 1));
+        }
+    }
+
+    @Test
+    void servesWholeFileWithValidators() throws Exception {
+        HttpResponse<byte[]> response = client.send(get(null), HttpResponse.BodyHandlers.ofByteArray());
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body()).isEqualTo(content);
+        assertThat(response.headers().firstValue("Cache-Control")).hasValueSatisfying(value -> assertThat(value).contains("immutable"));
+
+        HttpRequest conditional = HttpRequest.newBuilder(audioUri())
+                .header("If-None-Match", response.headers().firstValue("ETag").orElseThrow())
+                .build();
+        assertThat(client.send(conditional, HttpResponse.BodyHandlers.discarding()).statusCode()).isEqualTo(304);
+    }
+
+    @Test
+    void servesMultipleRangesAsMultipart() throws Exception {
+        HttpResponse<String> response = client.send(get("bytes=0-9,100-109"), HttpResponse.BodyHandlers.ofString());
+
+        assertThat(response.statusCode()).isEqualTo(206);
+        assertThat(response.headers().firstValue("Content-Type"))
+                .hasValueSatisfying(value -> assertThat(value).startsWith("multipart/byteranges"));
+        assertThat(response.body()).contains("Content-Range: bytes 0-9/" + FILE_SIZE, "Content-Range: bytes 100-109/" + FILE_SIZE);
+    }
+
+    @Test
+    void servesWholeFileWhenIfRangeNoLongerMatches() throws Exception {
+        HttpRequest stale = HttpRequest.newBuilder(audioUri())
+                .header("Range", "bytes=0-9")
+                .header("If-Range", "Thu, 01 Jan 1970 00:00:01 GMT")
+                .build();
+
+        HttpResponse<byte[]> response = client.send(stale, HttpResponse.BodyHandlers.ofByteArray());
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body()).isEqualTo(content);
+    }
+
+    private HttpRequest get(String range) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(audioUri());
+        if (range != null) {
+            builder.header("Range", range);
+        }
+        return builder.build();
+    }
+
+    private URI audioUri() {
+        return URI.create("http://localhost:" + port + "/audio/book.mp3");
+    }
+}
@@ -4,9 +4,20 @@ import com.example.booktranslator.service.AudioGenerationService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -16,30 +27,181 @@ class AudioControllerTest {
 
     private AudioGenerationService audioGenerationService;
     private AudioController controller;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
 
     @BeforeEach
     void setUp() {
         audioGenerationService = Mockito.mock(AudioGenerationService.class);
         controller = new AudioController(audioGenerationService);
+        request = new MockHttpServletRequest("GET", "/audio/file.mp3");
+        response = new MockHttpServletResponse();
     }
 
     @Test
     void streamAudioReturnsNotFoundWhenMissing() {
         when(audioGenerationService.loadAudio("missing.mp3")).thenReturn(Optional.empty());
 
-        ResponseEntity<?> response = controller.streamAudio("missing.mp3");
+        ResponseEntity<?> response = controller.streamAudio("missing.mp3", webRequest());
 
         assertThat(response.getStatusCode().is4xxClientError()).isTrue();
     }
 
     @Test
-    void downloadAudioReturnsAttachment() {
-        ByteArrayResource resource = new ByteArrayResource("data".getBytes());
-        when(audioGenerationService.loadAudio("file.mp3")).thenReturn(Optional.of(resource));
+    void streamAudioRedirectsToLiveNarrationWhenNotYetSynthesized() {
+        when(audioGenerationService.loadAudio("pending.mp3")).thenReturn(Optional.empty());
+        when(audioGenerationService.canStream("pending.mp3")).thenReturn(true);
+
+        ResponseEntity<?> response = controller.streamAudio("pending.mp3", webRequest());
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.FOUND);
+        assertThat(response.getHeaders().getLocation()).hasToString("/audio/pending.mp3/live");
+        assertThat(response.getHeaders().getCacheControl()).isEqualTo("no-store");
+    }
+
+    @Test
+    void liveAudioStreamsThePreparedScript() throws IOException {
+        when(audioGenerationService.canStream("pending.mp3")).thenReturn(true);
+        Mockito.doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(1).write("live".getBytes());
+            return null;
+        }).when(audioGenerationService).streamAudio(Mockito.eq("pending.mp3"), Mockito.any());
+
+        ResponseEntity<StreamingResponseBody> response = controller.liveAudio("pending.mp3", false);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+
+        assertThat(response.getHeaders().getContentType()).hasToString("audio/mpeg");
+        assertThat(response.getHeaders().getContentLength()).isEqualTo(-1);
+        assertThat(out.toString()).isEqualTo("live");
+    }
+
+    @Test
+    void liveAudioRedirectsToTheFileOnceNarrated() throws IOException {
+        audioFile("data");
+
+        ResponseEntity<StreamingResponseBody> response = controller.liveAudio("file.mp3", true);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.FOUND);
+        assertThat(response.getHeaders().getLocation()).hasToString("/audio/file.mp3/download");
+    }
 
-        ResponseEntity<?> response = controller.downloadAudio("file.mp3");
+    @Test
+    void downloadAudioReturnsAttachment() throws IOException {
+        FileSystemResource resource = audioFile("data");
+
+        ResponseEntity<?> response = controller.downloadAudio("file.mp3", webRequest());
 
         assertThat(response.getHeaders().getFirst("Content-Disposition")).contains("attachment; filename=file.mp3");
         assertThat(response.getBody()).isEqualTo(resource);
     }
+
+    @Test
+    void streamAudioSendsValidatorsAndImmutableCaching() throws IOException {
+        audioFile("data");
+
+        ResponseEntity<?> response = controller.streamAudio("file.mp3", webRequest());
+
+        assertThat(response.getHeaders().getETag()).isEqualTo("\"file\"");
+        assertThat(response.getHeaders().getLastModified()).isPositive();
+        assertThat(response.getHeaders().getCacheControl()).contains("max-age=31536000", "immutable");
+        assertThat(response.getHeaders().getFirst("Accept-Ranges")).isEqualTo("bytes");
+    }
+
+    @Test
+    void streamAudioAnswersMatchingETagWithNotModified() throws IOException {
+        audioFile("data");
+        String etag = controller.streamAudio("file.mp3", webRequest()).getHeaders().getETag();
+        request.addHeader("If-None-Match", etag);
+
+        ResponseEntity<?> second = controller.streamAudio("file.mp3", webRequest());
+
+        assertThat(second).isNull();
+        assertThat(response.getStatus()).isEqualTo(304);
+    }
+
+    @Test
+    void streamAudioHandsSingleRangeToSendfile() throws IOException {
+        FileSystemResource resource = audioFile("0123456789");
+        request.setAttribute(AudioController.SENDFILE_SUPPORTED_ATTR, true);
+        request.addHeader("Range", "bytes=2-5");
+
+        ResponseEntity<?> response = controller.streamAudio("file.mp3", webRequest());
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(response.getBody()).isNull();
+        assertThat(response.getHeaders().getFirst("Content-Range")).isEqualTo("bytes 2-5/10");
+        assertThat(response.getHeaders().getContentLength()).isEqualTo(4);
+        assertThat(request.getAttribute(AudioController.SENDFILE_FILENAME_ATTR))
+                .isEqualTo(resource.getFile().getCanonicalPath());
+        assertThat(request.getAttribute(AudioController.SENDFILE_START_ATTR)).isEqualTo(2L);
+        assertThat(request.getAttribute(AudioController.SENDFILE_END_ATTR)).isEqualTo(6L);
+    }
+
+    @Test
+    void streamAudioHonoursRangeWhileIfRangeMatches() throws IOException {
+        audioFile("0123456789");
+        String etag = controller.streamAudio("file.mp3", webRequest()).getHeaders().getETag();
+        request.setAttribute(AudioController.SENDFILE_SUPPORTED_ATTR, true);
+        request.addHeader("Range", "bytes=2-5");
+        request.addHeader("If-Range", etag);
+
+        ResponseEntity<?> response = controller.streamAudio("file.mp3", webRequest());
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(response.getHeaders().getFirst("Content-Range")).isEqualTo("bytes 2-5/10");
+    }
+
+    @Test
+    void streamAudioSendsTheWholeFileWhenIfRangeIsStale() throws IOException {
+        audioFile("0123456789");
+        request.setAttribute(AudioController.SENDFILE_SUPPORTED_ATTR, true);
+        request.addHeader("Range", "bytes=2-5");
+        request.addHeader("If-Range", "\"old-version\"");
+
+        ResponseEntity<?> response = controller.streamAudio("file.mp3", webRequest());
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getFirst("Content-Range")).isNull();
+        assertThat(response.getHeaders().getContentLength()).isEqualTo(10);
+        assertThat(request.getAttribute(AudioController.SENDFILE_START_ATTR)).isEqualTo(0L);
+        assertThat(request.getAttribute(AudioController.SENDFILE_END_ATTR)).isEqualTo(10L);
+    }
+
+    @Test
+    void streamAudioSendsAStreamThatIgnoresRangeWhenIfRangeIsStaleWithoutSendfile() throws IOException {
+        audioFile("0123456789");
+        request.addHeader("Range", "bytes=2-5");
+        request.addHeader("If-Range", "Thu, 01 Jan 1970 00:00:01 GMT");
+
+        ResponseEntity<?> response = controller.streamAudio("file.mp3", webRequest());
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isInstanceOf(InputStreamResource.class);
+        assertThat(response.getHeaders().getContentLength()).isEqualTo(10);
+    }
+
+    @Test
+    void streamAudioRejectsRangeBeyondTheFile() throws IOException {
+        audioFile("0123456789");
+        request.setAttribute(AudioController.SENDFILE_SUPPORTED_ATTR, true);
+        request.addHeader("Range", "bytes=20-30");
+
+        ResponseEntity<?> response = controller.streamAudio("file.mp3", webRequest());
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+        assertThat(response.getHeaders().getFirst("Content-Range")).isEqualTo("bytes */10");
+    }
+
+    private FileSystemResource audioFile(String content) throws IOException {
+        Path file = Files.createTempFile("audio-controller", ".mp3");
+        Files.writeString(file, content);
+        FileSystemResource resource = new FileSystemResource(file);
+        when(audioGenerationService.loadAudio("file.mp3")).thenReturn(Optional.of(resource));
+        return resource;
+    }
+
+    private ServletWebRequest webRequest() {
+        return new ServletWebRequest(request, response);
+    }
 }
@@ -0,0 +1,99 @@
+package com.example.booktranslator.controller;
+
+import com.example.booktranslator.service.OpenAiClient;
+import com.example.booktranslator.service.PublicDomainBookService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+/**
+ * Load test for the reactive translate endpoint on a Tomcat with only {@value #SERVLET_THREADS} request
+ * threads. Every OpenAI call takes {@code UPSTREAM_LATENCY}, so a handler that held its thread for the
+ * whole request could serve at most {@value #SERVLET_THREADS} requests at a time; the reactive one keeps
+ * more of them in flight than there are threads. Only the concurrency reached upstream is asserted, not
+ * wall-clock time, so the test does not depend on how busy the build machine is.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "server.tomcat.threads.max=" + TranslationApiLoadTest.SERVLET_THREADS,
+        "server.tomcat.threads.min-spare=1",
+        "openai.translation.cache.enabled=false",
+        "openai.speech.streaming=true",
+        "book.cache.directory=target/test-book-cache",
+        "translation.jobs.checkpoint-directory=target/test-checkpoints",
+        "translation.store.directory=target/test-translated-books",
+        "audio.library.directory=target/test-audio"
+})
+class TranslationApiLoadTest {
+
+    static final int SERVLET_THREADS = 4;
+    private static final int REQUESTS = 48;
+    private static final Duration UPSTREAM_LATENCY = Duration.ofMillis(500);
+
+    @MockBean
+    private PublicDomainBookService bookService;
+
+    @MockBean
+    private OpenAiClient openAiClient;
+
+    @Value("${local.server.port}")
+    private int port;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        when(bookService.downloadSegmentsReactive(Mockito.anyLong(), Mockito.any(), Mockito.any(), Mockito.anyInt()))
+                .thenAnswer(invocation -> Mono.just(List.of("Book " + invocation.getArgument(0) + " begins.")));
+        when(openAiClient.translateReactive(Mockito.anyString(), Mockito.anyString()))
+                .thenAnswer(invocation -> slowUpstream(invocation.getArgument(0) + " -> Spanish"));
+    }
+
+    @Test
+    void keepsMoreRequestsInFlightThanThereAreServletThreads() {
+        HttpClient client = HttpClient.newHttpClient();
+
+        List<CompletableFuture<HttpResponse<String>>> responses = IntStream.range(0, REQUESTS)
+                .mapToObj(book -> client.sendAsync(translate(book), HttpResponse.BodyHandlers.ofString()))
+                .toList();
+        responses.forEach(response -> {
+            assertThat(response.join().statusCode()).isEqualTo(200);
+            assertThat(response.join().body()).contains("begins. -> Spanish");
+        });
+
+        assertThat(maxInFlight.get()).isGreaterThan(SERVLET_THREADS);
+    }
+
+    private Mono<String> slowUpstream(String translation) {
+        return Mono.defer(() -> {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    return Mono.delay(UPSTREAM_LATENCY).thenReturn(translation);
+                })
+                .doFinally(signal -> inFlight.decrementAndGet());
+    }
+
+    private HttpRequest translate(int book) {
+        String form = "bookId=" + book + "&title=Book&segments=1&segmentationMode=sentences";
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/translate"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+    }
+}
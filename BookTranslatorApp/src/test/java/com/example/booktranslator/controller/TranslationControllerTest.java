@@ -1,23 +1,35 @@
 package com.example.booktranslator.controller;
 
 import com.example.booktranslator.model.BookSummary;
+import com.example.booktranslator.model.JobCompletion;
+import com.example.booktranslator.model.JobStage;
+import com.example.booktranslator.model.JobStatus;
+import com.example.booktranslator.model.NarratedRange;
+import com.example.booktranslator.model.TranslatedBookPage;
+import com.example.booktranslator.model.TranslationJobRequest;
 import com.example.booktranslator.model.TranslationRequest;
 import com.example.booktranslator.model.TranslationResult;
 import com.example.booktranslator.model.TranslationSegment;
 import com.example.booktranslator.service.AudioGenerationService;
-import com.example.booktranslator.service.OpenAiTranslationService;
 import com.example.booktranslator.service.PublicDomainBookService;
-import com.example.booktranslator.service.SegmentationService;
+import com.example.booktranslator.service.TranslatedBookStore;
+import com.example.booktranslator.service.TranslationJob;
+import com.example.booktranslator.service.TranslationJobService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.ui.ExtendedModelMap;
 import org.springframework.ui.Model;
 import org.springframework.validation.BeanPropertyBindingResult;
 import org.springframework.validation.BindingResult;
+import reactor.core.publisher.Flux;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.when;
@@ -25,18 +37,19 @@ import static org.mockito.Mockito.when;
 class TranslationControllerTest {
 
     private PublicDomainBookService bookService;
-    private SegmentationService segmentationService;
-    private OpenAiTranslationService translationService;
+    private TranslationJobService jobService;
+    private TranslatedBookStore translatedBookStore;
     private AudioGenerationService audioGenerationService;
     private TranslationController controller;
 
     @BeforeEach
     void setUp() {
         bookService = Mockito.mock(PublicDomainBookService.class);
-        segmentationService = Mockito.mock(SegmentationService.class);
-        translationService = Mockito.mock(OpenAiTranslationService.class);
+        jobService = Mockito.mock(TranslationJobService.class);
+        translatedBookStore = Mockito.mock(TranslatedBookStore.class);
+        when(translatedBookStore.defaultPageSize()).thenReturn(50);
         audioGenerationService = Mockito.mock(AudioGenerationService.class);
-        controller = new TranslationController(bookService, segmentationService, translationService, audioGenerationService);
+        controller = new TranslationController(bookService, jobService, translatedBookStore, audioGenerationService);
     }
 
     @Test
@@ -52,32 +65,170 @@ class TranslationControllerTest {
     }
 
     @Test
-    void translateReturnsIndexWhenBookDownloadFails() {
+    void translateSubmitsJobForTheRequestedRangeAndRedirectsToIt() {
         Model model = new ExtendedModelMap();
-        when(bookService.downloadBookText(1L, "")).thenReturn(Optional.empty());
+        TranslationJobRequest request = new TranslationJobRequest(1L, "url", "Title", 0, 500, "sentences", "Spanish");
+        when(jobService.submit(request)).thenReturn(new TranslationJob("job-1", request));
 
-        String viewName = controller.translate(1L, "", "Title", 5, "sentences", model);
+        String viewName = controller.translate(1L, "url", "Title", -3, 500, "sentences", model);
+
+        assertThat(viewName).isEqualTo("redirect:/jobs/job-1");
+    }
+
+    @Test
+    void translateServesStoredBookWhenRangeWasAlreadyTranslated() {
+        Model model = new ExtendedModelMap();
+        TranslationJobRequest request = new TranslationJobRequest(1L, "url", "Title", 120, 10, "sentences", "Spanish");
+        when(translatedBookStore.covers(request)).thenReturn(true);
+
+        String viewName = controller.translate(1L, "url", "Title", 120, 10, "sentences", model);
+
+        assertThat(viewName).isEqualTo("redirect:/books/1/translation?source=url&mode=sentences&language=Spanish&page=3");
+        Mockito.verifyNoInteractions(jobService);
+    }
+
+    @Test
+    void translatedBookRendersStoredPage() {
+        Model model = new ExtendedModelMap();
+        TranslatedBookPage page = new TranslatedBookPage(new BookSummary(1L, "Title", "", "url"), "sentences", "Spanish",
+                List.of(new TranslationSegment(21, "Hello.", "Hola.")), 2, 20, 40, List.of());
+        when(translatedBookStore.page(1L, "url", "sentences", "Spanish", 2, 20)).thenReturn(Optional.of(page));
+
+        String viewName = controller.translatedBook(1L, "url", "sentences", "Spanish", 2, 20, model);
+
+        assertThat(viewName).isEqualTo("book");
+        assertThat(model.getAttribute("bookPage")).isEqualTo(page);
+    }
+
+    @Test
+    void translatedBookPreparesAgainNarrationThatIsNoLongerPlayable() {
+        Model model = new ExtendedModelMap();
+        List<TranslationSegment> segments = List.of(new TranslationSegment(1, "Hello.", "Hola."));
+        TranslatedBookPage page = new TranslatedBookPage(new BookSummary(1L, "Title", "", "url"), "sentences", "Spanish",
+                segments, 1, 20, 3, List.of(
+                        new NarratedRange(1, 1, "kept.mp3"),
+                        new NarratedRange(2, 2, "forgotten.mp3"),
+                        new NarratedRange(3, 3, "gone.mp3")));
+        when(translatedBookStore.page(1L, "url", "sentences", "Spanish", 1, 20)).thenReturn(Optional.of(page));
+        when(audioGenerationService.isAvailable("kept.mp3")).thenReturn(true);
+        when(translatedBookStore.segments(1L, "url", "sentences", "Spanish", 2, 2)).thenReturn(segments);
+        when(audioGenerationService.prepareAudio(segments)).thenReturn(Optional.of("forgotten.mp3"));
+        when(audioGenerationService.prepareAudio(List.of())).thenReturn(Optional.empty());
+
+        controller.translatedBook(1L, "url", "sentences", "Spanish", 1, 20, model);
+
+        assertThat(((TranslatedBookPage) model.getAttribute("bookPage")).narration()).containsExactly(
+                new NarratedRange(1, 1, "kept.mp3"),
+                new NarratedRange(2, 2, "forgotten.mp3"));
+    }
+
+    @Test
+    void translatedBookReturnsIndexWhenNothingIsStored() {
+        Model model = new ExtendedModelMap();
+        when(translatedBookStore.page(1L, "url", "sentences", "Spanish", 1, 50)).thenReturn(Optional.empty());
+
+        String viewName = controller.translatedBook(1L, "url", "sentences", "Spanish", 1, null, model);
 
         assertThat(viewName).isEqualTo("index");
-        assertThat(model.getAttribute("error")).isEqualTo("Unable to download the selected book. Please try another title.");
+        assertThat(model.getAttribute("error")).isEqualTo("That book has not been translated yet. Please start a new translation.");
     }
 
     @Test
-    void translatePopulatesModelOnSuccess() {
+    void translateReturnsIndexWhenJobQueueIsFull() {
         Model model = new ExtendedModelMap();
-        when(bookService.downloadBookText(1L, "url")).thenReturn(Optional.of("Hello world."));
-        when(segmentationService.segmentText("Hello world.", "sentences", 3)).thenReturn(List.of("Hello world."));
+        when(jobService.submit(Mockito.any())).thenThrow(new RejectedExecutionException("full"));
+
+        String viewName = controller.translate(1L, "", "Title", 0, 5, "sentences", model);
+
+        assertThat(viewName).isEqualTo("index");
+        assertThat(model.getAttribute("error")).isEqualTo("The translator is busy right now. Please try again in a moment.");
+    }
+
+    @Test
+    void jobRendersProgressWhileRunning() {
+        Model model = new ExtendedModelMap();
+        TranslationJob job = new TranslationJob("job-2", new TranslationJobRequest(1L, "url", "Title", 0, 3, "sentences", "Spanish"));
+        when(jobService.find("job-2")).thenReturn(Optional.of(job));
+
+        String viewName = controller.job("job-2", model);
+
+        assertThat(viewName).isEqualTo("job");
+        assertThat(model.getAttribute("job")).isEqualTo(new JobStatus("job-2", JobStage.QUEUED, 0, 0, null, 0.0, null));
+    }
+
+    @Test
+    void jobRendersTranslationWhenCompleted() {
+        Model model = new ExtendedModelMap();
+        TranslationJob job = Mockito.mock(TranslationJob.class);
         List<TranslationSegment> segments = List.of(new TranslationSegment(1, "Hello world.", "Hola mundo."));
-        when(translationService.translateSegments(List.of("Hello world."), "Spanish")).thenReturn(segments);
-        when(audioGenerationService.generateAudio(segments)).thenReturn(Optional.of("file.mp3"));
+        TranslationResult result = new TranslationResult(new BookSummary(1L, "Title", "", "url"), segments, "file.mp3");
+        when(job.getStage()).thenReturn(JobStage.COMPLETED);
+        when(job.getResult()).thenReturn(result);
+        when(job.getRequest()).thenReturn(new TranslationJobRequest(1L, "url", "Title", 0, 3, "sentences", "Spanish"));
+        when(jobService.find("job-3")).thenReturn(Optional.of(job));
 
-        String viewName = controller.translate(1L, "url", "Title", 3, "sentences", model);
+        String viewName = controller.job("job-3", model);
 
         assertThat(viewName).isEqualTo("translation");
-        TranslationResult result = (TranslationResult) model.getAttribute("translationResult");
-        assertThat(result.book()).isEqualTo(new BookSummary(1L, "Title", "", "url"));
-        assertThat(result.audioFileName()).isEqualTo("file.mp3");
-        assertThat(result.segments()).isEqualTo(segments);
+        assertThat(model.getAttribute("translationResult")).isEqualTo(result);
         assertThat(model.getAttribute("segmentCount")).isEqualTo(1);
     }
+
+    @Test
+    void jobReturnsIndexWithErrorWhenFailedOrUnknown() {
+        Model model = new ExtendedModelMap();
+        TranslationJob job = Mockito.mock(TranslationJob.class);
+        when(job.getStage()).thenReturn(JobStage.FAILED);
+        when(job.getError()).thenReturn("Unable to download the selected book. Please try another title.");
+        when(jobService.find("job-4")).thenReturn(Optional.of(job));
+
+        assertThat(controller.job("job-4", model)).isEqualTo("index");
+        assertThat(model.getAttribute("error")).isEqualTo("Unable to download the selected book. Please try another title.");
+
+        assertThat(controller.job("missing", new ExtendedModelMap())).isEqualTo("index");
+        ResponseEntity<JobStatus> status = controller.jobStatus("missing");
+        assertThat(status.getStatusCode().value()).isEqualTo(404);
+    }
+
+    @Test
+    void jobEventsStreamSegmentsThenCompletionWithAudioFileName() {
+        TranslationSegment first = new TranslationSegment(1, "Hello.", "Hola.");
+        TranslationSegment second = new TranslationSegment(2, "World.", "Mundo.");
+        TranslationJob job = Mockito.mock(TranslationJob.class);
+        when(job.segments()).thenReturn(Flux.just(second, first));
+        when(job.getStage()).thenReturn(JobStage.COMPLETED);
+        when(job.getResult()).thenReturn(new TranslationResult(
+                new BookSummary(1L, "Title", "", "url"), List.of(first, second), "file.mp3"));
+        when(jobService.find("job-5")).thenReturn(Optional.of(job));
+
+        List<ServerSentEvent<Object>> events = controller.jobEvents("job-5", null).getBody()
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(events).extracting(ServerSentEvent::event).containsExactly("segment", "segment", "complete");
+        assertThat(events).extracting(ServerSentEvent::data)
+                .containsExactly(second, first, new JobCompletion("file.mp3", null));
+        assertThat(events).extracting(ServerSentEvent::id).containsExactly("1", "2", null);
+        assertThat(controller.jobEvents("missing", null).getStatusCode().value()).isEqualTo(404);
+    }
+
+    @Test
+    void jobEventsResumeAfterLastEventId() {
+        TranslationSegment first = new TranslationSegment(1, "Hello.", "Hola.");
+        TranslationSegment second = new TranslationSegment(2, "World.", "Mundo.");
+        TranslationSegment third = new TranslationSegment(3, "Bye.", "Adiós.");
+        TranslationJob job = Mockito.mock(TranslationJob.class);
+        when(job.segments()).thenReturn(Flux.just(second, first, third));
+        when(job.getStage()).thenReturn(JobStage.COMPLETED);
+        when(job.getResult()).thenReturn(new TranslationResult(
+                new BookSummary(1L, "Title", "", "url"), List.of(first, second, third), "file.mp3"));
+        when(jobService.find("job-6")).thenReturn(Optional.of(job));
+
+        List<ServerSentEvent<Object>> events = controller.jobEvents("job-6", "2").getBody()
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(events).extracting(ServerSentEvent::data).containsExactly(third, new JobCompletion("file.mp3", null));
+        assertThat(events.get(0).id()).isEqualTo("3");
+    }
 }
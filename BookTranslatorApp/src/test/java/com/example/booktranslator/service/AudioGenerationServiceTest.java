@@ -1,27 +1,42 @@
 package com.example.booktranslator.service;
 
+import com.example.booktranslator.config.SpeechProperties;
 import com.example.booktranslator.model.TranslationSegment;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class AudioGenerationServiceTest {
 
+    private static final SpeechProperties PROPERTIES = new SpeechProperties(4000, 4, 3, Duration.ofMillis(1), false);
+
     @Test
     void generatesAudioFileWhenClientReturnsBytes() throws IOException {
         OpenAiClient client = Mockito.mock(OpenAiClient.class);
         when(client.synthesizeSpeech(Mockito.anyString())).thenReturn(Optional.of("audio".getBytes()));
         Path tempDir = Files.createTempDirectory("audio-test");
-        AudioGenerationService service = new AudioGenerationService(client, tempDir);
+        AudioGenerationService service = new AudioGenerationService(client, PROPERTIES, PipelineMetrics.noop(), tempDir);
 
         List<TranslationSegment> segments = List.of(
                 new TranslationSegment(1, "Hello", "Hola"),
@@ -36,11 +51,169 @@ class AudioGenerationServiceTest {
         assertThat(Files.readAllBytes(audioFile)).containsExactly("audio".getBytes());
     }
 
+    @Test
+    void reusesStoredAudioForTheSameScript() throws IOException {
+        OpenAiClient client = Mockito.mock(OpenAiClient.class);
+        when(client.audioModel()).thenReturn("tts");
+        when(client.synthesizeSpeech(Mockito.anyString())).thenReturn(Optional.of("audio".getBytes()));
+        Path tempDir = Files.createTempDirectory("audio-test-reuse");
+        AudioGenerationService service = new AudioGenerationService(client, PROPERTIES, PipelineMetrics.noop(), tempDir);
+        List<TranslationSegment> segments = List.of(new TranslationSegment(1, "Hello", "Hola"));
+
+        Optional<String> first = service.generateAudio(segments);
+        Optional<String> second = service.generateAudio(segments);
+        Optional<String> other = service.generateAudio(List.of(new TranslationSegment(1, "Bye", "Adiós")));
+
+        assertThat(second).isEqualTo(first);
+        assertThat(other).isPresent().isNotEqualTo(first);
+        verify(client, times(2)).synthesizeSpeech(Mockito.anyString());
+    }
+
+    @Test
+    void reactiveGenerationRetriesChunksAndSharesTheLibraryWithBlockingGeneration() throws IOException {
+        OpenAiClient client = Mockito.mock(OpenAiClient.class);
+        when(client.audioModel()).thenReturn("tts");
+        AtomicInteger attempts = new AtomicInteger();
+        when(client.synthesizeSpeechReactive(Mockito.anyString())).thenReturn(Mono.defer(() ->
+                attempts.incrementAndGet() == 1 ? Mono.empty() : Mono.just("audio".getBytes())));
+        Path tempDir = Files.createTempDirectory("audio-test-reactive");
+        AudioGenerationService service = new AudioGenerationService(client, PROPERTIES, PipelineMetrics.noop(), tempDir);
+        List<TranslationSegment> segments = List.of(new TranslationSegment(1, "Hello", "Hola"));
+
+        String fileName = service.generateAudioReactive(segments).block();
+
+        assertThat(attempts).hasValue(2);
+        assertThat(Files.readAllBytes(tempDir.resolve(fileName))).containsExactly("audio".getBytes());
+        assertThat(service.generateAudio(segments)).contains(fileName);
+        verify(client, Mockito.never()).synthesizeSpeech(Mockito.anyString());
+    }
+
+    @Test
+    void reactiveGenerationCompletesEmptyWhenSynthesisKeepsFailing() throws IOException {
+        OpenAiClient client = Mockito.mock(OpenAiClient.class);
+        when(client.synthesizeSpeechReactive(Mockito.anyString())).thenReturn(Mono.empty());
+        Path tempDir = Files.createTempDirectory("audio-test-reactive-failure");
+        AudioGenerationService service = new AudioGenerationService(client, PROPERTIES, PipelineMetrics.noop(), tempDir);
+
+        assertThat(service.generateAudioReactive(List.of(new TranslationSegment(1, "Hello", "Hola"))).blockOptional()).isEmpty();
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void narrationSynthesizesChunksAsTheyFillAndMatchesBatchGeneration() throws IOException {
+        OpenAiClient client = Mockito.mock(OpenAiClient.class);
+        when(client.audioModel()).thenReturn("tts");
+        when(client.synthesizeSpeech(Mockito.anyString())).thenAnswer(invocation -> Optional.of(invocation.<String>getArgument(0).getBytes()));
+        Path tempDir = Files.createTempDirectory("audio-test-narration");
+        AudioGenerationService service = new AudioGenerationService(client, new SpeechProperties(24, 2, 3, Duration.ofMillis(1), false),
+                PipelineMetrics.noop(), tempDir);
+        List<TranslationSegment> segments = IntStream.rangeClosed(1, 5)
+                .mapToObj(i -> new TranslationSegment(i, "Line " + i, "Linea " + i))
+                .toList();
+
+        Optional<String> fileName;
+        try (AudioGenerationService.Narration narration = service.startNarration()) {
+            narration.add(segments.get(0));
+            narration.add(segments.get(1));
+            // The second segment overflows the first chunk, which is sent off before the script is complete.
+            verify(client, Mockito.timeout(5000)).synthesizeSpeech(segments.get(0).source() + System.lineSeparator() + segments.get(0).translated());
+            segments.subList(2, segments.size()).forEach(narration::add);
+            fileName = narration.finish();
+        }
+
+        assertThat(fileName).isPresent();
+        assertThat(service.generateAudio(segments)).isEqualTo(fileName);
+        verify(client, times(5)).synthesizeSpeech(Mockito.anyString());
+    }
+
+    @Test
+    void narrationStopsSynthesizingAfterAChunkFailsAndLeavesNoFile() throws IOException {
+        OpenAiClient client = Mockito.mock(OpenAiClient.class);
+        when(client.audioModel()).thenReturn("tts");
+        when(client.synthesizeSpeech(Mockito.anyString())).thenReturn(Optional.empty());
+        Path tempDir = Files.createTempDirectory("audio-test-narration-failure");
+        AudioGenerationService service = new AudioGenerationService(client, new SpeechProperties(24, 1, 1, Duration.ofMillis(1), false),
+                PipelineMetrics.noop(), tempDir);
+
+        Optional<String> fileName;
+        try (AudioGenerationService.Narration narration = service.startNarration()) {
+            IntStream.rangeClosed(1, 5).forEach(i -> narration.add(new TranslationSegment(i, "Line " + i, "Linea " + i)));
+            fileName = narration.finish();
+        }
+
+        assertThat(fileName).isEmpty();
+        // With one chunk outstanding, the second chunk waits on the first, whose failure stops the rest.
+        verify(client, times(1)).synthesizeSpeech(Mockito.anyString());
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void streamsPreparedScriptToListenerAndLibraryAtOnce() throws IOException {
+        OpenAiClient client = Mockito.mock(OpenAiClient.class);
+        when(client.audioModel()).thenReturn("tts");
+        when(client.streamSpeech(Mockito.anyString())).thenAnswer(invocation -> {
+            DefaultDataBufferFactory factory = DefaultDataBufferFactory.sharedInstance;
+            String chunk = ((String) invocation.getArgument(0)).substring(0, 3);
+            return Optional.of(Flux.just(factory.wrap(chunk.substring(0, 1).getBytes()), factory.wrap(chunk.substring(1).getBytes())));
+        });
+        Path tempDir = Files.createTempDirectory("audio-test-stream");
+        AudioGenerationService service = new AudioGenerationService(client,
+                new SpeechProperties(10, 4, 1, Duration.ofMillis(1), true), PipelineMetrics.noop(), tempDir);
+        List<TranslationSegment> segments = List.of(
+                new TranslationSegment(1, "aaa", "AAA"),
+                new TranslationSegment(2, "bbb", "BBB"));
+
+        String fileName = service.prepareAudio(segments).orElseThrow();
+        assertThat(service.canStream(fileName)).isTrue();
+        assertThat(service.isAvailable(fileName)).isTrue();
+        assertThat(service.isAvailable("other.mp3")).isFalse();
+        assertThat(service.loadAudio(fileName)).isEmpty();
+        ByteArrayOutputStream listener = new ByteArrayOutputStream();
+        service.streamAudio(fileName, listener);
+
+        assertThat(listener.toString()).isEqualTo("aaabbb");
+        assertThat(Files.readString(tempDir.resolve(fileName))).isEqualTo("aaabbb");
+        assertThat(service.canStream(fileName)).isFalse();
+        assertThat(service.isAvailable(fileName)).isTrue();
+        assertThat(service.prepareAudio(segments)).contains(fileName);
+        assertThat(service.canStream(fileName)).isFalse();
+        verify(client, times(2)).streamSpeech(Mockito.anyString());
+        verify(client, Mockito.never()).synthesizeSpeech(Mockito.anyString());
+    }
+
+    @Test
+    void discardsPartialFileWhenTheListenerGoesAway() throws IOException {
+        OpenAiClient client = Mockito.mock(OpenAiClient.class);
+        when(client.streamSpeech(Mockito.anyString()))
+                .thenAnswer(invocation -> Optional.of(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap("audio".getBytes()))));
+        Path tempDir = Files.createTempDirectory("audio-test-stream-abort");
+        AudioGenerationService service = new AudioGenerationService(client,
+                new SpeechProperties(4000, 4, 1, Duration.ofMillis(1), true), PipelineMetrics.noop(), tempDir);
+        String fileName = service.prepareAudio(List.of(new TranslationSegment(1, "Hello", "Hola"))).orElseThrow();
+        OutputStream closed = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThatThrownBy(() -> service.streamAudio(fileName, closed)).isInstanceOf(IOException.class);
+
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertThat(files).isEmpty();
+        }
+        assertThat(service.canStream(fileName)).isTrue();
+    }
+
     @Test
     void loadAudioReturnsEmptyForMissingFile() throws IOException {
         OpenAiClient client = Mockito.mock(OpenAiClient.class);
         Path tempDir = Files.createTempDirectory("audio-test-missing");
-        AudioGenerationService service = new AudioGenerationService(client, tempDir);
+        AudioGenerationService service = new AudioGenerationService(client, PROPERTIES, PipelineMetrics.noop(), tempDir);
 
         Optional<Resource> resource = service.loadAudio("missing.mp3");
 
@@ -52,10 +225,86 @@ class AudioGenerationServiceTest {
         OpenAiClient client = Mockito.mock(OpenAiClient.class);
         when(client.synthesizeSpeech(Mockito.anyString())).thenReturn(Optional.empty());
         Path tempDir = Files.createTempDirectory("audio-test-empty");
-        AudioGenerationService service = new AudioGenerationService(client, tempDir);
+        AudioGenerationService service = new AudioGenerationService(client, PROPERTIES, PipelineMetrics.noop(), tempDir);
 
         Optional<String> fileName = service.generateAudio(List.of(new TranslationSegment(1, "Hello", "Hola")));
 
         assertThat(fileName).isEmpty();
+        verify(client, times(3)).synthesizeSpeech(Mockito.anyString());
+    }
+
+    @Test
+    void synthesizesChunksSeparatelyAndJoinsThemInOrder() throws IOException {
+        OpenAiClient client = Mockito.mock(OpenAiClient.class);
+        when(client.synthesizeSpeech(Mockito.anyString()))
+                .thenAnswer(invocation -> Optional.of(((String) invocation.getArgument(0)).substring(0, 3).getBytes()));
+        Path tempDir = Files.createTempDirectory("audio-test-chunks");
+        AudioGenerationService service = new AudioGenerationService(client,
+                new SpeechProperties(10, 4, 1, Duration.ofMillis(1), false), PipelineMetrics.noop(), tempDir);
+
+        Optional<String> fileName = service.generateAudio(List.of(
+                new TranslationSegment(1, "aaa", "AAA"),
+                new TranslationSegment(2, "bbb", "BBB"),
+                new TranslationSegment(3, "ccc", "CCC")
+        ));
+
+        assertThat(fileName).isPresent();
+        assertThat(new String(Files.readAllBytes(tempDir.resolve(fileName.get())))).isEqualTo("aaabbbccc");
+        verify(client, times(3)).synthesizeSpeech(Mockito.anyString());
+    }
+
+    @Test
+    void retriesOnlyTheChunkThatFailed() throws IOException {
+        OpenAiClient client = Mockito.mock(OpenAiClient.class);
+        AtomicInteger secondChunkCalls = new AtomicInteger();
+        when(client.synthesizeSpeech(Mockito.anyString())).thenAnswer(invocation -> {
+            String chunk = invocation.getArgument(0);
+            if (chunk.startsWith("bbb") && secondChunkCalls.incrementAndGet() == 1) {
+                return Optional.empty();
+            }
+            return Optional.of(chunk.substring(0, 3).getBytes());
+        });
+        Path tempDir = Files.createTempDirectory("audio-test-retry");
+        AudioGenerationService service = new AudioGenerationService(client,
+                new SpeechProperties(10, 2, 3, Duration.ofMillis(1), false), PipelineMetrics.noop(), tempDir);
+
+        Optional<String> fileName = service.generateAudio(List.of(
+                new TranslationSegment(1, "aaa", "AAA"),
+                new TranslationSegment(2, "bbb", "BBB")
+        ));
+
+        assertThat(fileName).isPresent();
+        assertThat(new String(Files.readAllBytes(tempDir.resolve(fileName.get())))).isEqualTo("aaabbb");
+        assertThat(secondChunkCalls).hasValue(2);
+        verify(client, times(3)).synthesizeSpeech(Mockito.anyString());
+    }
+
+    @Test
+    void chunkScriptPacksSegmentsUnderTheLimit() {
+        List<TranslationSegment> segments = IntStream.rangeClosed(1, 10)
+                .mapToObj(i -> new TranslationSegment(i, "source " + i, "fuente " + i))
+                .toList();
+
+        List<String> chunks = AudioGenerationService.chunkScript(segments, 60);
+
+        assertThat(chunks).hasSizeGreaterThan(1).allSatisfy(chunk -> assertThat(chunk.length()).isLessThanOrEqualTo(60));
+        assertThat(String.join(" ", chunks).replaceAll("\\s+", " "))
+                .isEqualTo(segments.stream()
+                        .map(segment -> segment.source() + " " + segment.translated())
+                        .reduce((a, b) -> a + " " + b)
+                        .orElseThrow());
+    }
+
+    @Test
+    void chunkScriptSplitsOversizedSegmentAtWhitespace() {
+        String longSource = "word ".repeat(50).trim();
+
+        List<String> chunks = AudioGenerationService.chunkScript(List.of(new TranslationSegment(1, longSource, "palabra")), 32);
+
+        assertThat(chunks).allSatisfy(chunk -> {
+            assertThat(chunk.length()).isLessThanOrEqualTo(32);
+            assertThat(chunk).doesNotStartWith(" ").doesNotContain("wor ").doesNotEndWith("wo");
+        });
+        assertThat(String.join(" ", chunks).replaceAll("\\s+", " ")).isEqualTo(longSource + " palabra");
     }
 }
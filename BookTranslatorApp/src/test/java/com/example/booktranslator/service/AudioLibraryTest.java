@@ -0,0 +1,156 @@
+package com.example.booktranslator.service;
+
+import com.example.booktranslator.config.AudioLibraryProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AudioLibraryTest {
+
+    @TempDir
+    Path directory;
+
+    private MutableClock clock;
+    private AudioLibrary library;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+        library = new AudioLibrary(new AudioLibraryProperties(directory.toString(), 25L, null, Duration.ofHours(1)), clock);
+    }
+
+    @Test
+    void fileNameDependsOnScriptVoiceAndModel() {
+        String name = AudioLibrary.fileName("alloy", "tts", List.of("Hola", "Mundo"));
+
+        assertThat(name).matches("[0-9a-f]{64}\\.mp3");
+        assertThat(AudioLibrary.fileName("alloy", "tts", List.of("Hola", "Mundo"))).isEqualTo(name);
+        assertThat(AudioLibrary.fileName("echo", "tts", List.of("Hola", "Mundo"))).isNotEqualTo(name);
+        assertThat(AudioLibrary.fileName("alloy", "tts-hd", List.of("Hola", "Mundo"))).isNotEqualTo(name);
+        assertThat(AudioLibrary.fileName("alloy", "tts", List.of("HolaMundo"))).isNotEqualTo(name);
+    }
+
+    @Test
+    void storesAtomicallyWithoutLeavingTemporaryFiles() throws IOException {
+        assertThat(library.store("a.mp3", bytes(10))).contains("a.mp3");
+
+        assertThat(library.contains("a.mp3")).isTrue();
+        assertThat(Files.readAllBytes(directory.resolve("a.mp3"))).hasSize(10);
+        assertThat(listFiles()).containsExactly("a.mp3");
+    }
+
+    @Test
+    void evictsLeastRecentlyServedFilesOverQuota() throws IOException {
+        library.store("a.mp3", bytes(10));
+        clock.advance(Duration.ofSeconds(1));
+        library.store("b.mp3", bytes(10));
+        clock.advance(Duration.ofSeconds(1));
+        library.load("a.mp3");
+        clock.advance(Duration.ofSeconds(1));
+
+        library.store("c.mp3", bytes(10));
+
+        assertThat(listFiles()).containsExactlyInAnyOrder("a.mp3", "c.mp3");
+    }
+
+    @Test
+    void neverEvictsTheFileJustStored() throws IOException {
+        library.store("a.mp3", bytes(10));
+        clock.advance(Duration.ofSeconds(1));
+
+        library.store("big.mp3", bytes(40));
+
+        assertThat(listFiles()).containsExactly("big.mp3");
+    }
+
+    @Test
+    void janitorRemovesOldTemporaryFilesOnly() throws IOException {
+        Path stale = Files.writeString(directory.resolve("x.mp3123.tmp"), "partial");
+        Files.setLastModifiedTime(stale, FileTime.from(clock.instant().minus(Duration.ofHours(2))));
+        Path recent = Files.writeString(directory.resolve("y.mp3456.tmp"), "partial");
+        Files.setLastModifiedTime(recent, FileTime.from(clock.instant()));
+        library.store("a.mp3", bytes(10));
+
+        library.clean();
+
+        assertThat(listFiles()).containsExactlyInAnyOrder("a.mp3", "y.mp3456.tmp");
+    }
+
+    @Test
+    void janitorKeepsTheFilesOfOpenWriters() throws IOException {
+        try (AudioLibrary.Writer writer = library.writer()) {
+            writer.write(bytes(10));
+            Path temp;
+            try (Stream<Path> files = Files.list(directory)) {
+                temp = files.findFirst().orElseThrow();
+            }
+            Files.setLastModifiedTime(temp, FileTime.from(clock.instant().minus(Duration.ofHours(2))));
+
+            library.clean();
+
+            assertThat(temp).exists();
+            writer.commit("slow.mp3");
+        }
+        assertThat(listFiles()).containsExactly("slow.mp3");
+    }
+
+    @Test
+    void loadRejectsNamesOutsideTheLibrary() throws IOException {
+        Files.writeString(directory.resolveSibling("secret.mp3"), "secret");
+
+        assertThat(library.load("../secret.mp3")).isEmpty();
+        assertThat(library.load("missing.mp3")).isEmpty();
+    }
+
+    private List<String> listFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).toList();
+        }
+    }
+
+    private static byte[] bytes(int length) {
+        return new byte[length];
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
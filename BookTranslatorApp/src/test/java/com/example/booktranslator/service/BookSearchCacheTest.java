@@ -0,0 +1,185 @@
+package com.example.booktranslator.service;
+
+import com.example.booktranslator.config.SearchCacheProperties;
+import com.example.booktranslator.model.BookSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class BookSearchCacheTest {
+
+    private static final List<BookSummary> FIRST = List.of(new BookSummary(1, "Pride and Prejudice", "Jane Austen", null));
+    private static final List<BookSummary> SECOND = List.of(new BookSummary(2, "Emma", "Jane Austen", null));
+
+    private MutableClock clock;
+    private List<Runnable> refreshes;
+    private SimpleMeterRegistry registry;
+    private BookSearchCache cache;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+        refreshes = new ArrayList<>();
+        cache = new BookSearchCache(new SearchCacheProperties(true, 2, Duration.ofMinutes(10), Duration.ofHours(1)),
+                clock, refreshes::add);
+        registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+    }
+
+    @Test
+    void servesFreshEntriesForNormalizedQueries() {
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("Pride and Prejudice", () -> {
+            loads.incrementAndGet();
+            return FIRST;
+        });
+        List<BookSummary> cached = cache.get("  pride   AND prejudice ", () -> {
+            loads.incrementAndGet();
+            return SECOND;
+        });
+
+        assertThat(cached).isEqualTo(FIRST);
+        assertThat(loads).hasValue(1);
+        assertThat(requests("hit")).isEqualTo(1);
+    }
+
+    @Test
+    void countsMissesHitsAndEntries() {
+        cache.get("emma", () -> FIRST);
+        cache.get("emma", () -> SECOND);
+
+        assertThat(requests("miss")).isEqualTo(1);
+        assertThat(requests("hit")).isEqualTo(1);
+        assertThat(registry.get(PipelineMetrics.SEARCH_CACHE_ENTRIES).gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void servesStaleEntryWhileRefreshingInBackground() {
+        cache.get("emma", () -> FIRST);
+        clock.advance(Duration.ofMinutes(11));
+
+        List<BookSummary> stale = cache.get("emma", () -> SECOND);
+
+        assertThat(stale).isEqualTo(FIRST);
+        assertThat(refreshes).hasSize(1);
+        refreshes.get(0).run();
+        assertThat(cache.get("emma", () -> List.of())).isEqualTo(SECOND);
+        assertThat(requests("stale-hit")).isEqualTo(1);
+    }
+
+    @Test
+    void reloadsOnceStaleWindowHasPassed() {
+        cache.get("emma", () -> FIRST);
+        clock.advance(Duration.ofMinutes(71));
+
+        assertThat(cache.get("emma", () -> SECOND)).isEqualTo(SECOND);
+        assertThat(refreshes).isEmpty();
+    }
+
+    @Test
+    void failuresAreNotCachedButExpiredResultsAreServed() {
+        assertThatThrownBy(() -> cache.get("emma", () -> {
+            throw new IllegalStateException("down");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(registry.get(PipelineMetrics.SEARCH_CACHE_ENTRIES).gauge().value()).isZero();
+
+        cache.get("emma", () -> FIRST);
+        clock.advance(Duration.ofHours(2));
+        List<BookSummary> fallback = cache.get("emma", () -> {
+            throw new IllegalStateException("down");
+        });
+
+        assertThat(fallback).isEqualTo(FIRST);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedQueries() {
+        cache.get("a", () -> FIRST);
+        cache.get("b", () -> FIRST);
+        cache.get("a", () -> SECOND);
+        cache.get("c", () -> FIRST);
+
+        assertThat(cache.get("a", () -> SECOND)).isEqualTo(FIRST);
+        assertThat(cache.get("b", () -> SECOND)).isEqualTo(SECOND);
+    }
+
+    @Test
+    void concurrentMissesShareOneUpstreamCall() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<List<BookSummary>>> results = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                results.add(executor.submit(() -> cache.get("pride and prejudice", () -> {
+                    loads.incrementAndGet();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return FIRST;
+                })));
+            }
+            await().atMost(Duration.ofSeconds(5)).until(() -> registry.get(PipelineMetrics.SEARCH_CACHE_COALESCED).functionCounter().count() == 5);
+            release.countDown();
+            for (Future<List<BookSummary>> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo(FIRST);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(loads).hasValue(1);
+    }
+
+    private double requests(String result) {
+        return registry.get(PipelineMetrics.SEARCH_CACHE_REQUESTS).tag("result", result).functionCounter().count();
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
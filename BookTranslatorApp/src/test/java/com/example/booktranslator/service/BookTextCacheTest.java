@@ -0,0 +1,81 @@
+package com.example.booktranslator.service;
+
+import com.example.booktranslator.config.BookCacheProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BookTextCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void storesCompressedTextWithValidators() {
+        BookTextCache cache = new BookTextCache(new BookCacheProperties(true, tempDir.toString(), 1_000_000L, Duration.ofDays(1)));
+        String text = "It was the best of times. ".repeat(1000);
+
+        cache.put(98L, "https://example.org/98.txt", text, "\"abc\"", "Mon, 01 Jan 2024 00:00:00 GMT");
+
+        BookTextCache.Entry entry = cache.get(98L, "https://example.org/98.txt").orElseThrow();
+        assertThat(entry.text()).isEqualTo(text);
+        assertThat(entry.etag()).isEqualTo("\"abc\"");
+        assertThat(entry.lastModified()).isEqualTo("Mon, 01 Jan 2024 00:00:00 GMT");
+        assertThat(cache.isFresh(entry)).isTrue();
+        assertThat(cache.get(98L, "https://example.org/98.html")).isEmpty();
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedBooksOnceOverSizeCap() throws IOException {
+        // Random letters compress poorly, so each entry stays above 1 KB on disk and two fit under the cap.
+        Instant now = Instant.parse("2024-01-01T12:00:00Z");
+        BookTextCache cache = new BookTextCache(new BookCacheProperties(true, tempDir.toString(), 3_000L, Duration.ofDays(1)),
+                Clock.fixed(now, ZoneOffset.UTC));
+        cache.put(1L, "u1", randomText(1), null, null);
+        lastAccessed(1L, "u1", now.minusSeconds(30));
+        cache.put(2L, "u2", randomText(2), null, null);
+        lastAccessed(2L, "u2", now.minusSeconds(20));
+        // Reading the first book marks it as used now, so the second is the least recently used.
+        cache.get(1L, "u1");
+        cache.put(3L, "u3", randomText(3), null, null);
+
+        assertThat(cache.get(1L, "u1")).isPresent();
+        assertThat(cache.get(2L, "u2")).isEmpty();
+        assertThat(cache.get(3L, "u3")).isPresent();
+    }
+
+    @Test
+    void entriesCleanedByAnotherVersionAreMisses() throws IOException {
+        BookTextCache cache = new BookTextCache(new BookCacheProperties(true, tempDir.toString(), 1_000_000L, Duration.ofDays(1)));
+        cache.put(98L, "u98", "Old text.", "\"abc\"", null);
+        Path metaFile = tempDir.resolve(BookTextCache.key(98L, "u98") + ".meta");
+        Files.writeString(metaFile, Files.readString(metaFile).replace(
+                "cleanerVersion=" + PublicDomainBookService.CLEANER_VERSION, "cleanerVersion=0"));
+
+        assertThat(cache.get(98L, "u98")).isEmpty();
+        assertThat(metaFile).doesNotExist();
+    }
+
+    private void lastAccessed(long bookId, String url, Instant time) throws IOException {
+        Files.setLastModifiedTime(tempDir.resolve(BookTextCache.key(bookId, url) + ".txt.gz"), FileTime.from(time));
+    }
+
+    private static String randomText(long seed) {
+        java.util.Random random = new java.util.Random(seed);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            builder.append((char) ('a' + random.nextInt(26)));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.booktranslator.service;
+
+import com.example.booktranslator.model.ChapterInfo;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChapterIndexTest {
+
+    private static final String BOOK = """
+            A CHRISTMAS TALE
+
+            CONTENTS
+
+            STAVE ONE
+            STAVE TWO
+            STAVE THREE
+
+            STAVE ONE
+
+            MARLEY'S GHOST
+
+            Marley was dead: to begin with. There is no doubt whatever about that. The register of his
+            burial was signed by the clergyman.
+
+            STAVE TWO
+
+            THE FIRST OF THE THREE SPIRITS
+
+            When Scrooge awoke, it was so dark that, looking out of bed, he could scarcely distinguish
+            the transparent window from the opaque walls of his chamber.
+
+            BOOK II
+
+            CHAPTER I
+
+            A new book begins here, and part two of the plan
+            was set in motion.
+
+            IV. THE LAST CHAPTER
+
+            The end.
+            """;
+
+    @Test
+    void findsHeadingsSkipsTheTableOfContentsAndPicksUpSubtitles() {
+        ChapterIndex index = ChapterIndex.scan(BOOK, Integer.MAX_VALUE);
+
+        assertThat(index.tableOfContents())
+                .extracting(ChapterInfo::title)
+                .containsExactly(
+                        "STAVE ONE — MARLEY'S GHOST",
+                        "STAVE TWO — THE FIRST OF THE THREE SPIRITS",
+                        "BOOK II — CHAPTER I",
+                        "IV. THE LAST CHAPTER");
+        assertThat(index.chapter(0))
+                .startsWith("STAVE ONE\n\nMARLEY'S GHOST\n\nMarley was dead")
+                .endsWith("signed by the clergyman.");
+        assertThat(index.chapter(2)).contains("part two of the plan");
+        assertThat(index.chapter(3)).isEqualTo("IV. THE LAST CHAPTER\n\nThe end.");
+    }
+
+    @Test
+    void offsetsPointAtTheHeadings() {
+        ChapterIndex index = ChapterIndex.scan(BOOK, Integer.MAX_VALUE);
+
+        for (ChapterInfo chapter : index.tableOfContents()) {
+            assertThat(BOOK.substring(chapter.start(), chapter.start() + chapter.length()).trim())
+                    .isEqualTo(index.chapter(chapter.index()));
+        }
+    }
+
+    @Test
+    void stopsScanningAfterTheRequestedChapters() {
+        ChapterIndex index = ChapterIndex.scan(BOOK, 1);
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.chapter(0)).endsWith("signed by the clergyman.");
+    }
+
+    @Test
+    void ignoresChapterWordsInsideSentences() {
+        ChapterIndex index = ChapterIndex.scan("He closed the book. In this chapter nothing happens.\n\nThe end.", 5);
+
+        assertThat(index.size()).isZero();
+    }
+}
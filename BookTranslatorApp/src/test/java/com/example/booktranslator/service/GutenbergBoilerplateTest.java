@@ -0,0 +1,25 @@
+package com.example.booktranslator.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GutenbergBoilerplateTest {
+
+    @Test
+    void stripsLicenseHeaderAndFooter() {
+        String text = "The Project Gutenberg eBook of Moby Dick\nLicense text.\n"
+                + "*** START OF THE PROJECT GUTENBERG EBOOK MOBY DICK; OR, THE WHALE ***\n"
+                + "Call me Ishmael.\n"
+                + "*** END OF THE PROJECT GUTENBERG EBOOK MOBY DICK; OR, THE WHALE ***\nMore license.";
+
+        assertThat(GutenbergBoilerplate.strip(text)).isEqualTo("Call me Ishmael.");
+    }
+
+    @Test
+    void recognisesOlderFooterAndLeavesPlainTextAlone() {
+        assertThat(GutenbergBoilerplate.strip("Call me Ishmael.\nEnd of the Project Gutenberg EBook of Moby Dick"))
+                .isEqualTo("Call me Ishmael.");
+        assertThat(GutenbergBoilerplate.strip("No boilerplate here.")).isEqualTo("No boilerplate here.");
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.booktranslator.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HtmlTextExtractorTest {
+
+    @Test
+    void dropsScriptStyleAndCommentsAndKeepsBlockBoundaries() {
+        String html = "<!DOCTYPE html><html><head><title>Book</title>"
+                + "<style type=\"text/css\">p { color: red; }</style>"
+                + "<script>if (a < b && c > d) { alert('</p>'); }</script></head>"
+                + "<body><!-- a <p>commented</p> -- block -->"
+                + "<h2>Chapter  I</h2>\n<p class='x'>It was the <i>best</i>\n of   times.</p>"
+                + "<p>It was the worst<br/>of times.</p></body></html>";
+
+        assertThat(HtmlTextExtractor.extract(html))
+                .isEqualTo("Book\nChapter I\nIt was the best of times.\nIt was the worst\nof times.");
+    }
+
+    @Test
+    void decodesNamedNumericAndLegacyEntities() {
+        String html = "<p>Fish &amp; chips &mdash; caf&eacute; &#233;&#xE9; &lt;tag&gt; &copy 1851"
+                + " &NotNestedGreaterGreater; &bogus; AT&T a&nbsp;b &#0;</p>";
+
+        assertThat(HtmlTextExtractor.extract(html))
+                .isEqualTo("Fish & chips — café éé <tag> © 1851 ⪢̸ &bogus; AT&T a b �");
+    }
+
+    @Test
+    void producesSameTextWhenFedOneCharacterAtATime() {
+        String html = "<p>Caf&eacute; <b title=\"a > b\">bold</b></p><script>x</script><!-- c -->&#x263A;<p>end</p>";
+        HtmlTextExtractor extractor = new HtmlTextExtractor();
+        StringBuilder text = new StringBuilder();
+        for (char c : html.toCharArray()) {
+            text.append(extractor.feed(String.valueOf(c)));
+        }
+        text.append(extractor.finish());
+
+        assertThat(text.toString()).isEqualTo(HtmlTextExtractor.extract(html)).isEqualTo("Café bold\n☺\nend");
+    }
+
+    @Test
+    void treatsStrayAngleBracketAsText() {
+        assertThat(HtmlTextExtractor.extract("<p>1 < 2 and 3 <= 4</p>")).isEqualTo("1 < 2 and 3 <= 4");
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.booktranslator.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class Mp3ConcatenatorTest {
+
+    // MPEG-1 Layer III, 128 kbit/s, 44.1 kHz, stereo, no padding: 417-byte frames.
+    private static final byte[] FRAME_HEADER = {(byte) 0xFF, (byte) 0xFB, (byte) 0x90, 0x00};
+    private static final int FRAME_LENGTH = 417;
+
+    @Test
+    void singlePartIsReturnedUnchanged() {
+        byte[] part = join(id3v2(20), infoFrame(), audioFrame(1), id3v1());
+
+        assertThat(Mp3Concatenator.concatenate(List.of(part))).isSameAs(part);
+    }
+
+    @Test
+    void keepsOuterTagsAndDropsInnerContainers() {
+        byte[] first = join(id3v2(20), infoFrame(), audioFrame(1), id3v1());
+        byte[] second = join(id3v2(30), infoFrame(), audioFrame(2), id3v1());
+        byte[] third = join(id3v2(10), infoFrame(), audioFrame(3), id3v1());
+
+        byte[] result = Mp3Concatenator.concatenate(List.of(first, second, third));
+
+        assertThat(result).isEqualTo(join(id3v2(20), audioFrame(1), audioFrame(2), audioFrame(3), id3v1()));
+    }
+
+    @Test
+    void passesThroughPartsWithoutTags() {
+        byte[] result = Mp3Concatenator.concatenate(List.of(audioFrame(1), audioFrame(2)));
+
+        assertThat(result).isEqualTo(join(audioFrame(1), audioFrame(2)));
+    }
+
+    @Test
+    void partFilterMatchesConcatenateForAnyChunking() {
+        List<byte[]> parts = List.of(
+                join(id3v2(20), infoFrame(), audioFrame(1), id3v1()),
+                join(id3v2(30), infoFrame(), audioFrame(2), audioFrame(3), id3v1()),
+                join(audioFrame(4)),
+                join(id3v2(10), infoFrame(), audioFrame(5), id3v1()));
+        byte[] expected = Mp3Concatenator.concatenate(parts);
+
+        for (int chunkSize : new int[]{1, 7, 128, 417, 5000}) {
+            assertThat(filter(parts, chunkSize)).as("chunk size %d", chunkSize).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void partFilterPassesASinglePartThroughImmediately() {
+        byte[] part = join(id3v2(20), infoFrame(), audioFrame(1), id3v1());
+        Mp3PartFilter filter = new Mp3PartFilter(true, true);
+
+        assertThat(filter.feed(part)).isSameAs(part);
+        assertThat(filter.finish()).isEmpty();
+    }
+
+    @Test
+    void readsSyncsafeTagSize() {
+        byte[] tag = id3v2(200);
+
+        assertThat(Mp3Concatenator.id3v2Length(tag)).isEqualTo(210);
+    }
+
+    private static byte[] filter(List<byte[]> parts, int chunkSize) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < parts.size(); i++) {
+            byte[] part = parts.get(i);
+            Mp3PartFilter filter = new Mp3PartFilter(i == 0, i == parts.size() - 1);
+            for (int from = 0; from < part.length; from += chunkSize) {
+                out.writeBytes(filter.feed(Arrays.copyOfRange(part, from, Math.min(from + chunkSize, part.length))));
+            }
+            out.writeBytes(filter.finish());
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] id3v2(int size) {
+        byte[] tag = new byte[10 + size];
+        tag[0] = 'I';
+        tag[1] = 'D';
+        tag[2] = '3';
+        tag[3] = 4;
+        tag[8] = (byte) ((size >> 7) & 0x7F);
+        tag[9] = (byte) (size & 0x7F);
+        return tag;
+    }
+
+    private static byte[] id3v1() {
+        byte[] tag = new byte[128];
+        tag[0] = 'T';
+        tag[1] = 'A';
+        tag[2] = 'G';
+        return tag;
+    }
+
+    private static byte[] infoFrame() {
+        byte[] frame = new byte[FRAME_LENGTH];
+        System.arraycopy(FRAME_HEADER, 0, frame, 0, 4);
+        System.arraycopy("Info".getBytes(), 0, frame, 4 + 32, 4);
+        return frame;
+    }
+
+    private static byte[] audioFrame(int fill) {
+        byte[] frame = new byte[FRAME_LENGTH];
+        Arrays.fill(frame, (byte) fill);
+        System.arraycopy(FRAME_HEADER, 0, frame, 0, 4);
+        return frame;
+    }
+
+    private static byte[] join(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.booktranslator.service;
+
+import com.example.booktranslator.config.RateLimitProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OpenAiRateLimiterTest {
+
+    private FakeTime time;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        time = new FakeTime();
+        registry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void retriesThrottledCallAfterRetryAfter() throws Exception {
+        OpenAiRateLimiter limiter = limiter(new RateLimitProperties(0, 0, 3, Duration.ofMillis(100), Duration.ofSeconds(5), Duration.ofMinutes(1)));
+        AtomicInteger calls = new AtomicInteger();
+
+        ResponseEntity<String> response = limiter.execute("test", 0, () -> {
+            if (calls.incrementAndGet() == 1) {
+                HttpHeaders headers = new HttpHeaders();
+                headers.set(HttpHeaders.RETRY_AFTER, "2");
+                throw error(429, headers);
+            }
+            return ResponseEntity.ok("done");
+        });
+
+        assertThat(response.getBody()).isEqualTo("done");
+        assertThat(calls).hasValue(2);
+        assertThat(time.sleeps).containsExactly(2000L);
+        assertThat(events("throttled")).isEqualTo(1);
+        assertThat(events("retry")).isEqualTo(1);
+    }
+
+    @Test
+    void recordsTimeSpentWaitingToRetry() throws Exception {
+        OpenAiRateLimiter limiter = limiter(new RateLimitProperties(0, 0, 3, Duration.ofMillis(100), Duration.ofSeconds(5), Duration.ofMinutes(1)));
+        AtomicInteger calls = new AtomicInteger();
+
+        limiter.execute("test", 0, () -> {
+            if (calls.incrementAndGet() == 1) {
+                throw error(429, new HttpHeaders());
+            }
+            return ResponseEntity.ok("done");
+        });
+
+        assertThat(time.sleeps).containsExactly(100L);
+        assertThat(waitMillis()).isEqualTo(100);
+    }
+
+    @Test
+    void doesNotRetryClientErrors() {
+        OpenAiRateLimiter limiter = limiter(new RateLimitProperties(0, 0, 3, null, null, null));
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> limiter.execute("test", 0, () -> {
+            calls.incrementAndGet();
+            throw error(400, new HttpHeaders());
+        })).isInstanceOf(WebClientResponseException.class);
+
+        assertThat(calls).hasValue(1);
+        assertThat(events("retry")).isZero();
+    }
+
+    @Test
+    void givesUpAfterMaxAttemptsWithGrowingBackoff() {
+        OpenAiRateLimiter limiter = limiter(new RateLimitProperties(0, 0, 4, Duration.ofMillis(100), Duration.ofMillis(250), Duration.ofMinutes(1)));
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> limiter.execute("test", 0, () -> {
+            calls.incrementAndGet();
+            throw error(503, new HttpHeaders());
+        })).isInstanceOf(WebClientResponseException.class);
+
+        assertThat(calls).hasValue(4);
+        // Jitter is pinned to the ceiling: 100, 200, then capped at 250.
+        assertThat(time.sleeps).containsExactly(100L, 200L, 250L);
+        assertThat(events("exhausted")).isEqualTo(1);
+    }
+
+    @Test
+    void spacesRequestsToTheRequestsPerMinuteBucket() throws Exception {
+        OpenAiRateLimiter limiter = limiter(new RateLimitProperties(60, 0, 1, null, null, Duration.ofMinutes(5)));
+
+        for (int i = 0; i < 62; i++) {
+            limiter.execute("test", 0, () -> ResponseEntity.ok("ok"));
+        }
+
+        // The first 60 fit the bucket, the next two wait one second each for a refill.
+        assertThat(time.sleeps).containsExactly(1000L, 1000L);
+    }
+
+    @Test
+    void reservesEstimatedTokensFromTheTokenBucket() throws Exception {
+        OpenAiRateLimiter limiter = limiter(new RateLimitProperties(0, 6000, 1, null, null, Duration.ofMinutes(5)));
+
+        limiter.execute("test", 6000, () -> ResponseEntity.ok("ok"));
+        limiter.execute("test", 3000, () -> ResponseEntity.ok("ok"));
+
+        assertThat(time.sleeps).containsExactly(30_000L);
+    }
+
+    @Test
+    void pausesUntilResetWhenTheServerReportsNoQuotaLeft() throws Exception {
+        OpenAiRateLimiter limiter = limiter(new RateLimitProperties(1000, 0, 1, null, null, Duration.ofMinutes(5)));
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("x-ratelimit-remaining-requests", "0");
+        headers.set("x-ratelimit-reset-requests", "1.5s");
+
+        limiter.execute("test", 0, () -> ResponseEntity.ok().headers(headers).body("ok"));
+        limiter.execute("test", 0, () -> ResponseEntity.ok("ok"));
+
+        assertThat(time.sleeps).containsExactly(1500L);
+    }
+
+    @Test
+    void failsFastWhenQuotaCannotBeHadBeforeTheDeadline() {
+        OpenAiRateLimiter limiter = limiter(new RateLimitProperties(1, 0, 1, null, null, Duration.ofSeconds(10)));
+
+        assertThatThrownBy(() -> {
+            limiter.execute("test", 0, () -> ResponseEntity.ok("ok"));
+            limiter.execute("test", 0, () -> ResponseEntity.ok("ok"));
+        }).isInstanceOf(TimeoutException.class);
+        assertThat(time.sleeps).isEmpty();
+    }
+
+    @Test
+    void parsesResetDurations() {
+        assertThat(OpenAiRateLimiter.parseDuration("20ms")).isEqualTo(Duration.ofMillis(20));
+        assertThat(OpenAiRateLimiter.parseDuration("6m0s")).isEqualTo(Duration.ofMinutes(6));
+        assertThat(OpenAiRateLimiter.parseDuration("1h2m3.5s")).isEqualTo(Duration.ofMillis(3_723_500));
+        assertThat(OpenAiRateLimiter.parseDuration("soon")).isNull();
+    }
+
+    @Test
+    void prefersMillisecondRetryAfter() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("retry-after-ms", "250");
+        headers.set(HttpHeaders.RETRY_AFTER, "1");
+
+        assertThat(OpenAiRateLimiter.retryAfter(headers, time)).isEqualTo(Duration.ofMillis(250));
+    }
+
+    @Test
+    void measuresHttpDateRetryAfterFromTheClock() {
+        HttpHeaders later = new HttpHeaders();
+        later.set(HttpHeaders.RETRY_AFTER, "Mon, 01 Jan 2024 00:00:30 GMT");
+        HttpHeaders earlier = new HttpHeaders();
+        earlier.set(HttpHeaders.RETRY_AFTER, "Sun, 31 Dec 2023 23:59:00 GMT");
+
+        assertThat(OpenAiRateLimiter.retryAfter(later, time)).isEqualTo(Duration.ofSeconds(30));
+        assertThat(OpenAiRateLimiter.retryAfter(earlier, time)).isEqualTo(Duration.ZERO);
+    }
+
+    @Test
+    void reactiveCallsRetryWithTimersInsteadOfSleeping() {
+        OpenAiRateLimiter limiter = limiter(new RateLimitProperties(0, 0, 3, Duration.ofMillis(10), Duration.ofSeconds(5), Duration.ofMinutes(1)));
+        AtomicInteger calls = new AtomicInteger();
+
+        ResponseEntity<String> response = limiter.executeReactive("test", 0, () -> calls.incrementAndGet() == 1
+                ? Mono.error(error(503, new HttpHeaders()))
+                : Mono.just(ResponseEntity.ok("done"))).block();
+
+        assertThat(response.getBody()).isEqualTo("done");
+        assertThat(calls).hasValue(2);
+        assertThat(time.sleeps).isEmpty();
+        assertThat(events("retry")).isEqualTo(1);
+        assertThat(waitMillis()).isEqualTo(10);
+    }
+
+    @Test
+    void reactiveCallsDoNotRetryClientErrors() {
+        OpenAiRateLimiter limiter = limiter(new RateLimitProperties(0, 0, 3, null, null, null));
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> limiter.executeReactive("test", 0, () -> {
+            calls.incrementAndGet();
+            return Mono.<ResponseEntity<String>>error(error(400, new HttpHeaders()));
+        }).block()).isInstanceOf(WebClientResponseException.class);
+        assertThat(calls).hasValue(1);
+    }
+
+    private OpenAiRateLimiter limiter(RateLimitProperties properties) {
+        OpenAiRateLimiter limiter = new OpenAiRateLimiter(properties, time, time::sleep, () -> 1.0);
+        limiter.bindTo(registry);
+        return limiter;
+    }
+
+    private double events(String event) {
+        return registry.get(PipelineMetrics.RATE_LIMIT_EVENTS).tag("event", event).functionCounter().count();
+    }
+
+    private double waitMillis() {
+        return registry.get(PipelineMetrics.RATE_LIMIT_WAIT).functionCounter().count();
+    }
+
+    private static WebClientResponseException error(int status, HttpHeaders headers) {
+        return WebClientResponseException.create(status, "status " + status, headers, new byte[0], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Clock whose sleeps advance time instantly and are recorded.
+     */
+    private static final class FakeTime extends Clock {
+
+        private final List<Long> sleeps = new ArrayList<>();
+        private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+        void sleep(Duration duration) {
+            sleeps.add(duration.toMillis());
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
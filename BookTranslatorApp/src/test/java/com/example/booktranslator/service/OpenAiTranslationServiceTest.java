@@ -1,13 +1,28 @@
 package com.example.booktranslator.service;
 
 import com.example.booktranslator.config.OpenAiProperties;
+import com.example.booktranslator.config.TranslationProperties;
 import com.example.booktranslator.model.TranslationSegment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
 import static org.mockito.Mockito.when;
 
 class OpenAiTranslationServiceTest {
@@ -20,7 +35,7 @@ class OpenAiTranslationServiceTest {
         when(openAiClient.translate("missing translation", "Spanish")).thenReturn(java.util.Optional.empty());
 
         OpenAiProperties properties = new OpenAiProperties("", "", "", 2);
-        OpenAiTranslationService service = new OpenAiTranslationService(openAiClient, properties);
+        OpenAiTranslationService service = new OpenAiTranslationService(openAiClient, properties, new TranslationProperties(1, null), TranslationCache.disabled(), PipelineMetrics.noop());
 
         List<String> segments = List.of("first", "second", "missing translation");
 
@@ -33,5 +48,235 @@ class OpenAiTranslationServiceTest {
 
         TranslationSegment fallback = service.translateSegments(List.of("missing translation"), "Spanish").get(0);
         assertThat(fallback.translated()).isEqualTo("missing translation");
+        assertThat(fallback.fallback()).isTrue();
+        assertThat(result).noneMatch(TranslationSegment::fallback);
+    }
+
+    @Test
+    void recordsTranslationTimingsAndFallbackSegments() {
+        OpenAiClient openAiClient = Mockito.mock(OpenAiClient.class);
+        when(openAiClient.translate("known", "Spanish")).thenReturn(Optional.of("conocido"));
+        when(openAiClient.translate("unknown", "Spanish")).thenReturn(Optional.empty());
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        OpenAiTranslationService service = new OpenAiTranslationService(openAiClient, new OpenAiProperties("", "", "", null),
+                new TranslationProperties(1, null), TranslationCache.disabled(), new PipelineMetrics(registry));
+
+        service.translateSegments(List.of("known", "unknown"), "Spanish");
+
+        assertThat(registry.get(PipelineMetrics.FALLBACK_SEGMENTS).counter().count()).isEqualTo(1);
+        assertThat(registry.get(PipelineMetrics.TRANSLATE).tag("kind", "single").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void translatesConcurrentlyWithinLimitAndKeepsSourceOrder() {
+        OpenAiClient openAiClient = Mockito.mock(OpenAiClient.class);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(openAiClient.translate(Mockito.anyString(), Mockito.eq("Spanish"))).thenAnswer(invocation -> {
+            String text = invocation.getArgument(0);
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                // Later segments finish first to prove ordering does not depend on completion order.
+                Thread.sleep(60 - Integer.parseInt(text.substring(1)) * 5L);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            return text.equals("s3") ? Optional.empty() : Optional.of(text + " -> Spanish");
+        });
+
+        OpenAiProperties properties = new OpenAiProperties("", "", "", null);
+        OpenAiTranslationService service = new OpenAiTranslationService(openAiClient, properties, new TranslationProperties(3, null), TranslationCache.disabled(), PipelineMetrics.noop());
+
+        List<String> segments = IntStream.range(0, 10).mapToObj(i -> "s" + i).toList();
+
+        List<TranslationSegment> result = service.translateSegments(segments, "Spanish");
+
+        assertThat(result).extracting(TranslationSegment::index)
+                .containsExactly(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+        assertThat(result).extracting(TranslationSegment::source).containsExactlyElementsOf(segments);
+        assertThat(result.get(3).translated()).isEqualTo("s3");
+        assertThat(result.get(4).translated()).isEqualTo("s4 -> Spanish");
+        assertThat(maxInFlight.get()).isBetween(2, 3);
+    }
+
+    @Test
+    void batchesSegmentsAndFallsBackToSingleRequestsWhenBatchIsMalformed() {
+        OpenAiClient openAiClient = Mockito.mock(OpenAiClient.class);
+        when(openAiClient.translateBatch(List.of("one", "two"), "Spanish"))
+                .thenReturn(Optional.of(List.of("uno", "dos")));
+        when(openAiClient.translateBatch(List.of("three", "four"), "Spanish")).thenReturn(Optional.empty());
+        when(openAiClient.translate("three", "Spanish")).thenReturn(Optional.of("tres"));
+        when(openAiClient.translate("four", "Spanish")).thenReturn(Optional.of("cuatro"));
+
+        OpenAiProperties properties = new OpenAiProperties("", "", "", null);
+        // Each short segment costs 9 estimated tokens, so a budget of 20 packs them in pairs.
+        OpenAiTranslationService service = new OpenAiTranslationService(openAiClient, properties, new TranslationProperties(2, 20), TranslationCache.disabled(), PipelineMetrics.noop());
+
+        List<TranslationSegment> result = service.translateSegments(List.of("one", "two", "three", "four"), "Spanish");
+
+        assertThat(result).extracting(TranslationSegment::translated)
+                .containsExactly("uno", "dos", "tres", "cuatro");
+        assertThat(result).extracting(TranslationSegment::index).containsExactly(1, 2, 3, 4);
+        Mockito.verify(openAiClient, Mockito.never()).translate("one", "Spanish");
+    }
+
+    @Test
+    void servesCachedSegmentsWithoutCallingClient() {
+        OpenAiClient openAiClient = Mockito.mock(OpenAiClient.class);
+        when(openAiClient.translate("fresh", "Spanish")).thenReturn(Optional.of("nuevo"));
+        TranslationCache cache = Mockito.mock(TranslationCache.class);
+        when(cache.get(Mockito.anyString(), Mockito.eq("Spanish"))).thenReturn(Optional.empty());
+        when(cache.get("known", "Spanish")).thenReturn(Optional.of("conocido"));
+
+        OpenAiProperties properties = new OpenAiProperties("", "", "", null);
+        OpenAiTranslationService service = new OpenAiTranslationService(openAiClient, properties, new TranslationProperties(1, null), cache, PipelineMetrics.noop());
+
+        List<TranslationSegment> result = service.translateSegments(List.of("known", "fresh"), "Spanish");
+
+        assertThat(result).extracting(TranslationSegment::translated).containsExactly("conocido", "nuevo");
+        Mockito.verify(openAiClient, Mockito.never()).translate("known", "Spanish");
+        Mockito.verify(cache).put("fresh", "Spanish", "nuevo");
+    }
+
+    @Test
+    void concurrentRequestsForTheSameSegmentsShareOneUpstreamCall() throws Exception {
+        OpenAiClient openAiClient = Mockito.mock(OpenAiClient.class);
+        CountDownLatch firstCallStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(openAiClient.translate(Mockito.anyString(), Mockito.eq("Spanish"))).thenAnswer(invocation -> {
+            firstCallStarted.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(invocation.getArgument(0) + " -> Spanish");
+        });
+        OpenAiTranslationService service = new OpenAiTranslationService(openAiClient, new OpenAiProperties("", "", "", null),
+                new TranslationProperties(1, null), TranslationCache.disabled(), PipelineMetrics.noop());
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        service.bindTo(meters);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<TranslationSegment>> first = executor.submit(() -> service.translateSegments(List.of("hello"), "Spanish"));
+            firstCallStarted.await(5, TimeUnit.SECONDS);
+            Future<List<TranslationSegment>> second = executor.submit(() -> service.translateSegments(List.of("hello"), "Spanish"));
+            await().atMost(Duration.ofSeconds(5)).until(() -> meters.get(PipelineMetrics.TRANSLATION_WAITING).gauge().value() == 1);
+            release.countDown();
+
+            assertThat(first.get(5, TimeUnit.SECONDS)).extracting(TranslationSegment::translated).containsExactly("hello -> Spanish");
+            assertThat(second.get(5, TimeUnit.SECONDS)).extracting(TranslationSegment::translated).containsExactly("hello -> Spanish");
+        } finally {
+            executor.shutdownNow();
+        }
+        Mockito.verify(openAiClient, Mockito.times(1)).translate("hello", "Spanish");
+        assertThat(meters.get(PipelineMetrics.TRANSLATION_COALESCED).functionCounter().count()).isEqualTo(1);
+        assertThat(meters.get(PipelineMetrics.TRANSLATION_IN_FLIGHT).gauge().value()).isZero();
+    }
+
+    @Test
+    void waiterTranslatesItselfWhenTheSharedCallFails() throws Exception {
+        OpenAiClient openAiClient = Mockito.mock(OpenAiClient.class);
+        CountDownLatch firstCallStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        when(openAiClient.translate(Mockito.anyString(), Mockito.eq("Spanish"))).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() == 1) {
+                firstCallStarted.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                return Optional.empty();
+            }
+            return Optional.of("hola");
+        });
+        OpenAiTranslationService service = new OpenAiTranslationService(openAiClient, new OpenAiProperties("", "", "", null),
+                new TranslationProperties(1, null), TranslationCache.disabled(), PipelineMetrics.noop());
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        service.bindTo(meters);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<TranslationSegment>> first = executor.submit(() -> service.translateSegments(List.of("hello"), "Spanish"));
+            firstCallStarted.await(5, TimeUnit.SECONDS);
+            Future<List<TranslationSegment>> second = executor.submit(() -> service.translateSegments(List.of("hello"), "Spanish"));
+            await().atMost(Duration.ofSeconds(5)).until(() -> meters.get(PipelineMetrics.TRANSLATION_WAITING).gauge().value() == 1);
+            release.countDown();
+
+            assertThat(first.get(5, TimeUnit.SECONDS).get(0).translated()).isEqualTo("hello");
+            assertThat(second.get(5, TimeUnit.SECONDS).get(0).translated()).isEqualTo("hola");
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    void repeatedSegmentsWithinOneRequestAreTranslatedOnce() {
+        OpenAiClient openAiClient = Mockito.mock(OpenAiClient.class);
+        when(openAiClient.translate("* * *", "Spanish")).thenReturn(Optional.of("* * *"));
+        when(openAiClient.translate("text", "Spanish")).thenReturn(Optional.of("texto"));
+        OpenAiTranslationService service = new OpenAiTranslationService(openAiClient, new OpenAiProperties("", "", "", null),
+                new TranslationProperties(1, null), TranslationCache.disabled(), PipelineMetrics.noop());
+
+        List<TranslationSegment> result = service.translateSegments(List.of("* * *", "text", "* * *"), "Spanish");
+
+        assertThat(result).extracting(TranslationSegment::index).containsExactly(1, 2, 3);
+        assertThat(result).extracting(TranslationSegment::translated).containsExactly("* * *", "texto", "* * *");
+        Mockito.verify(openAiClient, Mockito.times(1)).translate("* * *", "Spanish");
+    }
+
+    @Test
+    void reactiveVariantServesCacheBatchesAndFallsBackPerSegment() {
+        OpenAiClient openAiClient = Mockito.mock(OpenAiClient.class);
+        when(openAiClient.translateBatchReactive(List.of("one", "two"), "Spanish")).thenReturn(Mono.just(List.of("uno", "dos")));
+        when(openAiClient.translateBatchReactive(List.of("three", "four"), "Spanish")).thenReturn(Mono.empty());
+        when(openAiClient.translateReactive("three", "Spanish")).thenReturn(Mono.just("tres"));
+        when(openAiClient.translateReactive("four", "Spanish")).thenReturn(Mono.empty());
+        TranslationCache cache = Mockito.mock(TranslationCache.class);
+        when(cache.get(Mockito.anyString(), Mockito.eq("Spanish"))).thenReturn(Optional.empty());
+        when(cache.get("known", "Spanish")).thenReturn(Optional.of("conocido"));
+        OpenAiTranslationService service = new OpenAiTranslationService(openAiClient, new OpenAiProperties("", "", "", null),
+                new TranslationProperties(2, 20), cache, PipelineMetrics.noop());
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        service.bindTo(meters);
+
+        List<TranslationSegment> result = service.translateSegmentsReactive(List.of("known", "one", "two", "three", "four"), "Spanish")
+                .collectSortedList(Comparator.comparingInt(TranslationSegment::index))
+                .block();
+
+        assertThat(result).extracting(TranslationSegment::translated)
+                .containsExactly("conocido", "uno", "dos", "tres", "four");
+        Mockito.verify(cache).put("three", "Spanish", "tres");
+        Mockito.verify(openAiClient, Mockito.never()).translate(Mockito.anyString(), Mockito.anyString());
+        assertThat(meters.get(PipelineMetrics.TRANSLATION_IN_FLIGHT).gauge().value()).isZero();
+    }
+
+    @Test
+    void reactiveRequestJoinsABlockingRequestWithoutHoldingAThread() throws Exception {
+        OpenAiClient openAiClient = Mockito.mock(OpenAiClient.class);
+        CountDownLatch firstCallStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(openAiClient.translate(Mockito.anyString(), Mockito.eq("Spanish"))).thenAnswer(invocation -> {
+            firstCallStarted.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of("hola");
+        });
+        OpenAiTranslationService service = new OpenAiTranslationService(openAiClient, new OpenAiProperties("", "", "", null),
+                new TranslationProperties(1, null), TranslationCache.disabled(), PipelineMetrics.noop());
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        service.bindTo(meters);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<TranslationSegment>> blocking = executor.submit(() -> service.translateSegments(List.of("hello"), "Spanish"));
+            firstCallStarted.await(5, TimeUnit.SECONDS);
+            CompletableFuture<List<TranslationSegment>> reactive = service.translateSegmentsReactive(List.of("hello"), "Spanish")
+                    .collectList()
+                    .toFuture();
+            await().atMost(Duration.ofSeconds(5)).until(() -> meters.get(PipelineMetrics.TRANSLATION_COALESCED).functionCounter().count() == 1);
+            // Counted as waiting like a blocked caller, although no thread is parked on it.
+            await().atMost(Duration.ofSeconds(5)).until(() -> meters.get(PipelineMetrics.TRANSLATION_WAITING).gauge().value() == 1);
+            release.countDown();
+
+            assertThat(blocking.get(5, TimeUnit.SECONDS)).extracting(TranslationSegment::translated).containsExactly("hola");
+            assertThat(reactive.get(5, TimeUnit.SECONDS)).extracting(TranslationSegment::translated).containsExactly("hola");
+            await().atMost(Duration.ofSeconds(5)).until(() -> meters.get(PipelineMetrics.TRANSLATION_WAITING).gauge().value() == 0);
+        } finally {
+            executor.shutdownNow();
+        }
+        Mockito.verify(openAiClient, Mockito.never()).translateReactive(Mockito.anyString(), Mockito.anyString());
     }
 }
@@ -0,0 +1,40 @@
+package com.example.booktranslator.service;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PipelineMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PipelineMetrics metrics = new PipelineMetrics(registry);
+
+    @Test
+    void timesStagesPerTagEvenWhenTheyFail() {
+        assertThat(metrics.time(PipelineMetrics.SEGMENT, () -> "done", "mode", "sentences")).isEqualTo("done");
+        assertThatThrownBy(() -> metrics.time(PipelineMetrics.SEGMENT, () -> {
+            throw new IllegalStateException("boom");
+        }, "mode", "pages")).isInstanceOf(IllegalStateException.class);
+
+        Timer sentences = registry.get(PipelineMetrics.SEGMENT).tag("mode", "sentences").timer();
+        Timer pages = registry.get(PipelineMetrics.SEGMENT).tag("mode", "pages").timer();
+        assertThat(sentences.count()).isEqualTo(1);
+        assertThat(pages.count()).isEqualTo(1);
+    }
+
+    @Test
+    void countsFallbacksAndTokens() {
+        metrics.fallbackSegment();
+        metrics.fallbackSegment();
+        metrics.tokens("prompt", 120);
+        metrics.tokens("completion", 80);
+        metrics.tokens("prompt", 30);
+
+        assertThat(registry.get(PipelineMetrics.FALLBACK_SEGMENTS).counter().count()).isEqualTo(2);
+        assertThat(registry.get(PipelineMetrics.OPENAI_TOKENS).tag("type", "prompt").counter().count()).isEqualTo(150);
+        assertThat(registry.get(PipelineMetrics.OPENAI_TOKENS).tag("type", "completion").counter().count()).isEqualTo(80);
+    }
+}
@@ -1,22 +1,40 @@
 package com.example.booktranslator.service;
 
+import com.example.booktranslator.config.BookCacheProperties;
 import com.example.booktranslator.config.BookSourceProperties;
+import com.example.booktranslator.config.SearchCacheProperties;
 import com.example.booktranslator.model.BookSummary;
+import com.example.booktranslator.model.ChapterInfo;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.web.reactive.function.client.ClientRequest;
 import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.ExchangeFunction;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -30,7 +48,7 @@ class PublicDomainBookServiceTest {
         exchangeFunction = new RecordingExchangeFunction();
         WebClient.Builder builder = WebClient.builder().exchangeFunction(exchangeFunction);
         BookSourceProperties properties = new BookSourceProperties("https://example.org/books", 100);
-        service = new PublicDomainBookService(builder, new ObjectMapper(), properties);
+        service = new PublicDomainBookService(builder, new ObjectMapper(), properties, BookTextCache.disabled(), BookSearchCache.disabled(), new SegmentationService(), PipelineMetrics.noop());
     }
 
     @Test
@@ -55,6 +73,53 @@ class PublicDomainBookServiceTest {
         assertThat(service.searchBooks(" ")).isEmpty();
     }
 
+    @Test
+    void searchBooksServesRepeatedQueriesFromCache() {
+        BookSearchCache searchCache = new BookSearchCache(new SearchCacheProperties(true, 10, Duration.ofMinutes(10), Duration.ZERO),
+                Clock.systemUTC(), Runnable::run);
+        service = new PublicDomainBookService(WebClient.builder().exchangeFunction(exchangeFunction), new ObjectMapper(),
+                new BookSourceProperties("https://example.org/books", 100), BookTextCache.disabled(), searchCache, new SegmentationService(), PipelineMetrics.noop());
+        exchangeFunction.registerResponse(
+                "https://example.org/books?search=don+quixote",
+                "{\"results\":[{\"id\":1,\"title\":\"Don Quixote\",\"authors\":[],\"formats\":{}}]}"
+        );
+
+        List<BookSummary> first = service.searchBooks("don quixote");
+        List<BookSummary> second = service.searchBooks("  Don   Quixote ");
+
+        assertThat(second).isEqualTo(first).hasSize(1);
+        assertThat(exchangeFunction.requests).hasSize(1);
+    }
+
+    @Test
+    void reactiveSearchSharesTheCacheWithBlockingSearch() {
+        BookSearchCache searchCache = new BookSearchCache(new SearchCacheProperties(true, 10, Duration.ofMinutes(10), Duration.ZERO),
+                Clock.systemUTC(), Runnable::run);
+        service = new PublicDomainBookService(WebClient.builder().exchangeFunction(exchangeFunction), new ObjectMapper(),
+                new BookSourceProperties("https://example.org/books", 100), BookTextCache.disabled(), searchCache, new SegmentationService(), PipelineMetrics.noop());
+        exchangeFunction.registerResponse(
+                "https://example.org/books?search=don+quixote",
+                "{\"results\":[{\"id\":1,\"title\":\"Don Quixote\",\"authors\":[],\"formats\":{}}]}"
+        );
+
+        List<BookSummary> first = service.searchBooksReactive("don quixote").block();
+        List<BookSummary> second = service.searchBooks("Don Quixote");
+
+        assertThat(second).isEqualTo(first).hasSize(1);
+        assertThat(exchangeFunction.requests).hasSize(1);
+        assertThat(service.searchBooksReactive(" ").block()).isEmpty();
+    }
+
+    @Test
+    void reactiveDownloadCleansAndSegmentsTheBookAndCompletesEmptyWhenUnavailable() {
+        exchangeFunction.registerResponse("https://example.org/books/2", "<html><body>One. Two &amp; more. Three.</body></html>");
+
+        assertThat(service.downloadBookTextReactive(2L, "").block()).isEqualTo("One. Two & more. Three.");
+        assertThat(service.downloadSegmentsReactive(2L, "", "sentences", 2).block())
+                .containsExactly("One.", "Two & more.");
+        assertThat(service.downloadBookTextReactive(9L, "https://example.org/missing.txt").blockOptional()).isEmpty();
+    }
+
     @Test
     void downloadBookTextCleansHtmlAndHandlesFallbackUrl() {
         exchangeFunction.registerResponse(
@@ -67,24 +132,220 @@ class PublicDomainBookServiceTest {
         assertThat(text).contains("Content & More");
     }
 
+    @Test
+    void downloadBookTextServesFreshCacheWithoutNetworkAndRevalidatesStaleEntries(@TempDir Path cacheDir) {
+        MutableClock clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+        BookTextCache cache = new BookTextCache(
+                new BookCacheProperties(true, cacheDir.toString(), 1_000_000L, Duration.ofHours(1)), clock);
+        service = new PublicDomainBookService(WebClient.builder().exchangeFunction(exchangeFunction),
+                new ObjectMapper(), new BookSourceProperties("https://example.org/books", 100), cache, BookSearchCache.disabled(), new SegmentationService(), PipelineMetrics.noop());
+        exchangeFunction.registerResponse("https://example.org/book3.html",
+                "<html><body>Cached &amp; clean</body></html>", "\"v1\"");
+
+        assertThat(service.downloadBookText(3L, "https://example.org/book3.html")).contains("Cached & clean");
+        assertThat(service.downloadBookText(3L, "https://example.org/book3.html")).contains("Cached & clean");
+        assertThat(exchangeFunction.requests).hasSize(1);
+
+        clock.advance(Duration.ofHours(2));
+        exchangeFunction.notModified("https://example.org/book3.html");
+
+        assertThat(service.downloadBookText(3L, "https://example.org/book3.html")).contains("Cached & clean");
+        assertThat(exchangeFunction.requests).hasSize(2);
+        assertThat(exchangeFunction.requests.get(1).headers().getIfNoneMatch()).containsExactly("\"v1\"");
+
+        assertThat(service.downloadBookText(3L, "https://example.org/book3.html")).contains("Cached & clean");
+        assertThat(exchangeFunction.requests).hasSize(2);
+    }
+
+    @Test
+    void downloadSegmentsCancelsPlainTextStreamOnceEnoughSegmentsAreReady() {
+        AtomicInteger emitted = new AtomicInteger();
+        AtomicInteger emittedBeforeCancel = new AtomicInteger(-1);
+        DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+        // Roughly 2 MB of text delivered in 1 KB network buffers.
+        Flux<DataBuffer> body = Flux.range(0, 2_000)
+                .map(chunk -> {
+                    StringBuilder text = new StringBuilder();
+                    for (int i = 0; i < 40; i++) {
+                        text.append("Sentence ").append(chunk).append('-').append(i).append(" ends here. ");
+                    }
+                    text.append("\r\n");
+                    return (DataBuffer) bufferFactory.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+                })
+                .doOnNext(buffer -> emitted.incrementAndGet())
+                .doOnCancel(() -> emittedBeforeCancel.compareAndSet(-1, emitted.get()));
+        ExchangeFunction streaming = request -> Mono.just(ClientResponse.create(HttpStatus.OK)
+                .header("Content-Type", MediaType.TEXT_PLAIN_VALUE)
+                .body(body)
+                .build());
+        service = new PublicDomainBookService(WebClient.builder().exchangeFunction(streaming), new ObjectMapper(),
+                new BookSourceProperties("https://example.org/books", 100), BookTextCache.disabled(), BookSearchCache.disabled(), new SegmentationService(), PipelineMetrics.noop());
+
+        Optional<List<String>> segments = service.downloadSegments(4L, "https://example.org/book4.txt", "sentences", 10);
+
+        assertThat(segments).isPresent();
+        assertThat(segments.get())
+                .hasSize(10)
+                .startsWith("Sentence 0-0 ends here.", "Sentence 0-1 ends here.")
+                .endsWith("Sentence 0-9 ends here.");
+        // The mock body is cold, so exchangeToMono re-subscribes to drain it after the cancel; only the
+        // buffers delivered before the first cancel count as downloaded.
+        assertThat(emittedBeforeCancel.get()).isBetween(1, 100);
+    }
+
+    @Test
+    void streamSegmentsEmitsOpeningSegmentsWhileTheBookIsStillDownloading() {
+        AtomicInteger emitted = new AtomicInteger();
+        AtomicInteger emittedAtFirstSegment = new AtomicInteger(-1);
+        DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+        StringBuilder whole = new StringBuilder();
+        List<DataBuffer> buffers = new ArrayList<>();
+        for (int chunk = 0; chunk < 500; chunk++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < 40; i++) {
+                text.append("Sentence ").append(chunk).append('-').append(i).append(" ends here. ");
+            }
+            text.append("\r\n");
+            whole.append(text);
+            buffers.add(bufferFactory.wrap(text.toString().getBytes(StandardCharsets.UTF_8)));
+        }
+        Flux<DataBuffer> body = Flux.fromIterable(buffers).doOnNext(buffer -> emitted.incrementAndGet());
+        ExchangeFunction streaming = request -> Mono.just(ClientResponse.create(HttpStatus.OK)
+                .header("Content-Type", MediaType.TEXT_PLAIN_VALUE)
+                .body(body)
+                .build());
+        service = new PublicDomainBookService(WebClient.builder().exchangeFunction(streaming), new ObjectMapper(),
+                new BookSourceProperties("https://example.org/books", 100), BookTextCache.disabled(), BookSearchCache.disabled(), new SegmentationService(), PipelineMetrics.noop());
+
+        List<String> segments = service.streamSegments(4L, "https://example.org/book4.txt", "sentences", 100_000)
+                .doOnNext(segment -> emittedAtFirstSegment.compareAndSet(-1, emitted.get()))
+                .collectList()
+                .block();
+
+        assertThat(emittedAtFirstSegment.get()).isBetween(1, 100);
+        assertThat(segments).isEqualTo(new SegmentationService().segmentText(whole.toString().strip(), "sentences", 100_000));
+        assertThat(segments).hasSize(20_000).endsWith("Sentence 499-39 ends here.");
+    }
+
+    @Test
+    void streamSegmentsFailsWhenTheBookCannotBeDownloaded() {
+        ExchangeFunction failing = request -> Mono.just(ClientResponse.create(HttpStatus.NOT_FOUND).build());
+        service = new PublicDomainBookService(WebClient.builder().exchangeFunction(failing), new ObjectMapper(),
+                new BookSourceProperties("https://example.org/books", 100), BookTextCache.disabled(), BookSearchCache.disabled(), new SegmentationService(), PipelineMetrics.noop());
+
+        assertThat(service.streamSegments(4L, "https://example.org/book4.txt", "sentences", 10).collectList().onErrorReturn(List.of("failed")).block())
+                .containsExactly("failed");
+        assertThat(service.downloadSegments(4L, "https://example.org/book4.txt", "sentences", 10)).isEmpty();
+    }
+
+    @Test
+    void streamingAndWholeBodyDownloadsBothDetectHtmlServedWithoutAnHtmlContentType() {
+        // The stub serves every body as application/json, like a mirror with a generic content type.
+        String html = "<?xml version=\"1.0\"?>\n<!DOCTYPE html>\n<html><body><p>One &amp; two.</p>\n<p>Three.</p></body></html>";
+        exchangeFunction.registerResponse("https://example.org/book7.html", html);
+
+        assertThat(service.streamSegments(7L, "https://example.org/book7.html", "sentences", 10).collectList().block())
+                .containsExactly("One & two.", "Three.");
+        assertThat(service.downloadSegmentsReactive(7L, "https://example.org/book7.html", "sentences", 10).block())
+                .containsExactly("One & two.", "Three.");
+        assertThat(PublicDomainBookService.isHtml(MediaType.TEXT_HTML, "No tags at all.")).isTrue();
+        assertThat(PublicDomainBookService.isHtml(null, "Plain text.")).isFalse();
+    }
+
+    @Test
+    void downloadSegmentsCachesBooksThatFitInTheStream(@TempDir Path cacheDir) {
+        BookTextCache cache = new BookTextCache(new BookCacheProperties(true, cacheDir.toString(), 1_000_000L, Duration.ofDays(1)));
+        service = new PublicDomainBookService(WebClient.builder().exchangeFunction(exchangeFunction), new ObjectMapper(),
+                new BookSourceProperties("https://example.org/books", 100), cache, BookSearchCache.disabled(), new SegmentationService(), PipelineMetrics.noop());
+        exchangeFunction.registerResponse("https://example.org/book5.txt", "One. Two. Three.");
+
+        assertThat(service.downloadSegments(5L, "https://example.org/book5.txt", "sentences", 2))
+                .contains(List.of("One.", "Two."));
+        assertThat(service.downloadSegments(5L, "https://example.org/book5.txt", "sentences", 3))
+                .contains(List.of("One.", "Two.", "Three."));
+        assertThat(exchangeFunction.requests).hasSize(1);
+    }
+
+    @Test
+    void tableOfContentsIndexesTheBookOnce() {
+        exchangeFunction.registerResponse("https://example.org/book6.txt",
+                "CHAPTER I\n\nThe coach was late.\n\nCHAPTER II\n\nThe bridge was down.");
+
+        Optional<List<ChapterInfo>> toc = service.tableOfContents(6L, "https://example.org/book6.txt");
+
+        assertThat(toc).hasValueSatisfying(chapters -> assertThat(chapters)
+                .extracting(ChapterInfo::title)
+                .containsExactly("CHAPTER I", "CHAPTER II"));
+        assertThat(service.tableOfContents(6L, "https://example.org/book6.txt")).isEqualTo(toc);
+        assertThat(exchangeFunction.requests).hasSize(1);
+    }
+
     private static class RecordingExchangeFunction implements ExchangeFunction {
 
         private final Map<String, String> responses = new HashMap<>();
+        private final Map<String, String> etags = new HashMap<>();
+        private final List<ClientRequest> requests = new ArrayList<>();
+        private final Set<String> notModified = new HashSet<>();
 
         void registerResponse(String url, String body) {
             responses.put(url, body);
         }
 
+        void registerResponse(String url, String body, String etag) {
+            responses.put(url, body);
+            etags.put(url, etag);
+        }
+
+        void notModified(String url) {
+            notModified.add(url);
+        }
+
         @Override
         public Mono<ClientResponse> exchange(ClientRequest request) {
-            String body = responses.get(request.url().toString());
+            requests.add(request);
+            String url = request.url().toString();
+            if (notModified.contains(url)) {
+                return Mono.just(ClientResponse.create(HttpStatus.NOT_MODIFIED).build());
+            }
+            String body = responses.get(url);
             if (body == null) {
                 return Mono.empty();
             }
-            return Mono.just(ClientResponse.create(HttpStatus.OK)
+            ClientResponse.Builder response = ClientResponse.create(HttpStatus.OK)
                     .header("Content-Type", MediaType.APPLICATION_JSON_VALUE)
-                    .body(body)
-                    .build());
+                    .body(body);
+            if (etags.containsKey(url)) {
+                response.header("ETag", etags.get(url));
+            }
+            return Mono.just(response.build());
+        }
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
         }
     }
 }
@@ -0,0 +1,47 @@
+package com.example.booktranslator.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SegmentBatcherTest {
+
+    @Test
+    void packsSegmentsUpToTokenBudget() {
+        List<String> segments = List.of("a".repeat(40), "b".repeat(40), "c".repeat(40), "d".repeat(400));
+
+        List<List<Integer>> batches = SegmentBatcher.plan(segments, List.of(0, 1, 2, 3), 40);
+
+        assertThat(batches).containsExactly(List.of(0, 1), List.of(2), List.of(3));
+    }
+
+    @Test
+    void encodesAndDecodesIndexTaggedSegments() {
+        String encoded = SegmentBatcher.encode(List.of("Hello.", "Line one\nline two."));
+
+        assertThat(encoded).isEqualTo("<s id=\"1\">Hello.</s>\n<s id=\"2\">Line one\nline two.</s>\n");
+        assertThat(SegmentBatcher.decode("<s id=\"1\"> Hola. </s>\n<s id=\"2\">Línea uno\nlínea dos.</s>", 2))
+                .contains(List.of("Hola.", "Línea uno\nlínea dos."));
+    }
+
+    @Test
+    void escapesTagsAndAmpersandsInSegmentText() {
+        List<String> texts = List.of("He typed </s> and <s id=\"2\"> & left.", "Done.");
+
+        String encoded = SegmentBatcher.encode(texts);
+
+        assertThat(encoded).isEqualTo("<s id=\"1\">He typed &lt;/s> and &lt;s id=\"2\"> &amp; left.</s>\n<s id=\"2\">Done.</s>\n");
+        assertThat(SegmentBatcher.decode(encoded, 2)).contains(texts);
+        assertThat(SegmentBatcher.decode("<s id=\"1\">&amp;lt; stays escaped</s>", 1)).contains(List.of("&lt; stays escaped"));
+    }
+
+    @Test
+    void rejectsMergedDroppedOrReorderedSegments() {
+        assertThat(SegmentBatcher.decode("<s id=\"1\">Hola. Mundo.</s>", 2)).isEmpty();
+        assertThat(SegmentBatcher.decode("<s id=\"2\">Mundo.</s><s id=\"1\">Hola.</s>", 2)).isEmpty();
+        assertThat(SegmentBatcher.decode("<s id=\"1\">Hola.</s><s id=\"2\"> </s>", 2)).isEmpty();
+        assertThat(SegmentBatcher.decode("Hola. Mundo.", 2)).isEmpty();
+    }
+}
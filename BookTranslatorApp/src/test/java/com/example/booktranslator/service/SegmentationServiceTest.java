@@ -1,5 +1,6 @@
 package com.example.booktranslator.service;
 
+import com.example.booktranslator.config.SegmentationProperties;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -50,8 +51,8 @@ class SegmentationServiceTest {
         assertThat(segments)
                 .hasSize(2)
                 .containsExactly(
-                        "One\nContent.",
-                        "two\nMore content."
+                        "Chapter One\nContent.",
+                        "chapter two\nMore content."
                 );
 
         List<String> fallback = segmentationService.segmentText("No chapters here.", "chapters", 1);
@@ -59,4 +60,20 @@ class SegmentationServiceTest {
                 .hasSize(1)
                 .containsExactly("No chapters here.");
     }
+
+    @Test
+    void packsWholeSentencesUpToTheTokenTarget() {
+        SegmentationService service = new SegmentationService(PipelineMetrics.noop(), new SegmentationProperties(16));
+        String text = "The coach was late. The bridge at St. Mary's was down again. They came round by the mill. "
+                + "It was past eleven before the house was quiet and Hale sat by the kitchen fire alone. Rain.";
+
+        List<String> segments = service.segmentText(text, "tokens", 10);
+
+        assertThat(segments).containsExactly(
+                "The coach was late. The bridge at St. Mary's was down again.",
+                "They came round by the mill.",
+                "It was past eleven before the house was quiet and Hale sat by the kitchen fire alone.",
+                "Rain.");
+        assertThat(service.segmentText(text, "tokens", 2)).hasSize(2);
+    }
 }
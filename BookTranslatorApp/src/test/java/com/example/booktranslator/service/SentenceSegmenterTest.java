@@ -0,0 +1,82 @@
+package com.example.booktranslator.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SentenceSegmenterTest {
+
+    @Test
+    void keepsAbbreviationsAndInitialsInsideSentences() {
+        String text = "Mr. Hale met Dr. Foster on St. Mary's Lane. J. R. Alden was there too. So was I. Then it rained.";
+
+        assertThat(SentenceSegmenter.segment(text, 10).segments()).containsExactly(
+                "Mr. Hale met Dr. Foster on St. Mary's Lane.",
+                "J. R. Alden was there too.",
+                "So was I.",
+                "Then it rained.");
+    }
+
+    @Test
+    void keepsDialogueTagsWithTheirQuotes() {
+        String text = "\"You are late,\" he said. \"Were the roads bad?\" asked Hale. \"Worse than bad!\" The driver sighed.";
+
+        assertThat(SentenceSegmenter.segment(text, 10).segments()).containsExactly(
+                "\"You are late,\" he said.",
+                "\"Were the roads bad?\" asked Hale.",
+                "\"Worse than bad!\"",
+                "The driver sighed.");
+    }
+
+    @Test
+    void splitsOnEllipsesOnlyBeforeANewSentence() {
+        String text = "The coat, the hat... no, it was not possible. He waited… Nobody came. Pi is 3.14 or so.";
+
+        assertThat(SentenceSegmenter.segment(text, 10).segments()).containsExactly(
+                "The coat, the hat... no, it was not possible.",
+                "He waited…",
+                "Nobody came.",
+                "Pi is 3.14 or so.");
+    }
+
+    @Test
+    void treatsBlankLinesAsBoundariesButNotWrappedLines() {
+        String text = "CHAPTER 1\n\nThe coach from Dover reached the inn\nafter nine. Hale went down\nto meet it";
+
+        assertThat(SentenceSegmenter.segment(text, 10).segments()).containsExactly(
+                "CHAPTER 1",
+                "The coach from Dover reached the inn\nafter nine.",
+                "Hale went down\nto meet it");
+    }
+
+    @Test
+    void recordsOffsetsAndStopsAtTheLimit() {
+        String text = "  One. Two!  Three? Four.";
+
+        SentenceSpans spans = SentenceSegmenter.segment(text, 3);
+
+        assertThat(spans.size()).isEqualTo(3);
+        assertThat(spans.start(1)).isEqualTo(text.indexOf("Two"));
+        assertThat(spans.end(1)).isEqualTo(text.indexOf("Two") + "Two!".length());
+        assertThat(spans.segment(2)).isEqualTo("Three?");
+    }
+
+    @Test
+    void parallelSegmentationMatchesTheSequentialScan() {
+        String paragraph = "Mr. Hale walked to the village. \"Was it the same man?\" he wondered... He could not be sure.\n"
+                + "The walk took forty minutes, which was a good pace";
+        String text = IntStream.range(0, 6000)
+                .mapToObj(i -> "Part " + i + ". " + paragraph)
+                .collect(Collectors.joining("\n\n"));
+        assertThat(text.length()).isGreaterThan(SentenceSegmenter.PARALLEL_THRESHOLD);
+
+        SentenceSpans sequential = SentenceSegmenter.segment(text, Integer.MAX_VALUE);
+        SentenceSpans parallel = SentenceSegmenter.segmentParallel(text);
+
+        assertThat(parallel.size()).isEqualTo(sequential.size()).isEqualTo(6000 * 5);
+        assertThat(parallel.segments()).isEqualTo(sequential.segments());
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.booktranslator.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class SingleFlightTest {
+
+    @Test
+    void concurrentCallersShareOneExecution() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> flight.run("key", () -> {
+                    executions.incrementAndGet();
+                    awaitRelease(release);
+                    return "value";
+                })));
+            }
+            await().atMost(Duration.ofSeconds(5)).until(() -> flight.coalesced() == 7);
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("value");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(executions).hasValue(1);
+        assertThat(flight.inFlight()).isZero();
+    }
+
+    @Test
+    void failureReachesEveryCallerAndIsNotRemembered() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> leader = flight.runAsync("key", () -> {
+            awaitRelease(release);
+            throw new IllegalStateException("upstream down");
+        }, runnable -> new Thread(runnable).start());
+        CompletableFuture<String> follower = flight.runAsync("key", () -> "unused", Runnable::run);
+        release.countDown();
+
+        assertThatThrownBy(leader::join).hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(follower::join).hasCauseInstanceOf(IllegalStateException.class);
+        await().atMost(Duration.ofSeconds(5)).until(() -> flight.inFlight() == 0);
+        assertThat(flight.run("key", () -> "recovered")).isEqualTo("recovered");
+    }
+
+    @Test
+    void cancellingOneCallerLeavesTheSharedCallRunning() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> first = flight.runAsync("key", () -> {
+            awaitRelease(release);
+            return "value";
+        }, runnable -> new Thread(runnable).start());
+        CompletableFuture<String> second = flight.runAsync("key", () -> "unused", Runnable::run);
+
+        first.cancel(true);
+        release.countDown();
+
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("value");
+    }
+
+    private static void awaitRelease(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
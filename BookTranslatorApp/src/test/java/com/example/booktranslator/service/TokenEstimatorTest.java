@@ -0,0 +1,43 @@
+package com.example.booktranslator.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenEstimatorTest {
+
+    @Test
+    void costsWordsNumbersAndPunctuationLikeABytePairTokenizer() {
+        assertThat(TokenEstimator.estimate("The cat sat.")).isEqualTo(4);
+        assertThat(TokenEstimator.estimate("don't")).isEqualTo(1);
+        assertThat(TokenEstimator.estimate("incomprehensibilities")).isEqualTo(5);
+        assertThat(TokenEstimator.estimate("1868")).isEqualTo(2);
+        assertThat(TokenEstimator.estimate("line one\n\nline two")).isEqualTo(5);
+        assertThat(TokenEstimator.estimate("")).isZero();
+    }
+
+    @Test
+    void costsNonLatinScriptsPerCharacter() {
+        assertThat(TokenEstimator.estimate("東京タワー")).isGreaterThanOrEqualTo(4);
+        assertThat(TokenEstimator.estimate("señorita")).isEqualTo(4);
+    }
+
+    @Test
+    void estimatesEnglishProseAtFourToFiveCharactersPerToken() {
+        String prose = "The coach from Dover reached the inn a little after nine, and Mr. Hale, who had been watching "
+                + "the road since supper, went down to meet it. \"You are late,\" he said to the driver. \"Were the "
+                + "roads so very bad?\" \"Worse than bad, sir. The bridge at St. Mary's is down again, and we came "
+                + "round by the mill.\"";
+
+        double charactersPerToken = (double) prose.length() / TokenEstimator.estimate(prose);
+
+        assertThat(charactersPerToken).isBetween(3.5, 5.0);
+    }
+
+    @Test
+    void estimatesARangeWithoutCopying() {
+        String text = "skip this. The cat sat.";
+
+        assertThat(TokenEstimator.estimate(text, 11, text.length())).isEqualTo(TokenEstimator.estimate("The cat sat."));
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.booktranslator.service;
+
+import com.example.booktranslator.config.OpenAiProperties;
+import com.example.booktranslator.config.TranslationStoreProperties;
+import com.example.booktranslator.model.BookSummary;
+import com.example.booktranslator.model.NarratedRange;
+import com.example.booktranslator.model.TranslatedBookPage;
+import com.example.booktranslator.model.TranslationJobRequest;
+import com.example.booktranslator.model.TranslationResult;
+import com.example.booktranslator.model.TranslationSegment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TranslatedBookStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private TranslatedBookStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = store("gpt-4o-mini");
+    }
+
+    @Test
+    void readsAnyPageOfAStoredBook() {
+        store.save(request(0, 25), result(0, 25, "book.mp3"));
+
+        TranslatedBookPage page = store.page(1L, "url", "sentences", "Spanish", 2, 10).orElseThrow();
+
+        assertThat(page.book()).isEqualTo(new BookSummary(1L, "Title", "", "url"));
+        assertThat(page.segments()).extracting(TranslationSegment::index).containsExactly(11, 12, 13, 14, 15, 16, 17, 18, 19, 20);
+        assertThat(page.segments().get(0)).isEqualTo(new TranslationSegment(11, "Sentence 11 – ñ.", "Frase 11 – ñ."));
+        assertThat(page.totalSegments()).isEqualTo(25);
+        assertThat(page.totalPages()).isEqualTo(3);
+        assertThat(page.narration()).containsExactly(new NarratedRange(1, 25, "book.mp3"));
+        assertThat(store.page(1L, "url", "sentences", "Spanish", 9, 10).orElseThrow().segments())
+                .extracting(TranslationSegment::index).containsExactly(21, 22, 23, 24, 25);
+    }
+
+    @Test
+    void rangesFromSeparateJobsFillTheSameBook() {
+        store.save(request(10, 5), result(10, 5, null));
+        assertThat(store.covers(request(0, 15))).isFalse();
+
+        store.save(request(0, 10), result(0, 10, null));
+
+        assertThat(store.covers(request(0, 15))).isTrue();
+        assertThat(store.page(1L, "url", "sentences", "Spanish", 1, 100).orElseThrow().segments()).hasSize(15);
+    }
+
+    @Test
+    void gapsAreSkippedWhenPaging() {
+        store.save(request(5, 3), result(5, 3, null));
+
+        TranslatedBookPage page = store.page(1L, "url", "sentences", "Spanish", 1, 10).orElseThrow();
+
+        assertThat(page.segments()).extracting(TranslationSegment::index).containsExactly(6, 7, 8);
+        assertThat(page.totalSegments()).isEqualTo(8);
+    }
+
+    @Test
+    void coversRangesRunningPastTheEndOfTheBook() {
+        store.save(request(0, 50), result(0, 20, null));
+
+        assertThat(store.covers(request(10, 100))).isTrue();
+        assertThat(store.covers(request(20, 5))).isFalse();
+    }
+
+    @Test
+    void segmentsThatFellBackToTheSourceAreNotStored() {
+        List<TranslationSegment> segments = List.of(
+                new TranslationSegment(1, "Sentence 1.", "Frase 1."),
+                TranslationSegment.untranslated(2, "Sentence 2."),
+                new TranslationSegment(3, "Sentence 3.", "Frase 3."));
+        store.save(request(0, 3), new TranslationResult(new BookSummary(1L, "Title", "", "url"), segments, null));
+
+        assertThat(store.covers(request(0, 3))).isFalse();
+        assertThat(store.page(1L, "url", "sentences", "Spanish", 1, 10).orElseThrow().segments())
+                .extracting(TranslationSegment::index).containsExactly(1, 3);
+    }
+
+    @Test
+    void translationsThatMatchTheirSourceAreStored() {
+        List<TranslationSegment> segments = List.of(
+                new TranslationSegment(1, "Paris.", "Paris."),
+                new TranslationSegment(2, "OK.", "OK."));
+        store.save(request(0, 2), new TranslationResult(new BookSummary(1L, "Title", "", "url"), segments, null));
+
+        assertThat(store.covers(request(0, 2))).isTrue();
+        assertThat(store.page(1L, "url", "sentences", "Spanish", 1, 10).orElseThrow().segments())
+                .isEqualTo(segments);
+    }
+
+    @Test
+    void readsTheStoredSegmentsOfARange() {
+        store.save(request(0, 5), result(0, 5, null));
+
+        assertThat(store.segments(1L, "url", "sentences", "Spanish", 2, 4))
+                .extracting(TranslationSegment::index).containsExactly(2, 3, 4);
+        assertThat(store.segments(1L, "url", "sentences", "Spanish", 4, 9))
+                .extracting(TranslationSegment::index).containsExactly(4, 5);
+        assertThat(store.segments(1L, "url", "sentences", "French", 1, 5)).isEmpty();
+    }
+
+    @Test
+    void booksAreKeptApartByModeLanguageAndModel() {
+        store.save(request(0, 3), result(0, 3, null));
+
+        assertThat(store.page(1L, "url", "chapters", "Spanish", 1, 10)).isEmpty();
+        assertThat(store.page(1L, "url", "sentences", "French", 1, 10)).isEmpty();
+        assertThat(store("gpt-4o").page(1L, "url", "sentences", "Spanish", 1, 10)).isEmpty();
+        assertThat(store("gpt-4o-mini").page(1L, "url", "sentences", "Spanish", 1, 10)).isPresent();
+    }
+
+    @Test
+    void editionsAreKeptApartAndModesAreNormalized() {
+        store.save(request(0, 3), result(0, 3, null));
+
+        assertThat(store.page(1L, "other-url", "sentences", "Spanish", 1, 10)).isEmpty();
+        assertThat(store.page(1L, "url", " Sentences ", "Spanish", 1, 10)).isPresent();
+        assertThat(store.covers(new TranslationJobRequest(1L, "url", "Title", 0, 3, "SENTENCES", "Spanish"))).isTrue();
+    }
+
+    @Test
+    void eachNarratedRangeKeepsItsOwnAudio() {
+        store.save(request(0, 10), result(0, 10, "first.mp3"));
+        store.save(request(10, 10), result(10, 10, "second.mp3"));
+
+        assertThat(store.page(1L, "url", "sentences", "Spanish", 1, 20).orElseThrow().narration()).containsExactly(
+                new NarratedRange(1, 10, "first.mp3"), new NarratedRange(11, 20, "second.mp3"));
+        assertThat(store.page(1L, "url", "sentences", "Spanish", 2, 10).orElseThrow().narration())
+                .containsExactly(new NarratedRange(11, 20, "second.mp3"));
+    }
+
+    @Test
+    void disabledStoreKeepsNothing() {
+        TranslatedBookStore disabled = TranslatedBookStore.disabled();
+        disabled.save(request(0, 3), result(0, 3, null));
+
+        assertThat(disabled.covers(request(0, 3))).isFalse();
+        assertThat(disabled.page(1L, "url", "sentences", "Spanish", 1, 10)).isEmpty();
+    }
+
+    private TranslatedBookStore store(String chatModel) {
+        return new TranslatedBookStore(new TranslationStoreProperties(true, directory.toString(), null),
+                new OpenAiProperties(null, chatModel, null, null));
+    }
+
+    private static TranslationJobRequest request(int offset, int segments) {
+        return new TranslationJobRequest(1L, "url", "Title", offset, segments, "sentences", "Spanish");
+    }
+
+    private static TranslationResult result(int offset, int count, String audioFileName) {
+        List<TranslationSegment> segments = IntStream.rangeClosed(offset + 1, offset + count)
+                .mapToObj(i -> new TranslationSegment(i, "Sentence " + i + " – ñ.", "Frase " + i + " – ñ."))
+                .toList();
+        return new TranslationResult(new BookSummary(1L, "Title", "", "url"), segments, audioFileName);
+    }
+}
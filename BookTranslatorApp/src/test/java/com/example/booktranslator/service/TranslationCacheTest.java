@@ -0,0 +1,104 @@
+package com.example.booktranslator.service;
+
+import com.example.booktranslator.config.OpenAiProperties;
+import com.example.booktranslator.config.TranslationCacheProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TranslationCacheTest {
+
+    private static final OpenAiProperties OPENAI = new OpenAiProperties("", "gpt-4o-mini", "", null);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void servesFromMemoryThenFromDiskAfterRestart() {
+        TranslationCache cache = open(100);
+        assertThat(cache.get("Hello.", "Spanish")).isEmpty();
+        cache.put("Hello.", "Spanish", "Hola.");
+
+        assertThat(cache.get("Hello.", "Spanish")).contains("Hola.");
+        assertThat(cache.get("Hello.", "French")).isEmpty();
+        cache.close();
+
+        TranslationCache reopened = open(100);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        reopened.bindTo(registry);
+        assertThat(reopened.get("Hello.", "Spanish")).contains("Hola.");
+        assertThat(reopened.get("Hello.", "Spanish")).contains("Hola.");
+        assertThat(requests(registry, "disk-hit")).isEqualTo(1);
+        assertThat(requests(registry, "memory-hit")).isEqualTo(1);
+        assertThat(entries(registry, "disk")).isEqualTo(1);
+        reopened.close();
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntriesFromMemoryOnly() {
+        TranslationCache cache = open(2);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+        cache.put("one", "Spanish", "uno");
+        cache.put("two", "Spanish", "dos");
+        cache.get("one", "Spanish");
+        cache.put("three", "Spanish", "tres");
+
+        assertThat(entries(registry, "memory")).isEqualTo(2);
+        assertThat(cache.get("two", "Spanish")).contains("dos");
+        assertThat(requests(registry, "disk-hit")).isEqualTo(1);
+        cache.close();
+    }
+
+    @Test
+    void keysIncludeChatModel() {
+        TranslationCache cache = open(10);
+        cache.put("Hello.", "Spanish", "Hola.");
+        cache.close();
+
+        TranslationCache otherModel = new TranslationCache(
+                new TranslationCacheProperties(true, 10, tempDir.toString()),
+                new OpenAiProperties("", "gpt-4o", "", null));
+        assertThat(otherModel.get("Hello.", "Spanish")).isEmpty();
+        otherModel.close();
+    }
+
+    @Test
+    void truncatesTornTailOnReopen() throws IOException {
+        TranslationCache cache = open(10);
+        cache.put("one", "Spanish", "uno");
+        cache.close();
+        Path log = tempDir.resolve("translations.log");
+        long intactSize = Files.size(log);
+        Files.write(log, new byte[]{1, 2, 3, 4, 5}, StandardOpenOption.APPEND);
+
+        TranslationCache reopened = open(10);
+        reopened.put("two", "Spanish", "dos");
+        reopened.close();
+
+        assertThat(Files.size(log)).isGreaterThan(intactSize);
+        TranslationCache verified = open(10);
+        assertThat(verified.get("one", "Spanish")).contains("uno");
+        assertThat(verified.get("two", "Spanish")).contains("dos");
+        verified.close();
+    }
+
+    private TranslationCache open(int memoryEntries) {
+        return new TranslationCache(new TranslationCacheProperties(true, memoryEntries, tempDir.toString()), OPENAI);
+    }
+
+    private static double requests(SimpleMeterRegistry registry, String result) {
+        return registry.get(PipelineMetrics.TRANSLATION_CACHE_REQUESTS).tag("result", result).functionCounter().count();
+    }
+
+    private static double entries(SimpleMeterRegistry registry, String tier) {
+        return registry.get(PipelineMetrics.TRANSLATION_CACHE_ENTRIES).tag("tier", tier).gauge().value();
+    }
+}
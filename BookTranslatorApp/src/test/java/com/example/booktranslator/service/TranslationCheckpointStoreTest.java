@@ -0,0 +1,143 @@
+package com.example.booktranslator.service;
+
+import com.example.booktranslator.config.JobProperties;
+import com.example.booktranslator.config.OpenAiProperties;
+import com.example.booktranslator.model.TranslationJobRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TranslationCheckpointStoreTest {
+
+    private static final OpenAiProperties OPENAI = new OpenAiProperties("", "gpt-4o-mini", "", null);
+
+    private static final TranslationJobRequest REQUEST =
+            new TranslationJobRequest(7L, "url", "Title", 10, 5, "sentences", "Spanish");
+
+    @TempDir
+    Path directory;
+
+    private TranslationCheckpointStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new TranslationCheckpointStore(
+                new JobProperties(null, null, null, directory.toString(), true), OPENAI, new ObjectMapper());
+    }
+
+    @Test
+    void reopeningRestoresRecordedSegments() {
+        try (TranslationCheckpointStore.Checkpoint checkpoint = store.open("job-1", REQUEST)) {
+            assertThat(checkpoint.completed()).isEmpty();
+            checkpoint.record(0, "uno");
+            checkpoint.record(2, "tres");
+        }
+
+        try (TranslationCheckpointStore.Checkpoint checkpoint = store.open("job-2", REQUEST)) {
+            assertThat(checkpoint.completed()).isEqualTo(Map.of(0, "uno", 2, "tres"));
+        }
+    }
+
+    @Test
+    void interruptedListsUnfinishedJobsUnderTheirOriginalId() {
+        store.open("job-1", REQUEST).close();
+
+        assertThat(store.interrupted())
+                .containsExactly(new TranslationCheckpointStore.Interrupted("job-1", REQUEST));
+    }
+
+    @Test
+    void checkpointsFromAnotherChatModelAreNotResumed() {
+        try (TranslationCheckpointStore.Checkpoint checkpoint = store.open("job-1", REQUEST)) {
+            checkpoint.record(0, "uno");
+        }
+        TranslationCheckpointStore otherModel = new TranslationCheckpointStore(
+                new JobProperties(null, null, null, directory.toString(), true),
+                new OpenAiProperties("", "gpt-4o", "", null), new ObjectMapper());
+
+        assertThat(otherModel.interrupted()).isEmpty();
+        try (TranslationCheckpointStore.Checkpoint checkpoint = otherModel.open("job-2", REQUEST)) {
+            assertThat(checkpoint.completed()).isEmpty();
+        }
+        // The stale checkpoint was deleted rather than left to be listed on every start.
+        try (TranslationCheckpointStore.Checkpoint checkpoint = store.open("job-3", REQUEST)) {
+            assertThat(checkpoint.completed()).isEmpty();
+        }
+    }
+
+    @Test
+    void failedJobsAreNotResumedAutomatically() {
+        try (TranslationCheckpointStore.Checkpoint checkpoint = store.open("job-1", REQUEST)) {
+            checkpoint.record(0, "uno");
+            checkpoint.fail("boom");
+        }
+
+        assertThat(store.interrupted()).isEmpty();
+        try (TranslationCheckpointStore.Checkpoint checkpoint = store.open("job-2", REQUEST)) {
+            assertThat(checkpoint.completed()).containsEntry(0, "uno");
+        }
+    }
+
+    @Test
+    void finishingDeletesTheCheckpoint() throws IOException {
+        TranslationCheckpointStore.Checkpoint checkpoint = store.open("job-1", REQUEST);
+        checkpoint.record(0, "uno");
+        checkpoint.finish();
+
+        assertThat(store.interrupted()).isEmpty();
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void secondOpenOfALiveRangeIsReadOnly() {
+        try (TranslationCheckpointStore.Checkpoint owner = store.open("job-1", REQUEST)) {
+            owner.record(0, "uno");
+            try (TranslationCheckpointStore.Checkpoint reader = store.open("job-2", REQUEST)) {
+                assertThat(reader.completed()).containsEntry(0, "uno");
+                reader.record(1, "dos");
+            }
+        }
+
+        try (TranslationCheckpointStore.Checkpoint checkpoint = store.open("job-3", REQUEST)) {
+            assertThat(checkpoint.completed()).isEqualTo(Map.of(0, "uno"));
+        }
+    }
+
+    @Test
+    void tornLastLineIsIgnored() throws IOException {
+        store.open("job-1", REQUEST).record(0, "uno");
+        try (Stream<Path> files = Files.list(directory)) {
+            Path file = files.findFirst().orElseThrow();
+            Files.writeString(file, Files.readString(file) + "{\"index\":1,\"transl", StandardCharsets.UTF_8);
+        }
+
+        TranslationCheckpointStore reopened = new TranslationCheckpointStore(
+                new JobProperties(null, null, null, directory.toString(), true), OPENAI, new ObjectMapper());
+        try (TranslationCheckpointStore.Checkpoint checkpoint = reopened.open("job-2", REQUEST)) {
+            assertThat(checkpoint.completed()).isEqualTo(Map.of(0, "uno"));
+        }
+    }
+
+    @Test
+    void disabledStoreRecordsNothing() {
+        TranslationCheckpointStore disabled = TranslationCheckpointStore.disabled();
+        try (TranslationCheckpointStore.Checkpoint checkpoint = disabled.open("job-1", REQUEST)) {
+            checkpoint.record(0, "uno");
+        }
+
+        assertThat(disabled.open("job-2", REQUEST).completed()).isEmpty();
+        assertThat(disabled.interrupted()).isEmpty();
+    }
+}
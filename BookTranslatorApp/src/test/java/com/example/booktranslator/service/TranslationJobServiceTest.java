@@ -0,0 +1,45 @@
+package com.example.booktranslator.service;
+
+import com.example.booktranslator.config.JobProperties;
+import com.example.booktranslator.model.JobStage;
+import com.example.booktranslator.model.TranslationJobRequest;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class TranslationJobServiceTest {
+
+    private static final TranslationJobRequest REQUEST = new TranslationJobRequest(1L, "url", "Title", 0, 3, "sentences", "Spanish");
+
+    @Test
+    void runsJobsInBackgroundAndRejectsWhenSaturated() throws InterruptedException {
+        TranslationPipeline pipeline = Mockito.mock(TranslationPipeline.class);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            invocation.<TranslationJob>getArgument(0).fail("done");
+            return null;
+        }).when(pipeline).run(Mockito.any());
+        TranslationJobService service = new TranslationJobService(pipeline,
+                new JobProperties(1, 1, Duration.ofMinutes(5), "", false), TranslationCheckpointStore.disabled());
+
+        TranslationJob running = service.submit(REQUEST);
+        TranslationJob queued = service.submit(REQUEST);
+
+        assertThatThrownBy(() -> service.submit(REQUEST)).isInstanceOf(RejectedExecutionException.class);
+        assertThat(service.find(running.getId())).contains(running);
+        assertThat(queued.getStage()).isEqualTo(JobStage.QUEUED);
+
+        release.countDown();
+        await().atMost(Duration.ofSeconds(5)).until(() -> queued.getStage() == JobStage.FAILED);
+        service.shutdown();
+    }
+}
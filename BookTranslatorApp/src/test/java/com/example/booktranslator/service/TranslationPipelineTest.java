@@ -0,0 +1,282 @@
+package com.example.booktranslator.service;
+
+import com.example.booktranslator.config.JobProperties;
+import com.example.booktranslator.config.OpenAiProperties;
+import com.example.booktranslator.model.BookSummary;
+import com.example.booktranslator.model.JobStage;
+import com.example.booktranslator.model.TranslationJobRequest;
+import com.example.booktranslator.model.TranslationResult;
+import com.example.booktranslator.model.TranslationSegment;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+class TranslationPipelineTest {
+
+    private static final OpenAiProperties OPENAI = new OpenAiProperties("", "gpt-4o-mini", "", null);
+
+    private PublicDomainBookService bookService;
+    private OpenAiTranslationService translationService;
+    private AudioGenerationService audioGenerationService;
+    private TranslationPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        bookService = Mockito.mock(PublicDomainBookService.class);
+        translationService = Mockito.mock(OpenAiTranslationService.class);
+        audioGenerationService = Mockito.mock(AudioGenerationService.class);
+        pipeline = new TranslationPipeline(bookService, translationService, audioGenerationService,
+                TranslationCheckpointStore.disabled(), TranslatedBookStore.disabled());
+    }
+
+    @Test
+    void failsJobWhenBookDownloadFails() {
+        TranslationJob job = new TranslationJob("job", new TranslationJobRequest(1L, "", "Title", 0, 5, "sentences", "Spanish"));
+        when(bookService.streamSegments(1L, "", "sentences", 5)).thenReturn(Flux.error(new IllegalStateException("offline")));
+
+        pipeline.run(job);
+
+        assertThat(job.getStage()).isEqualTo(JobStage.FAILED);
+        assertThat(job.getError()).isEqualTo("Unable to download the selected book. Please try another title.");
+    }
+
+    @Test
+    void failsJobWhenNoSegmentsWereExtracted() {
+        TranslationJob job = new TranslationJob("job", new TranslationJobRequest(1L, "url", "Title", 0, 5, "chapters", "Spanish"));
+        when(bookService.streamSegments(1L, "url", "chapters", 5)).thenReturn(Flux.empty());
+
+        pipeline.run(job);
+
+        assertThat(job.getError()).isEqualTo("No content extracted from book for translation.");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void completesJobWithTranslationsAudioAndProgress() {
+        TranslationJob job = new TranslationJob("job", new TranslationJobRequest(1L, "url", "Title", 0, 3, "sentences", "Spanish"));
+        List<TranslationSegment> segments = List.of(new TranslationSegment(1, "Hello world.", "Hola mundo."));
+        when(bookService.streamSegments(1L, "url", "sentences", 3)).thenReturn(Flux.fromIterable(List.of("Hello world.")));
+        when(translationService.segmentLimit(3)).thenReturn(1);
+        when(translationService.translateSegments(Mockito.eq(List.of("Hello world.")), Mockito.eq("Spanish"), Mockito.any()))
+                .thenAnswer(invocation -> {
+                    invocation.<Consumer<TranslationSegment>>getArgument(2).accept(segments.get(0));
+                    return segments;
+                });
+        AudioGenerationService.Narration narration = Mockito.mock(AudioGenerationService.Narration.class);
+        when(audioGenerationService.startNarration()).thenReturn(narration);
+        when(narration.finish()).thenReturn(Optional.of("file.mp3"));
+
+        pipeline.run(job);
+
+        assertThat(job.getStage()).isEqualTo(JobStage.COMPLETED);
+        TranslationResult result = job.getResult();
+        assertThat(result.book()).isEqualTo(new BookSummary(1L, "Title", "", "url"));
+        assertThat(result.audioFileName()).isEqualTo("file.mp3");
+        assertThat(result.segments()).isEqualTo(segments);
+        assertThat(job.status().completedSegments()).isEqualTo(1);
+        assertThat(job.status().totalSegments()).isEqualTo(1);
+        assertThat(job.segments().collectList().block(Duration.ofSeconds(1))).isEqualTo(segments);
+        Mockito.verify(narration).add(segments.get(0));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void resumesRangeFromCheckpointInChunks(@TempDir Path directory) {
+        TranslationCheckpointStore store = new TranslationCheckpointStore(
+                new JobProperties(null, null, null, directory.toString(), true), OPENAI, new ObjectMapper());
+        pipeline = new TranslationPipeline(bookService, translationService, audioGenerationService, store,
+                TranslatedBookStore.disabled());
+        TranslationJobRequest request = new TranslationJobRequest(1L, "url", "Title", 1, 3, "sentences", "Spanish");
+        try (TranslationCheckpointStore.Checkpoint checkpoint = store.open("earlier", request)) {
+            checkpoint.record(0, "B!");
+        }
+        when(bookService.streamSegments(1L, "url", "sentences", 4)).thenReturn(Flux.fromIterable(List.of("A", "B", "C", "D")));
+        when(translationService.segmentLimit(3)).thenReturn(1);
+        when(translationService.translateSegments(Mockito.anyList(), Mockito.eq("Spanish"), Mockito.any()))
+                .thenAnswer(invocation -> {
+                    String source = invocation.<List<String>>getArgument(0).get(0);
+                    TranslationSegment segment = new TranslationSegment(1, source, source + "!");
+                    invocation.<Consumer<TranslationSegment>>getArgument(2).accept(segment);
+                    return List.of(segment);
+                });
+        AudioGenerationService.Narration narration = Mockito.mock(AudioGenerationService.Narration.class);
+        when(audioGenerationService.startNarration()).thenReturn(narration);
+        TranslationJob job = new TranslationJob("job", request);
+
+        pipeline.run(job);
+
+        assertThat(job.getStage()).isEqualTo(JobStage.COMPLETED);
+        assertThat(job.getResult().segments()).containsExactly(
+                new TranslationSegment(2, "B", "B!"),
+                new TranslationSegment(3, "C", "C!"),
+                new TranslationSegment(4, "D", "D!"));
+        Mockito.verify(translationService).translateSegments(Mockito.eq(List.of("C")), Mockito.any(), Mockito.any());
+        Mockito.verify(translationService).translateSegments(Mockito.eq(List.of("D")), Mockito.any(), Mockito.any());
+        Mockito.verify(translationService, Mockito.never()).translateSegments(Mockito.eq(List.of("B")), Mockito.any(), Mockito.any());
+        assertThat(store.interrupted()).isEmpty();
+        // The restored segment opens the script once translation starts.
+        Mockito.verify(narration).add(new TranslationSegment(2, "B", "B!"));
+    }
+
+    @Test
+    void looksUpStoredAudioForARangeRestoredEntirelyFromTheCheckpoint(@TempDir Path directory) {
+        TranslationCheckpointStore store = new TranslationCheckpointStore(
+                new JobProperties(null, null, null, directory.toString(), true), OPENAI, new ObjectMapper());
+        pipeline = new TranslationPipeline(bookService, translationService, audioGenerationService, store,
+                TranslatedBookStore.disabled());
+        TranslationJobRequest request = new TranslationJobRequest(1L, "url", "Title", 0, 2, "sentences", "Spanish");
+        try (TranslationCheckpointStore.Checkpoint checkpoint = store.open("earlier", request)) {
+            checkpoint.record(0, "A!");
+            checkpoint.record(1, "B!");
+        }
+        List<TranslationSegment> restored = List.of(new TranslationSegment(1, "A", "A!"), new TranslationSegment(2, "B", "B!"));
+        when(bookService.streamSegments(1L, "url", "sentences", 2)).thenReturn(Flux.fromIterable(List.of("A", "B")));
+        when(translationService.segmentLimit(2)).thenReturn(2);
+        when(audioGenerationService.generateAudio(restored)).thenReturn(Optional.of("stored.mp3"));
+        TranslationJob job = new TranslationJob("job", request);
+
+        pipeline.run(job);
+
+        assertThat(job.getResult().audioFileName()).isEqualTo("stored.mp3");
+        Mockito.verify(audioGenerationService, Mockito.never()).startNarration();
+        Mockito.verify(translationService, Mockito.never()).translateSegments(Mockito.anyList(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void checkpointsTranslationsThatMatchTheirSourceButNotFallbacks() {
+        TranslationCheckpointStore store = Mockito.mock(TranslationCheckpointStore.class);
+        TranslationCheckpointStore.Checkpoint checkpoint = Mockito.mock(TranslationCheckpointStore.Checkpoint.class);
+        when(store.open(Mockito.eq("job"), Mockito.any())).thenReturn(checkpoint);
+        pipeline = new TranslationPipeline(bookService, translationService, audioGenerationService, store,
+                TranslatedBookStore.disabled());
+        List<TranslationSegment> segments = List.of(
+                new TranslationSegment(1, "Paris.", "Paris."),
+                TranslationSegment.untranslated(2, "Oui."));
+        when(bookService.streamSegments(1L, "url", "sentences", 2)).thenReturn(Flux.fromIterable(List.of("Paris.", "Oui.")));
+        when(translationService.segmentLimit(2)).thenReturn(2);
+        when(translationService.translateSegments(Mockito.anyList(), Mockito.eq("Spanish"), Mockito.any()))
+                .thenAnswer(invocation -> {
+                    segments.forEach(invocation.<Consumer<TranslationSegment>>getArgument(2));
+                    return segments;
+                });
+        when(audioGenerationService.startNarration()).thenReturn(Mockito.mock(AudioGenerationService.Narration.class));
+
+        pipeline.run(new TranslationJob("job", new TranslationJobRequest(1L, "url", "Title", 0, 2, "sentences", "Spanish")));
+
+        Mockito.verify(checkpoint).record(0, "Paris.");
+        Mockito.verify(checkpoint, Mockito.never()).record(Mockito.eq(1), Mockito.any());
+    }
+
+    @Test
+    void leavesNarrationToTheListenerWhenStreaming() {
+        TranslationJob job = new TranslationJob("job", new TranslationJobRequest(1L, "url", "Title", 0, 1, "sentences", "Spanish"));
+        List<TranslationSegment> segments = List.of(new TranslationSegment(1, "Hello world.", "Hola mundo."));
+        when(bookService.streamSegments(1L, "url", "sentences", 1)).thenReturn(Flux.fromIterable(List.of("Hello world.")));
+        when(translationService.segmentLimit(1)).thenReturn(1);
+        when(translationService.translateSegments(Mockito.eq(List.of("Hello world.")), Mockito.eq("Spanish"), Mockito.any()))
+                .thenReturn(segments);
+        when(audioGenerationService.isStreaming()).thenReturn(true);
+        when(audioGenerationService.prepareAudio(segments)).thenReturn(Optional.of("prepared.mp3"));
+
+        pipeline.run(job);
+
+        assertThat(job.getResult().audioFileName()).isEqualTo("prepared.mp3");
+        Mockito.verify(audioGenerationService, Mockito.never()).startNarration();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void translatesAndNarratesOpeningSegmentsWhileTheBookIsStillDownloading() throws Exception {
+        TranslationJob job = new TranslationJob("job", new TranslationJobRequest(1L, "url", "Title", 0, 3, "sentences", "Spanish"));
+        Sinks.Many<String> download = Sinks.many().unicast().onBackpressureBuffer();
+        when(bookService.streamSegments(1L, "url", "sentences", 3)).thenReturn(download.asFlux());
+        when(translationService.segmentLimit(3)).thenReturn(1);
+        when(translationService.translateSegments(Mockito.anyList(), Mockito.eq("Spanish"), Mockito.any()))
+                .thenAnswer(invocation -> {
+                    String source = invocation.<List<String>>getArgument(0).get(0);
+                    return List.of(new TranslationSegment(1, source, source + "!"));
+                });
+        AudioGenerationService.Narration narration = Mockito.mock(AudioGenerationService.Narration.class);
+        when(audioGenerationService.startNarration()).thenReturn(narration);
+        when(narration.finish()).thenReturn(Optional.of("file.mp3"));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> run = executor.submit(() -> pipeline.run(job));
+
+            download.tryEmitNext("A");
+            Mockito.verify(narration, Mockito.timeout(5000)).add(new TranslationSegment(1, "A", "A!"));
+            assertThat(job.getStage()).isEqualTo(JobStage.TRANSLATING);
+            download.tryEmitNext("B");
+            download.tryEmitNext("C");
+            download.tryEmitComplete();
+            run.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(job.getStage()).isEqualTo(JobStage.COMPLETED);
+        assertThat(job.getResult().segments()).extracting(TranslationSegment::translated).containsExactly("A!", "B!", "C!");
+        assertThat(job.getResult().audioFileName()).isEqualTo("file.mp3");
+    }
+
+    @Test
+    void failsJobWhenOffsetIsPastTheEnd() {
+        TranslationJob job = new TranslationJob("job", new TranslationJobRequest(1L, "url", "Title", 5, 3, "sentences", "Spanish"));
+        when(bookService.streamSegments(1L, "url", "sentences", 8)).thenReturn(Flux.fromIterable(List.of("A", "B")));
+
+        pipeline.run(job);
+
+        assertThat(job.getStage()).isEqualTo(JobStage.FAILED);
+        assertThat(job.getError()).isEqualTo("The book has only 2 segments, fewer than the requested starting point.");
+    }
+
+    @Test
+    void reactiveTranslationChunksTheRangeAndKeepsBookPositions() {
+        TranslationJobRequest request = new TranslationJobRequest(1L, "url", "Title", 1, 3, "sentences", "Spanish");
+        when(bookService.downloadSegmentsReactive(1L, "url", "sentences", 4))
+                .thenReturn(Mono.just(List.of("Skip.", "One.", "Two.", "Three.")));
+        when(translationService.segmentLimit(3)).thenReturn(2);
+        // Segments arrive out of order within a chunk, as they do when translated concurrently.
+        when(translationService.translateSegmentsReactive(List.of("One.", "Two."), "Spanish")).thenReturn(Flux.just(
+                new TranslationSegment(2, "Two.", "Dos."), new TranslationSegment(1, "One.", "Uno.")));
+        when(translationService.translateSegmentsReactive(List.of("Three."), "Spanish"))
+                .thenReturn(Flux.just(new TranslationSegment(1, "Three.", "Tres.")));
+        when(audioGenerationService.generateAudioReactive(Mockito.anyList())).thenReturn(Mono.just("file.mp3"));
+
+        TranslationResult result = pipeline.translate(request).block();
+
+        assertThat(result.segments()).containsExactly(
+                new TranslationSegment(2, "One.", "Uno."),
+                new TranslationSegment(3, "Two.", "Dos."),
+                new TranslationSegment(4, "Three.", "Tres."));
+        assertThat(result.audioFileName()).isEqualTo("file.mp3");
+        Mockito.verify(bookService, Mockito.never()).downloadSegments(Mockito.anyLong(), Mockito.any(), Mockito.any(), Mockito.anyInt());
+    }
+
+    @Test
+    void reactiveTranslationCompletesEmptyWhenTheRangeIsPastTheEnd() {
+        when(bookService.downloadSegmentsReactive(1L, "url", "sentences", 7)).thenReturn(Mono.just(List.of("Only.")));
+
+        assertThat(pipeline.translate(new TranslationJobRequest(1L, "url", "Title", 5, 2, "sentences", "Spanish"))
+                .blockOptional()).isEmpty();
+    }
+}